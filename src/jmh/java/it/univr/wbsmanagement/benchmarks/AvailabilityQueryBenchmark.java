@@ -0,0 +1,140 @@
+package it.univr.wbsmanagement.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.TaskRef;
+
+/**
+ * Average time of the task-availability query against the one it replaced, on a synthetic
+ * dataset: a researcher who sees 10 projects of 20 work packages each, with one assigned task per
+ * work package, plus one assigned task in a project the researcher cannot see.
+ *
+ * <p>The previous query joined work packages and assignments to the visible projects without
+ * tying them to the task, so it read projects x work packages x assignments rows (40 200 here,
+ * against 200). The behaviour of the current query is checked by AvailabilityQueryTest.</p>
+ *
+ * <p>Run with {@code ./gradlew jmh}; the results are written to build/results/jmh.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AvailabilityQueryBenchmark {
+
+    private static final int PROJECTS = 10;
+    private static final int WORK_PACKAGES_PER_PROJECT = 20;
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 6);
+
+    /**
+     * The query before the rewrite, kept here as the baseline.
+     */
+    private static final String legacyQuery = """
+        SELECT projs.id AS projs_id, projs.title AS projs_title, t.id AS task_id, t.title AS task_title
+        FROM project_visibility pv
+        INNER JOIN projects projs ON projs.id = pv.project_id
+        INNER JOIN work_packages wp ON wp.project_id = pv.project_id
+        INNER JOIN task_assignments taskAsgn ON taskAsgn.user_id = pv.user_id
+        INNER JOIN tasks t ON t.id = taskAsgn.task_id
+        WHERE taskAsgn.user_id = ?
+          AND archived = FALSE
+          AND NOT EXISTS (SELECT 1 FROM time_entries te
+                          WHERE te.task_id = taskAsgn.task_id
+                            AND te.user_id = taskAsgn.user_id
+                            AND te.entry_date = ?)
+    """;
+
+    /**
+     * The previous query, reading every row as the method that ran it did.
+     */
+    @Benchmark
+    public int legacy(SyntheticDatabase db) throws SQLException {
+        int tasks = 0;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(legacyQuery)) {
+            ps.setInt(1, db.researcherId);
+            ps.setDate(2, Date.valueOf(DAY));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tasks += rs.getInt("task_id");
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * The current query, through DatabaseManager.
+     */
+    @Benchmark
+    public List<TaskRef> current(SyntheticDatabase db) {
+        return DatabaseManager.getRetrieveTimeEntriesAvaibilityByUserAndDay(db.researcherId, DAY);
+    }
+
+    /**
+     * An in-memory database with the migrated schema and the synthetic dataset, created once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class SyntheticDatabase {
+
+        public int researcherId;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            DatabaseManager.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:availability-benchmark;DB_CLOSE_DELAY=-1", "sa", ""));
+            DatabaseManager.setupDatabase();
+
+            try (Connection conn = DatabaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT id FROM users WHERE email = 'researcher'")) {
+                    rs.next();
+                    researcherId = rs.getInt(1);
+                }
+
+                stmt.execute("""
+                    INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
+                    SELECT 'Bench_' || X, 'Synthetic project', 1, 1 FROM SYSTEM_RANGE(0, %d)
+                """.formatted(PROJECTS));
+                stmt.execute("""
+                    INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+                    SELECT p.id, p.title || '_WP_' || r.X, 'Synthetic work package', DATE '2025-01-01', DATE '2025-12-31'
+                    FROM projects p, SYSTEM_RANGE(1, %d) r
+                    WHERE p.title LIKE 'Bench_%%'
+                      AND (p.title <> 'Bench_0' OR r.X = 1)
+                """.formatted(WORK_PACKAGES_PER_PROJECT));
+                stmt.execute("""
+                    INSERT INTO tasks (work_package_id, title, description, effort_hours, duration_hours, deadline, priority_id, status_id)
+                    SELECT wp.id, wp.title || '_T', 'Synthetic task', 10, 10, DATE '2025-12-31', 1, 1
+                    FROM work_packages wp
+                    WHERE wp.title LIKE 'Bench_%'
+                """);
+                stmt.execute("""
+                    INSERT INTO task_assignments (task_id, user_id, effort_hypothetic, effort_consumed)
+                    SELECT t.id, %d, 10, 0 FROM tasks t WHERE t.title LIKE 'Bench_%%'
+                """.formatted(researcherId));
+                // Bench_0 is not visible to the researcher
+                stmt.execute("""
+                    INSERT INTO project_visibility (project_id, user_id)
+                    SELECT p.id, %d FROM projects p WHERE p.title LIKE 'Bench_%%' AND p.title <> 'Bench_0'
+                """.formatted(researcherId));
+            }
+        }
+    }
+}
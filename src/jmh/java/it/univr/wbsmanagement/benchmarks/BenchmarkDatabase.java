@@ -0,0 +1,128 @@
+package it.univr.wbsmanagement.benchmarks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.database.DatasetGenerator;
+
+/**
+ * A temporary H2 file database, migrated and filled by {@link DatasetGenerator} once per trial,
+ * shared by all the benchmarks. DatabaseManager is connected to it through a HikariCP pool, like
+ * the application.
+ *
+ * <p>The benchmarks act as the first generated researcher, on a working day in the middle of the
+ * time entry history.</p>
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    /**
+     * Size of the dataset: a {@link DatasetGenerator.Config} preset.
+     */
+    @Param({"small", "large"})
+    public String dataset;
+
+    public LocalDate firstDay;
+    public LocalDate lastDay;
+    public LocalDate day;
+
+    public int researcherId;
+    public String researcherEmail;
+    public int projectId;
+    public int assignedTaskId;
+
+    private Path directory;
+    private HikariDataSource dataSource;
+
+    /**
+     * Creates, migrates and fills the database.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("wbs-jmh");
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:file:" + directory.resolve("wbs").toAbsolutePath());
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(config);
+
+        DatabaseManager.setDataSource(dataSource);
+        DatabaseManager.setupDatabase();
+
+        DatasetGenerator.Config preset = dataset.equals("large") ? DatasetGenerator.Config.large(42L) : DatasetGenerator.Config.small(42L);
+        firstDay = preset.firstDay();
+        lastDay = firstDay.plusDays(preset.days() - 1L);
+        day = firstDay.plusDays(preset.days() / 2).with(DayOfWeek.WEDNESDAY);
+
+        try (Connection conn = dataSource.getConnection()) {
+            System.out.println("Generated " + DatasetGenerator.generate(conn, preset));
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+
+                researcherEmail = DatasetGenerator.researcherEmail(0);
+                researcherId = queryInt(stmt, "SELECT id FROM users WHERE email = '" + researcherEmail + "'");
+                assignedTaskId = queryInt(stmt, "SELECT MIN(task_id) FROM task_assignments WHERE user_id = " + researcherId);
+                projectId = queryInt(stmt, """
+                    SELECT wp.project_id FROM tasks t INNER JOIN work_packages wp ON wp.id = t.work_package_id
+                    WHERE t.id = %d
+                """.formatted(assignedTaskId));
+            }
+        }
+    }
+
+    /**
+     * Closes the pool and deletes the database files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataSource.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static int queryInt(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Removes the time entries written by the write benchmarks and restores the effort they added.
+     */
+    void deleteEntriesFrom(LocalDate from) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM time_entries WHERE user_id = %d AND entry_date >= DATE '%s'".formatted(researcherId, from));
+            stmt.executeUpdate("""
+                UPDATE task_assignments ta
+                SET effort_consumed = COALESCE((SELECT SUM(CAST(FLOOR(te.hours) AS INT)) FROM time_entries te
+                                                WHERE te.user_id = ta.user_id AND te.task_id = ta.task_id), 0)
+                WHERE ta.user_id = %d AND ta.task_id = %d
+            """.formatted(researcherId, assignedTaskId));
+        }
+    }
+}
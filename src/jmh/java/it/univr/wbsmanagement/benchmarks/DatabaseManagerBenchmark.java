@@ -0,0 +1,127 @@
+package it.univr.wbsmanagement.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.ProjectTree;
+import it.univr.wbsmanagement.models.TaskRef;
+import it.univr.wbsmanagement.models.Timesheet;
+
+/**
+ * Average time of the DatabaseManager methods on the request path of the tracking pages, on the
+ * generated database of {@link BenchmarkDatabase}.
+ *
+ * <p>Run with {@code ./gradlew jmh}; the results are written to build/results/jmh.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatabaseManagerBenchmark {
+
+    /**
+     * Days written by the write benchmarks, after the generated entries.
+     */
+    private static final LocalDate FIRST_WRITE_DAY = LocalDate.of(2030, 1, 1);
+
+    /**
+     * Login lookup.
+     */
+    @Benchmark
+    public Map<String, String> getUserRowByEmail(BenchmarkDatabase db) {
+        return DatabaseManager.getUserRowByEmail(db.researcherEmail);
+    }
+
+    /**
+     * Week of the tracking homepage.
+     */
+    @Benchmark
+    public Timesheet getTimesheetWeek(BenchmarkDatabase db) {
+        LocalDate monday = db.day.with(DayOfWeek.MONDAY);
+        return DatabaseManager.getTimesheet(db.researcherId, monday, monday.plusDays(6));
+    }
+
+    /**
+     * Whole time entry history.
+     */
+    @Benchmark
+    public Timesheet getTimesheetAllDays(BenchmarkDatabase db) {
+        return DatabaseManager.getTimesheet(db.researcherId, db.firstDay, db.lastDay);
+    }
+
+    /**
+     * Tasks a user can still charge on a day.
+     */
+    @Benchmark
+    public List<TaskRef> getRetrieveTimeEntriesAvaibilityByUserAndDay(BenchmarkDatabase db) {
+        return DatabaseManager.getRetrieveTimeEntriesAvaibilityByUserAndDay(db.researcherId, db.day);
+    }
+
+    /**
+     * Task list of the daily add page.
+     */
+    @Benchmark
+    public List<TaskRef> getTasksAvailableAndNonWorkingByUserAndDay(BenchmarkDatabase db) {
+        return DatabaseManager.getTasksAvailableAndNonWorkingByUserAndDay(db.researcherId, db.day);
+    }
+
+    /**
+     * Work packages and tasks of a project.
+     */
+    @Benchmark
+    public ProjectTree getProjectTree(BenchmarkDatabase db) {
+        return DatabaseManager.getProjectTree(db.projectId);
+    }
+
+    /**
+     * Time entry insert and effort increment, one new day per invocation.
+     */
+    @Benchmark
+    public boolean addTimeEntry(BenchmarkDatabase db, WriteDays days) {
+        return DatabaseManager.addTimeEntry(db.researcherId, db.assignedTaskId, days.next(), 1.0);
+    }
+
+    /**
+     * Correction of an existing time entry, alternating between two values.
+     */
+    @Benchmark
+    public boolean updateTimeEntry(BenchmarkDatabase db, WriteDays days) {
+        days.toggle = !days.toggle;
+        return DatabaseManager.updateTimeEntry(db.researcherId, db.assignedTaskId, FIRST_WRITE_DAY.minusDays(1), days.toggle ? 2.0 : 3.0);
+    }
+
+    /**
+     * Days for the write benchmarks; the rows written are removed after every iteration so the
+     * read benchmarks of the same trial see the generated data only.
+     */
+    @State(Scope.Thread)
+    public static class WriteDays {
+
+        private LocalDate day = FIRST_WRITE_DAY;
+        private boolean toggle;
+
+        LocalDate next() {
+            LocalDate current = day;
+            day = day.plusDays(1);
+            return current;
+        }
+
+        @TearDown(Level.Iteration)
+        public void clean(BenchmarkDatabase db) throws SQLException {
+            db.deleteEntriesFrom(FIRST_WRITE_DAY.minusDays(1));
+            day = FIRST_WRITE_DAY;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package it.univr.wbsmanagement.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+import it.univr.wbsmanagement.reports.MonthlyReport;
+
+/**
+ * Average time to render the monthly report PDF of the researcher of {@link BenchmarkDatabase},
+ * for the month in the middle of the generated time entries. The content of the report is
+ * checked by MonthlyReportTest.
+ *
+ * <p>Run with {@code ./gradlew jmh}; the results are written to build/results/jmh.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MonthlyReportBenchmark {
+
+    /**
+     * Monthly report of the researcher.
+     */
+    @Benchmark
+    public int write(BenchmarkDatabase db) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MonthlyReport.write(db.researcherId, db.researcherEmail, YearMonth.from(db.day), out);
+        return out.size();
+    }
+}
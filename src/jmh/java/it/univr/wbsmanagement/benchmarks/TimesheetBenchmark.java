@@ -0,0 +1,83 @@
+package it.univr.wbsmanagement.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import it.univr.wbsmanagement.models.Timesheet;
+
+/**
+ * Building a month of entries (5 tasks a day over 3 projects) and its daily totals with
+ * {@link Timesheet}, against the nested day -> project -> task maps with boxed ids and hours it
+ * replaced. The days are created up front, as both structures receive them from the result set.
+ *
+ * <p>The allocation per operation ({@code gc.alloc.rate.norm}) is reported by the gc profiler
+ * enabled in build.gradle; the Timesheet is expected to allocate at least ten times less.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TimesheetBenchmark {
+
+    private static final int TASKS_PER_DAY = 5;
+
+    private final LocalDate[] month = new LocalDate[31];
+
+    public TimesheetBenchmark() {
+        for (int d = 0; d < month.length; d++) {
+            month[d] = LocalDate.of(2025, 3, 1 + d);
+        }
+    }
+
+    /**
+     * The nested maps of the previous timesheet.
+     */
+    @Benchmark
+    public double nestedMaps() {
+        HashMap<LocalDate, HashMap<Integer, HashMap<Integer, Double>>> hours = new HashMap<>();
+        for (LocalDate day : month) {
+            for (int task = 0; task < TASKS_PER_DAY; task++) {
+                Map<Integer, Double> row = new HashMap<>();
+                row.put(1000 + task, 1.5);
+                hours.computeIfAbsent(day, k -> new HashMap<>())
+                        .computeIfAbsent(task % 3, k -> new HashMap<>())
+                        .putAll(row);
+            }
+        }
+        double total = 0;
+        for (LocalDate day : month) {
+            total += hours.get(day).values().stream()
+                    .flatMap(taskHours -> taskHours.values().stream())
+                    .mapToDouble(Double::doubleValue)
+                    .sum();
+        }
+        return total;
+    }
+
+    /**
+     * The Timesheet built by DatabaseManager.getTimesheet.
+     */
+    @Benchmark
+    public double timesheet() {
+        Timesheet.Builder builder = Timesheet.builder(month[0], month[month.length - 1]);
+        for (LocalDate day : month) {
+            for (int task = 0; task < TASKS_PER_DAY; task++) {
+                builder.add(day, task % 3, 1000 + task, 1.5);
+            }
+        }
+        Timesheet hours = builder.build();
+        double total = 0;
+        for (LocalDate day : month) {
+            total += hours.getDayTotal(day);
+        }
+        return total;
+    }
+}
@@ -3,8 +3,6 @@ package it.univr.wbsmanagement;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-import it.univr.wbsmanagement.database.DatabaseManager;
-
 /**
  * The ServingWebContentApplication class serves as the entry point for the Time Tracking application.
  *
@@ -21,9 +19,7 @@ public class ServingWebContentApplication {
      */
     public static void main(String[] args) {
 
-        // Initialize the database by creating tables if they do not already exist.
-        DatabaseManager.setupDatabase();
-
+        // The database is initialized by DatabaseConfig once the connection pool is available.
         SpringApplication.run(ServingWebContentApplication.class, args);
 
         /*
@@ -0,0 +1,70 @@
+package it.univr.wbsmanagement.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.database.PendingRecoveryCounter;
+import it.univr.wbsmanagement.database.QueryMetrics;
+
+/**
+ *  DatabaseConfig connects the static DatabaseManager to the pooled DataSource.
+ *  The pool itself (HikariCP) is created by Spring Boot from the {@code spring.datasource}
+ *  settings in application.yml: size, timeouts, validation and leak detection are tuned there.
+ *  It also schedules the periodic reload of the cached database counters and sends the
+ *  DatabaseManager metrics to the Micrometer registry exposed by Actuator.
+ */
+@Configuration
+@EnableScheduling
+public class DatabaseConfig {
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final Duration slowQueryThreshold;
+
+    /**
+     * Creates the configuration with the DataSource and the MeterRegistry built by Spring Boot.
+     *
+     * @param dataSource the pooled data source
+     * @param meterRegistry the registry of the application metrics
+     * @param slowQueryThreshold statements slower than this are logged
+     */
+    public DatabaseConfig(DataSource dataSource, MeterRegistry meterRegistry,
+                          @Value("${wbs.metrics.slow-query-threshold:500ms}") Duration slowQueryThreshold) {
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    /**
+     * Hands the pool over to DatabaseManager and makes sure the database structure exists
+     * before the first request is served.
+     */
+    @PostConstruct
+    public void initDatabaseManager() {
+        QueryMetrics.bindTo(meterRegistry);
+        PendingRecoveryCounter.bindTo(meterRegistry);
+        QueryMetrics.setSlowQueryThreshold(slowQueryThreshold);
+        DatabaseManager.setDataSource(dataSource);
+
+        // Initialize the database by creating tables if they do not already exist.
+        DatabaseManager.setupDatabase();
+    }
+
+    /**
+     * Periodically reloads the pending recover-credentials count from the table, so requests
+     * opened or closed outside the application are eventually shown.
+     */
+    @Scheduled(fixedDelayString = "${wbs.recovery-counter.resync-interval:300000}",
+               initialDelayString = "${wbs.recovery-counter.resync-interval:300000}")
+    public void resyncPendingRecoveryCounter() {
+        PendingRecoveryCounter.resync();
+    }
+}
@@ -0,0 +1,113 @@
+package it.univr.wbsmanagement.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Set;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.reports.ReportJobs;
+import it.univr.wbsmanagement.reports.ReportStore;
+
+/**
+ *  ReportConfig creates the pool that renders the monthly reports in the background.
+ *  Its size, queue depth, rejection policy and the retention of the stored reports are set
+ *  under {@code wbs.reports} in application.yml; the pool meters go to the Actuator registry.
+ *  It also creates the file store the stored reports are downloaded from, and schedules the
+ *  deletion of the stored reports whose retention has expired, with their files.
+ */
+@Configuration
+public class ReportConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportConfig.class);
+
+    private final Duration keepFinishedJobs;
+
+    private ReportJobs reportJobs;
+    private ReportStore reportStore;
+
+    /**
+     * @param keepFinishedJobs how long a finished job can still be polled
+     */
+    public ReportConfig(@Value("${wbs.reports.keep-finished-jobs:1h}") Duration keepFinishedJobs) {
+        this.keepFinishedJobs = keepFinishedJobs;
+    }
+
+    /**
+     * Starts the report workers; they are stopped with the application context.
+     *
+     * @param meterRegistry the registry of the application metrics
+     * @param poolSize the number of reports rendered at the same time
+     * @param queueCapacity the number of reports that can wait for a worker
+     * @param rejectionPolicy what to do when the queue is full: abort or caller-runs
+     * @param retention how long the stored reports are kept
+     * @return the report jobs
+     */
+    @Bean(destroyMethod = "close")
+    public ReportJobs reportJobs(MeterRegistry meterRegistry,
+                                 @Value("${wbs.reports.pool-size:2}") int poolSize,
+                                 @Value("${wbs.reports.queue-capacity:100}") int queueCapacity,
+                                 @Value("${wbs.reports.rejection-policy:abort}") String rejectionPolicy,
+                                 @Value("${wbs.reports.retention:5y}") Period retention) {
+        ReportJobs.RejectionPolicy policy = ReportJobs.RejectionPolicy.valueOf(rejectionPolicy.trim().toUpperCase().replace('-', '_'));
+        reportJobs = new ReportJobs(poolSize, queueCapacity, policy, retention, meterRegistry);
+        return reportJobs;
+    }
+
+    /**
+     * Creates the store of the report files.
+     *
+     * @param directory the directory of the files, created on the first download
+     * @return the report store
+     */
+    @Bean
+    public ReportStore reportStore(@Value("${wbs.reports.store-dir:./data/reports}") Path directory) {
+        reportStore = new ReportStore(directory);
+        return reportStore;
+    }
+
+    /**
+     * Periodically forgets the finished jobs; their reports stay in the reports table.
+     */
+    @Scheduled(fixedDelayString = "${wbs.reports.eviction-interval:600000}",
+               initialDelayString = "${wbs.reports.eviction-interval:600000}")
+    public void evictFinishedReportJobs() {
+        if (reportJobs != null) {
+            reportJobs.evictFinished(keepFinishedJobs);
+        }
+    }
+
+    /**
+     * Deletes the stored reports whose {@code retention_until} has passed, every night by default,
+     * then the files of the reports that are no longer stored.
+     */
+    @Scheduled(cron = "${wbs.reports.retention-cron:0 30 3 * * *}")
+    public void deleteExpiredReports() {
+        int deleted = DatabaseManager.deleteExpiredReports(LocalDate.now());
+        if (deleted > 0) {
+            log.info("Deleted {} reports past their retention", deleted);
+        }
+
+        Set<String> contentHashes = DatabaseManager.getReportContentHashes();
+        if (reportStore != null && contentHashes != null) {
+            try {
+                int files = reportStore.sweep(contentHashes);
+                if (files > 0) {
+                    log.info("Deleted {} report files no longer stored", files);
+                }
+            } catch (IOException e) {
+                log.warn("The report files cannot be swept", e);
+            }
+        }
+    }
+}
@@ -2,8 +2,8 @@ package it.univr.wbsmanagement.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 //import org.springframework.security.provisioning.InMemoryUserDetailsManager;
@@ -14,7 +14,7 @@ import java.util.Collections;
 
 import it.univr.wbsmanagement.database.DatabaseManager;
 import org.thymeleaf.extras.springsecurity6.dialect.SpringSecurityDialect;
-//import it.univr.wbsmanagement.models.User;
+import it.univr.wbsmanagement.models.User;
 
 /**
  *  SecurityConfig configures the security settings for the application.
@@ -36,6 +36,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/", "/login", "/forgot-password", "/css/**", "/js/**", "/images/**").permitAll() // Here we permit access to the login page, root path, CSS, JS, images, etc.
                         .requestMatchers("/admin/**").hasRole("Administrator") // Only Administrators may access /admin/**
+                        .requestMatchers("/actuator/health").permitAll() // liveness checks
+                        .requestMatchers("/actuator/**").hasRole("Administrator") // metrics, scraped with HTTP Basic credentials
                         .anyRequest().authenticated() // Any other request requires authentication
                 )
                 .formLogin(form -> form
@@ -48,7 +50,8 @@ public class SecurityConfig {
                         .logoutUrl("/logout")
                         .logoutSuccessUrl("/login?logout")
                         .permitAll()
-                );
+                )
+                .httpBasic(Customizer.withDefaults()); // lets Prometheus authenticate on /actuator/prometheus
 
         return http.build();
     }
@@ -77,11 +80,13 @@ public class SecurityConfig {
 
                 var authority = new SimpleGrantedAuthority("ROLE_" + roleName);
 
-                return User.builder()
-                        .username(email)
-                        .password("{noop}" + password) // not encryption
-                        .authorities(Collections.singletonList(authority))
-                        .build();
+                // The application user travels with the principal for the whole session
+                User user = new User(Integer.parseInt(userRow.get("user_id")), email, roleName,
+                        Integer.parseInt(userRow.get("role_id")));
+
+                return new UserPrincipal(user,
+                        "{noop}" + password, // not encryption
+                        Collections.singletonList(authority));
             }
         };
     }
@@ -0,0 +1,42 @@
+package it.univr.wbsmanagement.config;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+import it.univr.wbsmanagement.models.User;
+
+/**
+ *  UserPrincipal is the Spring Security principal of an authenticated user.
+ *  Besides the credentials and authorities used by Spring Security, it carries the
+ *  application {@link User} (id, email and role) loaded once at login, so controllers
+ *  can receive it with {@code @AuthenticationPrincipal(expression = "user")} instead of
+ *  querying the database on every request.
+ */
+public class UserPrincipal extends org.springframework.security.core.userdetails.User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final User user;
+
+    /**
+     * Creates the principal of the given user.
+     *
+     * @param user        the application user
+     * @param password    the encoded password, checked by Spring Security at login
+     * @param authorities the granted authorities (the user's role)
+     */
+    public UserPrincipal(User user, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(user.getEmail(), password, authorities);
+        this.user = user;
+    }
+
+    /**
+     * Returns the application user of this principal.
+     *
+     * @return the user resolved at login
+     */
+    public User getUser() {
+        return user;
+    }
+}
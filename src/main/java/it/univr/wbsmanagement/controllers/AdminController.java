@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.database.PendingRecoveryCounter;
 
 import java.util.List;
 import java.util.Map;
@@ -135,7 +136,7 @@ public class AdminController {
         }
 
         // 4) Perform update
-        boolean success = DatabaseManager.updateUserRole(email, role);
+        boolean success = DatabaseManager.updateUserRole(email, role, currentEmail);
         if (success) {
             model.addAttribute("message", "User role updated successfully.");
         } else {
@@ -157,7 +158,7 @@ public class AdminController {
     public String showRecoverCredentialsForm(Model model) {
         List<String[]> requests = DatabaseManager.getRecoveryCredentialsRequestsActive();
         model.addAttribute("requests", requests);
-        model.addAttribute("pendingCount", DatabaseManager.countRecoverCredentialsRequestsActive());
+        model.addAttribute("pendingCount", PendingRecoveryCounter.get());
         model.addAttribute("content", "recover-credentials");
         return "layout";
     }
@@ -193,7 +194,7 @@ public class AdminController {
 
         // Refresh the list and count
         model.addAttribute("requests", DatabaseManager.getRecoveryCredentialsRequestsActive());
-        model.addAttribute("pendingCount", DatabaseManager.countRecoverCredentialsRequestsActive());
+        model.addAttribute("pendingCount", PendingRecoveryCounter.get());
         model.addAttribute("content", "recover-credentials");
         return "layout";
     }
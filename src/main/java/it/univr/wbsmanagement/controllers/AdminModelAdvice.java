@@ -1,10 +1,11 @@
 package it.univr.wbsmanagement.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.ui.Model;
 
-import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.database.PendingRecoveryCounter;
 
 /**
  * AdminModelAdvice is a controller advice that adds common attributes to the model
@@ -16,12 +17,18 @@ public class AdminModelAdvice {
 
     /**
      * Adds the count of pending recover-credentials requests to the model.
+     * The count is only shown to administrators, so it is skipped for every other user;
+     * it is read from the in-memory {@link PendingRecoveryCounter}, not from the database.
      *
+     * @param request the current request, used to check the user's role
      * @param model the model to which the pending count will be added
      */
     @ModelAttribute
-    public void addPendingCount(Model model) {
-        int pending = DatabaseManager.countRecoverCredentialsRequestsActive();
+    public void addPendingCount(HttpServletRequest request, Model model) {
+        if (!request.isUserInRole("Administrator")) {
+            return;
+        }
+        int pending = PendingRecoveryCounter.get();
         model.addAttribute("pendingCount", pending);
     }
 }
@@ -0,0 +1,110 @@
+package it.univr.wbsmanagement.controllers;
+
+import it.univr.wbsmanagement.models.User;
+import it.univr.wbsmanagement.reports.TimeEntryExport;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Exports the time entries as CSV or NDJSON.
+ * <p>
+ * Users export their own hours; Administrators can export the hours of any user, or of every
+ * user, for payroll. The export is written to the response on the request thread, a page of
+ * entries at a time (see {@link TimeEntryExport}): its size does not change the memory used,
+ * no async timeout can cut a long download, and no database connection is held while the
+ * client reads.
+ * </p>
+ * <p>
+ * When the entries cannot be read the download must not look complete. Before anything is
+ * sent the request fails with a 500 status; once part of the export was sent the status can no
+ * longer change, so the exception is rethrown and the servlet container closes the connection
+ * without ending the response, which the client reports as a failed download.
+ * </p>
+ */
+@Controller
+public class ExportController {
+
+    // the period when from or to are not given: the whole history
+    private static final LocalDate FIRST_DAY = LocalDate.of(1900, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(9999, 12, 31);
+
+    /**
+     * Writes the time entries matching the filters to the response.
+     *
+     * @param format      csv (default) or ndjson.
+     * @param userId      the user whose entries are exported; only Administrators may choose
+     *                    another user, or omit it to export every user.
+     * @param projectId   the project whose entries are exported, all projects if omitted.
+     * @param from        the first day of the period, included.
+     * @param to          the last day of the period, included.
+     * @param currentUser the authenticated user.
+     * @param request     the request, to check the role of the user.
+     * @param response    the response the export is written to, as an attachment.
+     * @throws IOException if the export fails after part of it was sent, or the response cannot be written.
+     */
+    @GetMapping("/export/time-entries")
+    public void exportTimeEntries(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Integer projectId,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        TimeEntryExport.Format exportFormat;
+        try {
+            exportFormat = TimeEntryExport.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format: " + format);
+        }
+
+        Integer exportedUserId = userId;
+        if (!request.isUserInRole("Administrator")) {
+            if (userId != null && userId != currentUser.getUserId()) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the own hours can be exported");
+            }
+            exportedUserId = currentUser.getUserId();
+        }
+
+        LocalDate firstDay = (from != null) ? from : FIRST_DAY;
+        LocalDate lastDay = (to != null) ? to : LAST_DAY;
+        if (lastDay.isBefore(firstDay)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The period ends before it starts");
+        }
+
+        String fileName = "time_entries"
+                + (exportedUserId != null ? "_user" + exportedUserId : "")
+                + (projectId != null ? "_project" + projectId : "")
+                + (from != null ? "_" + from : "")
+                + (to != null ? "_" + to : "")
+                + "." + exportFormat.getExtension();
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setContentType(new MediaType(MediaType.parseMediaType(exportFormat.getMediaType()), StandardCharsets.UTF_8).toString());
+        try {
+            TimeEntryExport.write(exportFormat, exportedUserId, projectId, firstDay, lastDay, response.getOutputStream());
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                throw e; // truncated: the connection is closed instead of ending the download
+            }
+            response.reset();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "The time entries cannot be exported", e);
+        }
+    }
+}
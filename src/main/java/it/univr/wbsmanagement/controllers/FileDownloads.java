@@ -0,0 +1,202 @@
+package it.univr.wbsmanagement.controllers;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sends a file as a download, with single byte ranges and conditional requests.
+ *
+ * <p>The response carries a strong ETag and Last-Modified: {@code If-None-Match} and
+ * {@code If-Modified-Since} are answered with 304, and {@code Range: bytes=...} with 206 (or 416
+ * when it starts past the end), so interrupted downloads resume where they stopped; a Range
+ * with several ranges, or invalid, is ignored and the whole file is sent. On Tomcat the body is
+ * sent with sendfile, which copies the file to the socket with {@link FileChannel#transferTo}
+ * without reading it in the JVM; elsewhere it is transferred to the response stream.</p>
+ */
+final class FileDownloads {
+
+    // request attributes of the Tomcat sendfile support (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // below this size a copy is cheaper than handing the file to the poller (as in Tomcat's DefaultServlet)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    // returned by parseRange for a Range that starts past the end of the file
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private FileDownloads() {
+    }
+
+    /**
+     * Answers a GET or HEAD request with a file.
+     *
+     * @param request      the request, with its Range and conditional headers.
+     * @param response     the response, not yet committed.
+     * @param file         the file to send.
+     * @param etag         the strong entity tag of the file, without quotes.
+     * @param modifiedAt   when the file content was created, in milliseconds since the epoch.
+     * @param contentType  the media type of the file.
+     * @param fileName     the file name proposed to the browser.
+     * @throws IOException if the file cannot be read or the response written.
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, Path file, String etag,
+                     long modifiedAt, String contentType, String fileName) throws IOException {
+        String quotedEtag = "\"" + etag + "\"";
+        long length = Files.size(file);
+        // HTTP dates have a precision of one second
+        long lastModified = modifiedAt / 1000 * 1000;
+
+        response.setHeader(HttpHeaders.ETAG, quotedEtag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // stored by the browser, but always revalidated: the report belongs to the logged user
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (notModified(request, quotedEtag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        long[] range = rangeMatches(request, quotedEtag, lastModified) ? parseRange(request.getHeader(HttpHeaders.RANGE), length) : null;
+        if (range == UNSATISFIABLE) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        if (range != null) {
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && count >= SENDFILE_MIN_SIZE) {
+            // Tomcat sends the file after the servlet returns, end excluded
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, out);
+                if (sent <= 0) {
+                    throw new IOException("The file " + file + " ended before its length");
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /**
+     * Whether the client already has the file: If-None-Match is checked first and, only when
+     * absent, If-Modified-Since.
+     */
+    private static boolean notModified(HttpServletRequest request, String quotedEtag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2); // weak comparison
+                }
+                if (candidate.equals("*") || candidate.equals(quotedEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Whether the Range applies: without If-Range, or when it names the current version by
+     * strong ETag or by exact date.
+     */
+    private static boolean rangeMatches(HttpServletRequest request, String quotedEtag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"")) {
+            return ifRange.trim().equals(quotedEtag);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+    }
+
+    /**
+     * Parses a single byte range: {@code bytes=first-last}, {@code bytes=first-} or
+     * {@code bytes=-suffixLength}.
+     *
+     * @return the first and last byte, null to send the whole file, or {@link #UNSATISFIABLE}.
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null; // a last byte before the first one is not a range: ignored
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, Math.min(end, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1; // not a date: the header is ignored
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package it.univr.wbsmanagement.controllers;
 
 import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.TaskHours;
+import it.univr.wbsmanagement.models.TaskRef;
 import it.univr.wbsmanagement.models.User;
 
 import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -14,6 +15,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
@@ -29,59 +31,36 @@ import java.util.*;
 @Controller
 public class HomeTrackingController {
 
+    /**
+     * Prefix of the week-grid inputs, named "hours_{taskId}_{yyyy-MM-dd}".
+     */
+    private static final String WEEK_CELL_PREFIX = "hours_";
+
     /**
      * Display the hours charged by the user for a specific day.
      *
+     * @param targetDay the day to display.
+     * @param currentUser the authenticated user.
      * @param model Thymeleaf model.
      * @return the main layout view with content set to "home-tracking".
      */
     @GetMapping("/home-tracking/{targetDay}/add-home-tracking")
     public String showTrackingAddPage(
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate targetDay,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
             Model model
     ) {
         // 1) Current user & ID
-        User currentUser = DatabaseManager.getUser();
         int userId = currentUser.getUserId();
 
-        // 2) Fetch hours per day (map LocalDate->Double)
-        HashMap<LocalDate, HashMap<Integer, HashMap<Integer, Double>>> userDay = DatabaseManager.getUsersAndAssignmentsHoursByRangeDay(userId, targetDay, targetDay);
-
-        // 3) Totale ore caricate giornaliere
-        if(userDay.containsKey(targetDay)) {
-
-            HashMap<Integer, HashMap<Integer, Double>> dayHours = userDay.get(targetDay);
-
-            HashMap<String, Double> hoursMap = new HashMap<>();
-            HashMap<Integer, String> projectTrack = new HashMap<>();
-
-            for (Map.Entry<Integer, HashMap<Integer, Double>> hoursByProjectId : dayHours.entrySet()) {
-
-                // Retrieve project ID
-                int projectId = hoursByProjectId.getKey();
-
-                for (Map.Entry<Integer, Double> hourEntry : hoursByProjectId.getValue().entrySet()) {
-                    // Retrieve task ID and hours
-                    int taskId = hourEntry.getKey();
-                    double hours = hourEntry.getValue();
-
-                    // Process or display the hours as needed
-                    projectTrack.computeIfAbsent(projectId, k -> DatabaseManager.getProjectTitleById(projectId, true));
-                    String taskName = DatabaseManager.getTaskTitleNameById(taskId, true);
-
-                    hoursMap.put("Project: " + projectTrack.get(projectId) + "; Task: " + taskName, hours);
-                }
-            }
-            model.addAttribute("hourCommission", hoursMap);
+        // 2) Hours of the day, with project and task titles from the same query
+        List<TaskHours> dayHours = DatabaseManager.getTimeEntriesWithTitlesByUserAndDay(userId, targetDay);
+        if (!dayHours.isEmpty()) {
+            model.addAttribute("hourCommission", dayHours);
         }
 
-        // 4) Add list of tasks available for the user
-        HashMap<String, String> tasks_available = DatabaseManager.getRetrieveTimeEntriesAvaibilityByUserAndDay(userId, targetDay, true);
-        HashMap<String, String> tasks_not_working = DatabaseManager.getNonWorkingTasks(true);
-        for (Map.Entry<String, String> entry : tasks_not_working.entrySet()) {
-            // Add the task to the available tasks with a note that it is not working
-            tasks_available.put(entry.getKey(), entry.getValue());
-        }
+        // 3) Add list of tasks available for the user, time-off tasks included
+        List<TaskRef> tasks_available = DatabaseManager.getTasksAvailableAndNonWorkingByUserAndDay(userId, targetDay);
 
         model.addAttribute("targetDay", targetDay);
         model.addAttribute("tasks_available", tasks_available);
@@ -94,12 +73,14 @@ public class HomeTrackingController {
     /**
      * Handles adding a time entry for a specific task on a specific day.
      * <p>
-     * It checks if the hours are valid, inserts the time entry, and updates the task assignments.
-     * If the insertion fails, it rolls back the operation.
+     * It checks that the task is one the user can charge that day and that the hours are valid
+     * (more than 0, at most 24 per day), then inserts the time entry and updates the task assignment
+     * in a single transaction: if either write fails, nothing is stored.
      *
      * @param targetDay The day for which the time entry is being added.
      * @param taskId    The ID of the task for which hours are being added.
      * @param hours     The number of hours to be added.
+     * @param currentUser The authenticated user.
      * @param model     The model to add attributes to the view.
      * @return The view name to reload the tracking add page with updated information.
      */
@@ -108,37 +89,85 @@ public class HomeTrackingController {
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate targetDay,
             @RequestParam int taskId,
             @RequestParam double hours,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
             Model model
     ) {
         // 1) Current user & ID
-        User currentUser = DatabaseManager.getUser();
         int userId = currentUser.getUserId();
 
-        if ((int) hours <= 0) {
+        boolean taskAvailable = DatabaseManager.getTasksAvailableAndNonWorkingByUserAndDay(userId, targetDay).stream()
+                .anyMatch(task -> task.id() == taskId);
+        if (!taskAvailable || !isValidDayHours(hours, DatabaseManager.getTotalHoursForDate(userId, targetDay))) {
             model.addAttribute("addTimeEntryMessage", "Please enter a valid number of hours");
             // reload everything
-            return showTrackingAddPage(targetDay, model);
+            return showTrackingAddPage(targetDay, currentUser, model);
         }
 
-        boolean time_insert_insert_status = DatabaseManager.insertTimeEntry(userId, taskId, targetDay, hours);
-        boolean task_assignments_insert_status = DatabaseManager.updateEffortConsumedInTaskAssignments(userId, taskId, (int) hours, 1);
+        // 2) Insert the entry and consume the assignment effort in one transaction
+        boolean time_entry_status = DatabaseManager.addTimeEntry(userId, taskId, targetDay, hours);
+        model.addAttribute("addTimeEntryMessage", time_entry_status ? "Hours entry added successfully" : "Failed to add hour entry");
 
-        if (time_insert_insert_status && task_assignments_insert_status) {
-            model.addAttribute("addTimeEntryMessage", "Hours entry added successfully");
-        }
-        else {
-            model.addAttribute("addTimeEntryMessage", "Failed to add hour entry");
-
-            // Rollback operation if insertion failed
-            if(!(time_insert_insert_status && task_assignments_insert_status)) {
+        // reload everything
+        return showTrackingAddPage(targetDay, currentUser, model);
+    }
 
-                DatabaseManager.removeTimeEntryAndTaskAssignmentByUserIdAndTaskId(userId, taskId, targetDay);
+    /**
+     * Handles the correction of the hours of an existing time entry.
+     * <p>
+     * The entry must exist and its task must still be a row of the week grid (assigned, time-off or
+     * already charged), as in {@link #handleSaveWeek}; the new hours must be more than 0 and keep
+     * the day within 24 hours. The entry is then overwritten and the task assignment is adjusted by
+     * the difference in a single transaction, instead of removing the entry and adding it again.
+     *
+     * @param targetDay The day of the time entry.
+     * @param taskId    The ID of the task of the time entry.
+     * @param hours     The corrected number of hours.
+     * @param currentUser The authenticated user.
+     * @param model     The model to add attributes to the view.
+     * @return The view name to reload the tracking add page with updated information.
+     */
+    @PostMapping("/home-tracking/{targetDay}/add-home-tracking/edit/{taskId}")
+    public String handleEditAssignment(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate targetDay,
+            @PathVariable int taskId,
+            @RequestParam double hours,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
+            Model model
+    ) {
+        // 1) Current user & ID
+        int userId = currentUser.getUserId();
 
+        // 2) The entry being corrected and the hours of the other entries of the day
+        boolean entryFound = false;
+        double otherHours = 0;
+        for (TaskHours entry : DatabaseManager.getTimeEntriesWithTitlesByUserAndDay(userId, targetDay)) {
+            if (entry.task().id() == taskId) {
+                entryFound = true;
+            } else {
+                otherHours += entry.hours();
             }
         }
+        if (!entryFound || !DatabaseManager.getWeekGridTasks(userId, targetDay, targetDay).containsKey(taskId)
+                || !isValidDayHours(hours, otherHours)) {
+            model.addAttribute("removeTimeEntryMessage", "Please enter a valid number of hours");
+            // reload everything
+            return showTrackingAddPage(targetDay, currentUser, model);
+        }
+
+        // 3) Overwrite the entry and move the assignment effort by the difference
+        boolean edit_TimeEntry_status = DatabaseManager.updateTimeEntry(userId, taskId, targetDay, hours);
+        model.addAttribute("removeTimeEntryMessage", edit_TimeEntry_status ? "Entity updated successfully" : "Failed to update entity");
 
         // reload everything
-        return showTrackingAddPage(targetDay, model);
+        return showTrackingAddPage(targetDay, currentUser, model);
+    }
+
+    /**
+     * Checks the hours of a single entry: a finite number more than 0, with the day total
+     * (the other entries of the day plus this one) at most 24.
+     */
+    private static boolean isValidDayHours(double hours, double otherHours) {
+        return Double.isFinite(hours) && hours > 0 && otherHours + hours <= 24;
     }
 
     /**
@@ -148,6 +177,7 @@ public class HomeTrackingController {
      *
      * @param targetDay The day for which the time entry is being removed.
      * @param taskId    The ID of the task to be removed.
+     * @param currentUser The authenticated user.
      * @param model     The model to add attributes to the view.
      * @return The view name to reload the tracking add page with updated information.
      */
@@ -155,10 +185,10 @@ public class HomeTrackingController {
     public String handleRemoveAssignment(
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate targetDay,
             @PathVariable int taskId,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
             Model model
     ) {
         // 1) Current user & ID
-        User currentUser = DatabaseManager.getUser();
         int userId = currentUser.getUserId();
 
         // 2) Remove time entry and task assignment
@@ -166,6 +196,72 @@ public class HomeTrackingController {
         model.addAttribute("removeTimeEntryMessage", remove_TimeEntry_and_TaskAssignment_status ? "Entity removed successfully" : "Failed to remove entity");
 
         // reload everything
-        return showTrackingAddPage(targetDay, model);
+        return showTrackingAddPage(targetDay, currentUser, model);
+    }
+
+    /**
+     * Saves the whole weekly timesheet submitted from the week grid of the home tracking page.
+     * <p>
+     * Every input "hours_{taskId}_{day}" is a cell of the grid; an empty cell or 0 removes the entry.
+     * The cells are validated (task shown in the grid, day in the week, 0-24 hours per cell and per day)
+     * and then stored with {@link DatabaseManager#saveWeeklyTimeEntries} in a single transaction.
+     *
+     * @param date               any day of the target week.
+     * @param params             the submitted form fields.
+     * @param currentUser        the authenticated user.
+     * @param redirectAttributes used to pass the outcome message to the redirected week view.
+     * @return redirect to the home tracking page of the week.
+     */
+    @PostMapping("/home-tracking/{date}")
+    public String handleSaveWeek(
+            @PathVariable("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam Map<String, String> params,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
+            RedirectAttributes redirectAttributes
+    ) {
+        // 1) Current user & ID
+        int userId = currentUser.getUserId();
+
+        // 2) Week range: Monday -> Sunday
+        LocalDate monday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate sunday = monday.plusDays(6);
+
+        // 3) Parse and validate the grid cells
+        Map<Integer, String> gridTasks = DatabaseManager.getWeekGridTasks(userId, monday, sunday);
+        Map<Integer, Map<LocalDate, Double>> hoursByTask = new HashMap<>();
+        Map<LocalDate, Double> hoursByDay = new HashMap<>();
+        boolean valid = true;
+
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (!param.getKey().startsWith(WEEK_CELL_PREFIX)) {
+                continue;
+            }
+            try {
+                String[] cell = param.getKey().substring(WEEK_CELL_PREFIX.length()).split("_", 2);
+                int taskId = Integer.parseInt(cell[0]);
+                LocalDate day = LocalDate.parse(cell[1]);
+                double hours = param.getValue().isBlank() ? 0.0 : Double.parseDouble(param.getValue());
+
+                if (!gridTasks.containsKey(taskId) || day.isBefore(monday) || day.isAfter(sunday)
+                        || !Double.isFinite(hours) || hours < 0 || hours > 24 || hoursByDay.merge(day, hours, Double::sum) > 24) {
+                    valid = false;
+                    break;
+                }
+                hoursByTask.computeIfAbsent(taskId, k -> new HashMap<>()).put(day, hours);
+            } catch (RuntimeException e) {
+                valid = false;
+                break;
+            }
+        }
+
+        // 4) Store the whole week at once
+        if (!valid) {
+            redirectAttributes.addFlashAttribute("saveWeekMessage", "Please enter a valid number of hours (0-24 per day)");
+        } else {
+            boolean saved = DatabaseManager.saveWeeklyTimeEntries(userId, monday, sunday, hoursByTask);
+            redirectAttributes.addFlashAttribute("saveWeekMessage", saved ? "Weekly timesheet saved successfully" : "Failed to save weekly timesheet");
+        }
+
+        return "redirect:/home-tracking/" + monday;
     }
 }
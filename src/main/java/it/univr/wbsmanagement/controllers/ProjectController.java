@@ -1,9 +1,15 @@
 package it.univr.wbsmanagement.controllers;
 
+import it.univr.wbsmanagement.config.UserPrincipal;
 import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.database.ReferenceData;
+import it.univr.wbsmanagement.models.ProjectRef;
+import it.univr.wbsmanagement.models.ProjectTree;
+import it.univr.wbsmanagement.models.User;
 
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -27,9 +33,8 @@ public class ProjectController {
     /**
      * Displays the “Add Project” form.
      *
-     * <p>Retrieves a list of supervisors from the database,
-     * formats each as "id - name", and makes it available
-     * for the dropdown.</p>
+     * <p>Retrieves the supervisors from the database (as {@link it.univr.wbsmanagement.models.UserRef})
+     * and makes them available for the dropdown.</p>
      *
      * @param model the Spring Model for passing attributes to the view
      * @return the Thymeleaf layout template
@@ -37,13 +42,8 @@ public class ProjectController {
     @GetMapping("/project/add")
     public String showAddProjectForm(Model model) {
 
-        // fetch supervisors as an array of "id - email" strings
-        String[] supervisorsArray = DatabaseManager.getSupervisors();  // returns String[] :contentReference[oaicite:0]{index=0}
-
-        // convert to a List for Thymeleaf iteration
-        List<String> supervisors = Arrays.asList(supervisorsArray);
-
-        model.addAttribute("supervisors", supervisors);
+        // fetch supervisors, bound by id and email in the dropdown
+        model.addAttribute("supervisors", DatabaseManager.getSupervisors());
         model.addAttribute("content", "project-add");
         return "layout";
     }
@@ -52,7 +52,7 @@ public class ProjectController {
      * Handles the submission of the “Add Project” form.
      *
      * <p>Extracts the project name, description, and supervisor ID from the request,
-     * retrieves the current admin’s user ID via Spring Security,
+     * takes the current admin’s user ID from the Spring Security principal,
      * and attempts to insert a new project into the database.
      * On success, adds a message “Task added successfully” (in English);
      * on failure, adds “Failed to add task”.</p>
@@ -60,6 +60,7 @@ public class ProjectController {
      * @param name         the project title from the form
      * @param description  the project description from the form
      * @param supervisorId the selected supervisor’s user ID
+     * @param currentUser  the authenticated admin, resolved at login
      * @param model        the Spring Model for passing attributes to the view
      * @return the Thymeleaf layout template (same form, with a feedback message)
      */
@@ -68,17 +69,11 @@ public class ProjectController {
             @RequestParam("name") String name,
             @RequestParam("description") String description,
             @RequestParam("supervisorId") int supervisorId,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
             Model model
     ) {
-        // 1) Get current authenticated user’s email
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        // 2) Look up full user row to get admin ID
-        Map<String, String> row = DatabaseManager.getUserRowByEmail(email); //:contentReference[oaicite:1]{index=1}
-
-        String roleName = row.get("role_name");
-        int adminId = Integer.parseInt(row.get("role_id"));
+        // 1-2) Current admin ID, carried by the principal
+        int adminId = currentUser.getUserId();
 
         // 3) Insert the project
         boolean added = DatabaseManager.addProject(name, description, adminId, supervisorId); //:contentReference[oaicite:2]{index=2}
@@ -91,9 +86,7 @@ public class ProjectController {
         }
 
         // 5) Re-load supervisors list for the form
-        String[] supervisorsArray = DatabaseManager.getSupervisors();
-        List<String> supervisors = Arrays.asList(supervisorsArray);
-        model.addAttribute("supervisors", supervisors);
+        model.addAttribute("supervisors", DatabaseManager.getSupervisors());
 
         model.addAttribute("content", "project-add");
         return "layout";
@@ -102,7 +95,7 @@ public class ProjectController {
     /**
      * Displays the “Search Project” form.
      *
-     * <p>Fetches all active projects from the database (each as "id - title"),
+     * <p>Fetches all active projects from the database (as {@link ProjectRef}),
      * and puts them in the model under "projects" so the dropdown can populate.</p>
      *
      * @param model the Spring Model for passing attributes to the view
@@ -110,9 +103,8 @@ public class ProjectController {
      */
     @GetMapping("/project/search")
     public String showSearchProjectForm(Model model) {
-        // Load all active projects as an array of "id - title"
-        String[] projectsArray = DatabaseManager.getProjectsActive(true);  // returns String[] of "id - title"
-        model.addAttribute("projects", projectsArray);
+        // Load all active projects
+        model.addAttribute("projects", DatabaseManager.getProjectsActive());
         model.addAttribute("content", "project-search");
         return "layout";
     }
@@ -135,7 +127,7 @@ public class ProjectController {
     /**
      * Displays the “Search Archived Project” form.
      *
-     * <p>Fetches all archived projects from the database (each as "id - title"),
+     * <p>Fetches all archived projects from the database (as {@link ProjectRef}),
      * and puts them in the model under "archivedProjects" so the dropdown can populate.</p>
      *
      * @param model the Spring Model for passing attributes to the view
@@ -143,9 +135,8 @@ public class ProjectController {
      */
     @GetMapping("/project/archived")
     public String showArchivedProjectForm(Model model) {
-        // Load all archived projects as an array of "id - title"
-        String[] archivedArray = DatabaseManager.getProjectsArchived(true);  // returns String[] of "id - title"
-        model.addAttribute("archivedProjects", archivedArray);
+        // Load all archived projects
+        model.addAttribute("archivedProjects", DatabaseManager.getProjectsArchived());
         model.addAttribute("content", "project-archived");
         return "layout";
     }
@@ -167,16 +158,18 @@ public class ProjectController {
 
     /**
      * Shows the detail page for a given project key (ID or name). In particular,
-     * this method now loads all work packages for that project, and for each work package
-     * loads its tasks, assembling a nested list for Thymeleaf rendering.
+     * this method loads the project with all its work packages and their tasks
+     * in a single query, as a {@link ProjectTree} ready for Thymeleaf rendering.
      *
-     * @param projectKey the project identifier (e.g. "9" or a unique project name)
-     * @param model      Spring Model to pass attributes to the Thymeleaf template
+     * @param projectKey  the project identifier (e.g. "9" or a unique project name)
+     * @param currentUser the authenticated user, resolved at login
+     * @param model       Spring Model to pass attributes to the Thymeleaf template
      * @return the Thymeleaf layout template
      */
     @GetMapping("/project/{projectKey}")
     public String showProjectDetails(
             @PathVariable("projectKey") String projectKey,
+            @AuthenticationPrincipal(expression = "user") User currentUser,
             Model model
     ) {
         // 1) Parse projectKey into an integer ID
@@ -189,59 +182,32 @@ public class ProjectController {
             return "redirect:/project";
         }
 
-        // 2) Recupera l’utente corrente (id e ruolo) dal SecurityContext
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        Map<String, String> row = DatabaseManager.getUserRowByEmail(email);
+        // 2) Utente corrente (id e ruolo), caricato una volta al login
+        String currentUserRole = currentUser.getRole();
+        int currentUserId = currentUser.getUserId();
 
-        String currentUserRole = row.get("role_name");
-        int currentUserId = Integer.parseInt(row.get("user_id"));
+        // 3) Progetto, work package e task con una sola query
+        ProjectTree projectTree = DatabaseManager.getProjectTree(projectId);
+        if (projectTree == null) {
+            return "redirect:/project";
+        }
 
-        // 3) Verifica se l’utente corrente è il supervisore di questo progetto
-        //    (supponendo che tu abbia un metodo DB per ottenere l’id del supervisore del progetto)
-        int supervisorId = DatabaseManager.getSupervisorIdByProject(projectId);
-        boolean isSupervisor = (currentUserId == supervisorId);
+        // 4) Verifica se l’utente corrente è il supervisore di questo progetto
+        boolean isSupervisor = (currentUserId == projectTree.supervisorId());
         boolean isResearcher = currentUserRole.equalsIgnoreCase("RESEARCHER");
 
-        // 4) Aggiungi i tre attributi al model
+        // 5) Aggiungi gli attributi al model
         model.addAttribute("role", currentUserRole);
-        model.addAttribute("isSupervisor", isSupervisor);;
+        model.addAttribute("isSupervisor", isSupervisor);
         model.addAttribute("isResearcher", isResearcher);
         model.addAttribute("projectKey", projectKey);
+        model.addAttribute("projectTitle", projectTree.title());
 
-        // 2) Retrieve the project title (optional display elsewhere):
-        String projectTitle = DatabaseManager.getProjectTitleById(projectId, false);
-        model.addAttribute("projectTitle", projectTitle);
+        // 6) Work packages, each with its tasks
+        model.addAttribute("workPackages", projectTree.workPackages());
 
-        // 3) Load all work packages as List<String> of "id - title"
-        List<String> wpStrings = DatabaseManager.getWorkPackagesByProject(projectId, true); //:contentReference[oaicite:2]{index=2}
-
-        // 4) For each work package, load its tasks (List<String> of "id - title")
-        List<Map<String, Object>> workPackages = new ArrayList<>();
-        for (String wp : wpStrings) {
-            // wp is like "3 - Design phase"
-            String[] wpParts = wp.split(" - ", 2);
-            int wpId = Integer.parseInt(wpParts[0]);
-            String wpTitle = wpParts[1];
-
-            // Fetch tasks for this work package
-            List<String> tasks = DatabaseManager.getTasksByWorkPackages(wpId, true); //:contentReference[oaicite:3]{index=3}
-
-            // Build a map: {"id": 3, "title": "Design phase", "tasks": List<String> }
-            Map<String, Object> wpEntry = new HashMap<>();
-            wpEntry.put("id", wpId);
-            wpEntry.put("title", wpTitle);
-            wpEntry.put("tasks", tasks);
-
-            workPackages.add(wpEntry);
-        }
-
-        // 5) Add the nested list to the model
-        model.addAttribute("workPackages", workPackages);
-
-        // 6) Project archived status
-        String messageArchived = (DatabaseManager.getIsProjectsArchivedById(projectId)) ? "Archived" : "Active";
+        // 7) Project archived status
+        String messageArchived = projectTree.archived() ? "Archived" : "Active";
         model.addAttribute("message", messageArchived);
 
         model.addAttribute("content", "project-details");
@@ -257,13 +223,12 @@ public class ProjectController {
      * @param model      the Spring Model to add attributes to
      */
     private void populateCommonAttributes(String projectKey, Model model) {
-        // 1) current user
+        // 1) current user, carried by the principal since login
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
+        User currentUser = ((UserPrincipal) auth.getPrincipal()).getUser();
 
-        Map<String, String> userRow = DatabaseManager.getUserRowByEmail(email);
-        String currentUserRole = userRow.get("role_name");
-        int currentUserId = Integer.parseInt(userRow.get("user_id"));
+        String currentUserRole = currentUser.getRole();
+        int currentUserId = currentUser.getUserId();
         model.addAttribute("role", currentUserRole);
 
         // 2) isSupervisor?
@@ -275,7 +240,7 @@ public class ProjectController {
         model.addAttribute("projectKey", projectKey);
 
         // 4) optional: project title
-        String title = DatabaseManager.getProjectTitleById(projectId, true);
+        String title = DatabaseManager.getProjectTitleById(projectId);
         model.addAttribute("projectTitle", title);
     }
 
@@ -295,12 +260,10 @@ public class ProjectController {
         int projectId = Integer.parseInt(projectKey);
 
         // Researchers not yet in project_visibility
-        String[] availArr = DatabaseManager.getResearchersExcludingProjectId(projectId, true);
-        model.addAttribute("availableResearchers", Arrays.asList(availArr));
+        model.addAttribute("availableResearchers", DatabaseManager.getResearchersExcludingProjectId(projectId));
 
         // Researchers already in project_visibility
-        String[] assignedArr = DatabaseManager.getResearchersByProjectId(projectId, true);
-        model.addAttribute("projectResearchers", Arrays.asList(assignedArr));
+        model.addAttribute("projectResearchers", DatabaseManager.getResearchersByProjectId(projectId));
 
         model.addAttribute("content", "manage-researcher");
         return "layout";
@@ -328,8 +291,8 @@ public class ProjectController {
         model.addAttribute("addMessage", success ? "Researcher added successfully" : "Failed to add researcher");
 
         // refresh lists
-        model.addAttribute("availableResearchers", Arrays.asList(DatabaseManager.getResearchersExcludingProjectId(projectId, true)));
-        model.addAttribute("projectResearchers", Arrays.asList(DatabaseManager.getResearchersByProjectId(projectId, true)));
+        model.addAttribute("availableResearchers", DatabaseManager.getResearchersExcludingProjectId(projectId));
+        model.addAttribute("projectResearchers", DatabaseManager.getResearchersByProjectId(projectId));
 
         model.addAttribute("content", "manage-researcher");
         return "layout";
@@ -358,8 +321,8 @@ public class ProjectController {
         model.addAttribute("removeMessage", success ? "Researcher removed successfully" : "Failed to remove researcher");
 
         // refresh lists
-        model.addAttribute("availableResearchers", Arrays.asList(DatabaseManager.getResearchersExcludingProjectId(projectId, true)));
-        model.addAttribute("projectResearchers", Arrays.asList(DatabaseManager.getResearchersByProjectId(projectId, true)));
+        model.addAttribute("availableResearchers", DatabaseManager.getResearchersExcludingProjectId(projectId));
+        model.addAttribute("projectResearchers", DatabaseManager.getResearchersByProjectId(projectId));
 
         model.addAttribute("content", "manage-researcher");
         return "layout";
@@ -435,25 +398,11 @@ public class ProjectController {
 
         // load work packages for dropdown
         int projectId = Integer.parseInt(projectKey);
-        List<String> wpStrings = DatabaseManager.getWorkPackagesByProject(projectId, true);
-
-        // build id/title maps
-        List<Map<String, Object>> workPackages = new ArrayList<>();
-        for (String wp : wpStrings) {
-            String[] parts = wp.split(" - ", 2);
-            Map<String,Object> m = new HashMap<>();
-            m.put("id", Integer.parseInt(parts[0]));
-            m.put("title", parts[1]);
-            // add to the list
-            workPackages.add(m);
-        }
-
-        String[] taskPriority = DatabaseManager.getAllPriority(true);
-        String[] taskStatus = DatabaseManager.getAllStatus(true);
+        ReferenceData referenceData = ReferenceData.get();
 
-        model.addAttribute("workPackages", workPackages);
-        model.addAttribute("taskPriority", taskPriority);
-        model.addAttribute("taskStatus", taskStatus);
+        model.addAttribute("workPackages", DatabaseManager.getWorkPackagesByProject(projectId));
+        model.addAttribute("taskPriority", referenceData.getPriorities());
+        model.addAttribute("taskStatus", referenceData.getStatuses());
         model.addAttribute("content", "add-task");
         return "layout";
     }
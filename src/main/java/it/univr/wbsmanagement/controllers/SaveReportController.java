@@ -1,70 +1,162 @@
 package it.univr.wbsmanagement.controllers;
 
 import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.StoredReport;
 import it.univr.wbsmanagement.models.User;
-import org.springframework.core.io.ClassPathResource;
+import it.univr.wbsmanagement.reports.ReportJobs;
+import it.univr.wbsmanagement.reports.ReportStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-
-import java.time.LocalDate;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.*;
-import org.springframework.stereotype.Controller;
-import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
+ * Generates the monthly timesheet report of the current user as a PDF.
+ * <p>
+ * The report is rendered in the background by {@link ReportJobs}: the request only queues a
+ * job, whose page polls its status and offers the download once the report is stored. Stored
+ * reports are downloaded from the files of the {@link ReportStore}.
+ * </p>
  */
 @Controller
 public class SaveReportController {
 
+    private final ReportJobs reportJobs;
+    private final ReportStore reportStore;
+
+    public SaveReportController(ReportJobs reportJobs, ReportStore reportStore) {
+        this.reportJobs = reportJobs;
+        this.reportStore = reportStore;
+    }
+
     /**
-     * Handles the request to display the report saving page.
+     * Queues the report of the month containing the target day.
      *
-     * @param targetDay The target day for which the report is being saved.
-     * @param model     The model to add attributes to the view.
-     * @return The name of the view to render.
+     * @param targetDay   a day of the month of the report.
+     * @param currentUser the authenticated user.
+     * @return a redirect to the page of the job.
      */
     @PostMapping("/save-report/{targetDay}/print-report")
-    public ResponseEntity<InputStreamResource> handlePrintReport(
-            @PathVariable @DateTimeFormat(iso = ISO.DATE) LocalDate targetDay
-    ) throws IOException {
-        /*
-        // 1) Current user & ID
-        User currentUser = DatabaseManager.getUser();
-        int userId = currentUser.getUserId();
+    public String handlePrintReport(
+            @PathVariable @DateTimeFormat(iso = ISO.DATE) LocalDate targetDay,
+            @AuthenticationPrincipal(expression = "user") User currentUser
+    ) {
+        ReportJobs.Job job = reportJobs.submit(currentUser.getUserId(), currentUser.getEmail(), YearMonth.from(targetDay));
+        return "redirect:/save-report/jobs/" + job.getId();
+    }
+
+    /**
+     * Displays a report job; the page polls its status until the report can be downloaded.
+     *
+     * @param jobId       the id of the job.
+     * @param currentUser the authenticated user.
+     * @param model       the Spring model to inject attributes into the view.
+     * @return the Thymeleaf layout page.
+     */
+    @GetMapping("/save-report/jobs/{jobId}")
+    public String showReportJob(@PathVariable String jobId,
+                                @AuthenticationPrincipal(expression = "user") User currentUser,
+                                Model model) {
+        ReportJobs.Job job = findJob(jobId, currentUser);
+
+        model.addAttribute("today", job.getMonth().atDay(1));
+        model.addAttribute("job", job);
+        model.addAttribute("content", "report-job");
+        return "layout";
+    }
 
-        // 1) Determine month range
-        LocalDate firstDayOfMonth = LocalDate.from(targetDay.getMonth());
-        LocalDate prevFirstDayOfMonth = firstDayOfMonth.plusMonths(1);
-        LocalDate nextFirstDayOfMonth = firstDayOfMonth.minusMonths(1);
-        LocalDate lastDayOfMonth = nextFirstDayOfMonth.minusDays(1);
-        */
+    /**
+     * Returns the status of a report job, polled by its page.
+     *
+     * @param jobId       the id of the job.
+     * @param currentUser the authenticated user.
+     * @return the id, month and status of the job, with the download URL once it is done.
+     */
+    @GetMapping("/save-report/jobs/{jobId}/status")
+    @ResponseBody
+    public Map<String, Object> getReportJobStatus(@PathVariable String jobId,
+                                                  @AuthenticationPrincipal(expression = "user") User currentUser) {
+        ReportJobs.Job job = findJob(jobId, currentUser);
 
-        String monthName = targetDay.getYear() + "_" + targetDay.getMonth().toString();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", job.getId());
+        status.put("month", job.getMonth().toString());
+        status.put("status", job.getStatus().name());
+        if (job.getStatus() == ReportJobs.Status.DONE) {
+            status.put("downloadUrl", "/save-report/reports/" + job.getReportId());
+        }
+        return status;
+    }
 
-        // 1) Load the file from classpath:/static/reports/placeholder.pdf
-        ClassPathResource pdf = new ClassPathResource("static/reports/reportSample.pdf");
+    /**
+     * Sends a stored report of the current user from the {@link ReportStore}, with byte ranges
+     * and conditional requests, so repeated and interrupted downloads cost almost nothing.
+     *
+     * @param reportId    the id of the report.
+     * @param currentUser the authenticated user.
+     * @param request     the request, with its Range and conditional headers.
+     * @param response    the response the PDF is sent to, as an attachment named after the month.
+     * @throws IOException if the report file cannot be written or sent.
+     */
+    @GetMapping("/save-report/reports/{reportId}")
+    public void downloadReport(@PathVariable int reportId,
+                               @AuthenticationPrincipal(expression = "user") User currentUser,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        StoredReport report = DatabaseManager.getUserReport(reportId, currentUser.getUserId());
+        ReportStore.Entry file = (report != null) ? reportStore.file(report) : null;
+        if (file == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Report not found");
+        }
 
-        // 2) Prepare headers: attachment + suggested filename
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"report_" + monthName + ".pdf\"");
+        YearMonth month = YearMonth.from(report.month());
+        String monthName = month.getYear() + "_" + month.getMonth().toString();
+        long createdAt = (report.createdAt() != null)
+                ? report.createdAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : Files.getLastModifiedTime(file.path()).toMillis();
+
+        FileDownloads.send(request, response, file.path(), file.contentHash(), createdAt,
+                MediaType.APPLICATION_PDF_VALUE, "report_" + monthName + ".pdf");
+    }
+
+    /**
+     * Answers 503 when the report queue is full, so the client retries later.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleQueueFull(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .contentType(MediaType.TEXT_PLAIN)
+                .body("Too many reports are being generated, please retry in a minute.");
+    }
 
-        // 3) Build the response entity
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentLength(pdf.contentLength())
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(new InputStreamResource(pdf.getInputStream()));
+    private ReportJobs.Job findJob(String jobId, User currentUser) {
+        ReportJobs.Job job = reportJobs.get(jobId, currentUser.getUserId());
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Report job not found");
+        }
+        return job;
     }
 }
@@ -1,12 +1,12 @@
 package it.univr.wbsmanagement.controllers;
 
 import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.database.ReferenceData;
+import it.univr.wbsmanagement.models.TaskDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.*;
-
 @Controller
 public class TaskController {
 
@@ -19,74 +19,36 @@ public class TaskController {
     @GetMapping("/task/{taskId}")
     public String showTaskDetails(@PathVariable int taskId, Model model) {
         // 1. Retrieve task related project And work package data
-        Map<String, String> metadata = DatabaseManager.getProjectAndWorkPackageFromTaskId(taskId);
-        String taskTitle = metadata.get("t_title");
-        int workPackageId = Integer.parseInt(metadata.get("wp_id"));
-        String workPackageTitle = metadata.get("wp_title");
-        int projectId = Integer.parseInt(metadata.get("proj_id"));
-        String projectTitle = metadata.get("proj_title");
-
-        String wpStartDate = metadata.get("wp_sdate");
-        String wpEndDate = metadata.get("wp_edate");
-        String tDeadline = metadata.get("t_deadline");
-        String tPriorityId = metadata.get("t_priorityId");
-        String tStatusId = metadata.get("t_statusId");
+        TaskDetails task = DatabaseManager.getTaskDetails(taskId);
+        if (task == null) {
+            return "redirect:/project";
+        }
 
         model.addAttribute("taskId", taskId);
-        model.addAttribute("taskTitle", taskTitle);
-        model.addAttribute("workPackageId", workPackageId);
-        model.addAttribute("workPackageTitle", workPackageTitle);
-        model.addAttribute("projectId", projectId);
-        model.addAttribute("projectTitle", projectTitle);
-
-        String priority_name = DatabaseManager.getPriorityById(Integer.parseInt(tPriorityId), true);
-        String status_name = DatabaseManager.getStatusById(Integer.parseInt(tStatusId), true);
-
-        model.addAttribute("wpStartDate", wpStartDate);
-        model.addAttribute("wpEndDate", wpEndDate);
-        model.addAttribute("tDeadline", tDeadline.substring(0, 10)); // format YYYY-MM-DD
+        model.addAttribute("taskTitle", task.title());
+        model.addAttribute("workPackageId", task.workPackageId());
+        model.addAttribute("workPackageTitle", task.workPackageTitle());
+        model.addAttribute("projectId", task.projectId());
+        model.addAttribute("projectTitle", task.projectTitle());
+
+        String priority_name = DatabaseManager.getPriorityById(task.priorityId());
+        String status_name = DatabaseManager.getStatusById(task.statusId());
+
+        model.addAttribute("wpStartDate", task.workPackageStart());
+        model.addAttribute("wpEndDate", task.workPackageEnd());
+        model.addAttribute("tDeadline", task.deadline());
         model.addAttribute("priority_name", priority_name);
         model.addAttribute("status_name", status_name);
 
         // 2. Researchers available to assign (from project_visibility)
-        String[] avail = DatabaseManager.getResearchersByProjectIdAndExcludedByTaskId(projectId, taskId, true);
-        model.addAttribute("availableResearchers", Arrays.asList(avail));
-
-        // 3. Use a single call to getUsersAndAssignmentsHoursByTasks:
-        //    drives both the remove-dropdown and the assignments table
-        List<HashMap<String,String>> raw = DatabaseManager.getUsersAndAssignmentsHoursByTasks(taskId);
-
-        List<Map<String,Object>> assignments = new ArrayList<>();
-        List<String> assignedResearchers = new ArrayList<>();
-
-        for (HashMap<String,String> row : raw) {
-            // each map has one entry: key="id - email", value="consumed - hypothetic"
-            for (Map.Entry<String,String> e : row.entrySet()) {
-                String userKey   = e.getKey();   // e.g. "7 - alice@example.com"
-                String hoursVal  = e.getValue(); // e.g. "5 - 8"
-
-                String[] userParts  = userKey.split(" - ", 2);
-                String[] effortParts= hoursVal.split(" - ", 2);
-
-                // build table row
-                Map<String,Object> entry = new HashMap<>();
-                entry.put("userName", userParts[1]);
-                entry.put("effortConsumed", Integer.parseInt(effortParts[0]));
-                entry.put("effortHypothetic", Integer.parseInt(effortParts[1]));
-                assignments.add(entry);
-
-                // deposit for the "remove" dropdown
-                assignedResearchers.add(userKey);
-            }
-        }
+        model.addAttribute("availableResearchers", DatabaseManager.getResearchersByProjectIdAndExcludedByTaskId(task.projectId(), taskId));
 
-        model.addAttribute("assignments", assignments);
-        model.addAttribute("assignedResearchers", assignedResearchers);
+        // 3. A single call to getAssignmentHoursByTask drives both the remove-dropdown and the assignments table
+        model.addAttribute("assignments", DatabaseManager.getAssignmentHoursByTask(taskId));
 
-        String[] allPriority = DatabaseManager.getAllPriority(true);
-        String[] allStatus = DatabaseManager.getAllStatus(true);
-        model.addAttribute("allPriority", allPriority);
-        model.addAttribute("allStatus", allStatus);
+        ReferenceData referenceData = ReferenceData.get();
+        model.addAttribute("allPriority", referenceData.getPriorities());
+        model.addAttribute("allStatus", referenceData.getStatuses());
 
         // 4. Render task-details fragment
         model.addAttribute("content", "task-details");
@@ -138,12 +100,14 @@ public class TaskController {
     @GetMapping("/task/{taskId}/delete")
     public String deleteTask(@PathVariable int taskId) {
 
-        Map<String, String> metadata = DatabaseManager.getProjectAndWorkPackageFromTaskId(taskId);
-        int projectId = Integer.parseInt(metadata.get("proj_id"));
+        TaskDetails task = DatabaseManager.getTaskDetails(taskId);
+        if (task == null) {
+            return "redirect:/project";
+        }
 
         DatabaseManager.deleteTaskById(taskId);
 
-        return "redirect:/project/" + projectId;
+        return "redirect:/project/" + task.projectId();
     }
 
     /**
@@ -1,15 +1,32 @@
 package it.univr.wbsmanagement.database;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
-import it.univr.wbsmanagement.models.User;
-
-import static java.lang.Math.abs;
+import java.util.Set;
+
+import it.univr.wbsmanagement.models.AssignmentHours;
+import it.univr.wbsmanagement.models.MilestoneRef;
+import it.univr.wbsmanagement.models.MonthlyHours;
+import it.univr.wbsmanagement.models.ProjectRef;
+import it.univr.wbsmanagement.models.ProjectTree;
+import it.univr.wbsmanagement.models.StoredReport;
+import it.univr.wbsmanagement.models.TaskDetails;
+import it.univr.wbsmanagement.models.TaskHours;
+import it.univr.wbsmanagement.models.TaskRef;
+import it.univr.wbsmanagement.models.TimeEntryRow;
+import it.univr.wbsmanagement.models.Timesheet;
+import it.univr.wbsmanagement.models.UserRef;
+import it.univr.wbsmanagement.models.WorkPackageRef;
 
 /**
  * Provides methods for managing the database connection and operations.
@@ -21,288 +38,26 @@ import static java.lang.Math.abs;
 public class DatabaseManager {
 
     /**
-     * The currently authenticated user.
+     * The pooled data source every connection is borrowed from.
+     * It is built by Spring from the {@code spring.datasource} settings in application.yml
+     * and handed over by {@link it.univr.wbsmanagement.config.DatabaseConfig} at startup.
      */
-    private static User user;
+    private static volatile DataSource dataSource;
 
     /**
-     * The H2 database URL. Creates a file named "database.db" in the "src/main/resources" folder.
-     * DB_CLOSE_ON_EXIT=FALSE means the database won't auto-close when the JVM exits.
+     * Rows read per query by the exports: a connection is borrowed for one page at a time.
      */
-    private static final String DB_URL = "jdbc:h2:file:./src/main/resources/database.db;DB_CLOSE_ON_EXIT=FALSE";
-
-    // SQL statements for creating tables and inserting default values, adapted for H2.
-    private static final String createRolesTableSQL = """
-            CREATE TABLE IF NOT EXISTS roles (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                role_name VARCHAR(255) UNIQUE NOT NULL
-            );
-        """;
-
-    private static final String createUsersTableSQL = """
-            CREATE TABLE IF NOT EXISTS users (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                email VARCHAR(255) UNIQUE NOT NULL,
-                password VARCHAR(255) NOT NULL,
-                role_id INT NOT NULL,
-                privacy_accepted BOOLEAN DEFAULT FALSE,
-                working_hours_weekly INT NOT NULL,
-                FOREIGN KEY (role_id) REFERENCES roles(id)
-            );
-        """;
-
-    private static final String createPriorityTableSQL = """
-            CREATE TABLE IF NOT EXISTS priority (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                priority_name VARCHAR(255) UNIQUE NOT NULL
-            );
-        """;
-
-    private static final String createStatusTableSQL = """
-            CREATE TABLE IF NOT EXISTS status (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                status_name VARCHAR(255) UNIQUE NOT NULL
-            );
-        """;
-
-    // In H2, "INSERT OR IGNORE" doesn't exist. We split them into conditional inserts.
-    private static final String insertRolesSQL = """
-            INSERT INTO roles (role_name)
-                SELECT 'Researcher'
-                WHERE NOT EXISTS (SELECT 1 FROM roles WHERE role_name = 'Researcher');
-            INSERT INTO roles (role_name)
-                SELECT 'Supervisor'
-                WHERE NOT EXISTS (SELECT 1 FROM roles WHERE role_name = 'Supervisor');
-            INSERT INTO roles (role_name)
-                SELECT 'Administrator'
-                WHERE NOT EXISTS (SELECT 1 FROM roles WHERE role_name = 'Administrator');
-        """;
-
-    private static final String insertPrioritySQL = """
-            INSERT INTO priority (priority_name)
-                SELECT 'High'
-                WHERE NOT EXISTS (SELECT 1 FROM priority WHERE priority_name = 'High');
-            INSERT INTO priority (priority_name)
-                SELECT 'Medium'
-                WHERE NOT EXISTS (SELECT 1 FROM priority WHERE priority_name = 'Medium');
-            INSERT INTO priority (priority_name)
-                SELECT 'Low'
-                WHERE NOT EXISTS (SELECT 1 FROM priority WHERE priority_name = 'Low');
-        """;
-
-    private static final String insertStatusSQL = """
-            INSERT INTO status (status_name)
-                SELECT 'In Progress'
-                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'In Progress');
-            INSERT INTO status (status_name)
-                SELECT 'Waiting dependency'
-                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Waiting dependency');
-            INSERT INTO status (status_name)
-                SELECT 'Blocked'
-                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Blocked');
-            INSERT INTO status (status_name)
-                SELECT 'Completed'
-                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Completed');
-            INSERT INTO status (status_name)
-                SELECT 'Not started'
-                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Not started');
-        """;
-
-    private static final String insertAdminSQL = """
-            -- We do a similar conditional approach for the admin user
-            INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly)
-            SELECT 'admin', 'admin', (SELECT id FROM roles WHERE role_name = 'Administrator'), TRUE, 0
-            WHERE NOT EXISTS (SELECT 1 FROM users WHERE email='admin');
-        """;
-
-    private static final String insertTestUsersSQL = """
-            INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly)
-            SELECT 'supervisor', 'supervisor', (SELECT id FROM roles WHERE role_name = 'Supervisor'), TRUE, 0
-            WHERE NOT EXISTS (SELECT 1 FROM users WHERE email='supervisor');
-        
-            INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly)
-            SELECT 'researcher', 'researcher', (SELECT id FROM roles WHERE role_name = 'Researcher'), TRUE, 0
-            WHERE NOT EXISTS (SELECT 1 FROM users WHERE email='researcher');
-        """;
-
-    private static final String insertNotWorkingHoursDestination = """
-            INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
-            SELECT 'TimeOffProj', 'Contains various reason to have time off-working', (SELECT id FROM users WHERE email='admin'), (SELECT id FROM users WHERE email='supervisor')
-            WHERE NOT EXISTS (SELECT 1 FROM projects WHERE title='TimeOffProj');
-        
-            INSERT INTO work_packages (project_id, title, description, start_date, end_date)
-            SELECT (SELECT id FROM projects WHERE title='TimeOffProj'), 'TimeOffWP_Charg', 'It contains the vacancy task', CAST('1980-01-01' AS DATE), CAST('2099-12-31' AS DATE)
-            WHERE NOT EXISTS (SELECT 1 FROM work_packages WHERE title='TimeOffWP_Charg');
-            
-            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
-            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_Charg'), 'Generic_not_work', 'Hours not worked by the user', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
-            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Generic_not_work');
-            
-            INSERT INTO work_packages (project_id, title, description, start_date, end_date)
-            SELECT (SELECT id FROM projects WHERE title='TimeOffProj'), 'TimeOffWP_NotCharg', 'It contains the not chargable task - like blood donation', CAST('1980-01-01' AS DATE), CAST('2099-12-31' AS DATE)
-            WHERE NOT EXISTS (SELECT 1 FROM work_packages WHERE title='TimeOffWP_NotCharg');
-            
-            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
-            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Medical_certification', 'Hours not worked by the user certificated by a doctor', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
-            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Medical_certification');
-            
-            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
-            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Blood_donation', 'Hours not worked by the user for blood donation', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
-            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Blood_donation');
-            
-            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
-            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Exam', 'Hours not worked by the user for certificate exam', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
-            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Exam');
-            
-            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
-            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Public_Holyday', 'Public holyday', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
-            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Public_Holyday');
-        """;
-
-    private static final String createRecoverCredentialsRequestsTableSQL = """
-            CREATE TABLE IF NOT EXISTS recover_credentials_requests (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                email VARCHAR(255) NOT NULL,
-                evaded BOOLEAN DEFAULT FALSE,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-            );
-        """;
-
-    private static final String createProjectsTableSQL = """
-            CREATE TABLE IF NOT EXISTS projects (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                title VARCHAR(255) NOT NULL UNIQUE,
-                description VARCHAR(255),
-                created_by_admin_id INT NOT NULL,
-                supervisor_id INT NOT NULL,
-                created_at DATE DEFAULT CURRENT_DATE,
-                archived BOOLEAN DEFAULT FALSE,
-                FOREIGN KEY (created_by_admin_id) REFERENCES users(id),
-                FOREIGN KEY (supervisor_id) REFERENCES users(id)
-            );
-        """;
-
-    private static final String createWorkPackagesTableSQL = """
-            CREATE TABLE IF NOT EXISTS work_packages (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                project_id INT NOT NULL,
-                title VARCHAR(255) NOT NULL,
-                description VARCHAR(255),
-                start_date DATE,
-                end_date DATE,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE
-            );
-        """;
-
-    private static final String createTasksTableSQL = """
-            CREATE TABLE IF NOT EXISTS tasks (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                work_package_id INT NOT NULL,
-                title VARCHAR(255) NOT NULL,
-                description VARCHAR(255) NOT NULL,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                effort_hours INT NOT NULL,
-                duration_hours INT NOT NULL,
-                deadline DATE NOT NULL,
-                priority_id INT NOT NULL,
-                status_id INT NOT NULL,
-                FOREIGN KEY (work_package_id) REFERENCES work_packages(id) ON DELETE CASCADE
-            );
-        """;
-
-    private static final String createDependenciesTableSQL = """
-            CREATE TABLE IF NOT EXISTS dependencies (
-                task_id_blocked INT NOT NULL,
-                task_id_required INT NOT NULL,
-                PRIMARY KEY (task_id_blocked, task_id_required),
-                FOREIGN KEY (task_id_blocked) REFERENCES tasks(id),
-                FOREIGN KEY (task_id_required) REFERENCES tasks(id) ON DELETE CASCADE
-            );
-        """;
-
-    private static final String createTaskAssignmentsTableSQL = """
-            CREATE TABLE IF NOT EXISTS task_assignments (
-                task_id INT NOT NULL,
-                user_id INT NOT NULL,
-                effort_hypothetic INT NOT NULL,
-                effort_consumed INT NOT NULL,
-                PRIMARY KEY (task_id, user_id),
-                FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE,
-                FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-            );
-        """;
-
-    private static final String createMilestonesTableSQL = """
-            CREATE TABLE IF NOT EXISTS milestones (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                project_id INT NOT NULL,
-                title VARCHAR(255) NOT NULL,
-                description VARCHAR(255)
-            );
-        """;
-
-    private static final String createMilestoneAssignmentsTableSQL = """
-            CREATE TABLE IF NOT EXISTS milestone_assignments (
-                milestone_id INT NOT NULL,
-                task_id INT NOT NULL,
-                PRIMARY KEY (milestone_id, task_id),
-                FOREIGN KEY (milestone_id) REFERENCES milestones(id) ON DELETE CASCADE,
-                FOREIGN KEY (task_id) REFERENCES tasks(id)
-            );
-        """;
-
-    private static final String createTimeEntriesTableSQL = """
-            CREATE TABLE IF NOT EXISTS time_entries (
-                user_id INT NOT NULL,
-                task_id INT NOT NULL,
-                entry_date DATE DEFAULT CURRENT_DATE,
-                hours DECIMAL(3,1) NOT NULL,
-                PRIMARY KEY (user_id, task_id, entry_date),
-                FOREIGN KEY (user_id) REFERENCES users(id),
-                FOREIGN KEY (task_id) REFERENCES tasks(id)
-            );
-        """;
-
-    private static final String createCreateReportsTableSQL = """
-            CREATE TABLE IF NOT EXISTS reports (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                project_id INT NOT NULL,
-                report_data BLOB,  -- or VARCHAR if you prefer
-                signed BOOLEAN NOT NULL DEFAULT FALSE,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                retention_until DATE,
-                FOREIGN KEY (project_id) REFERENCES projects(id)
-            );
-        """;
-
-    private static final String createProjectVisibilityTableSQL = """
-            CREATE TABLE IF NOT EXISTS project_visibility (
-                project_id INT NOT NULL,
-                user_id INT NOT NULL,
-                PRIMARY KEY (project_id, user_id),
-                FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE,
-                FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-            );
-        """;
+    private static final int EXPORT_PAGE_SIZE = 500;
 
     private static final String queryUsersFromEmail = "SELECT id, role_id, password FROM users WHERE email = ?";
     private static final String queryUsersRoleIdFromEmail = "SELECT role_id FROM users WHERE email = ?";
     private static final String queryUsersUpdatePassword = "UPDATE users SET password = ? WHERE email = ?";
     private static final String queryUsersUpdateRoleId = "UPDATE users SET role_id = ? WHERE email = ?";
-    private static final String queryRolesRoleNameFromId = "SELECT role_name FROM roles WHERE id = ?";
-    private static final String queryRoles = "SELECT role_name FROM roles";
-    private static final String queryPriority = "SELECT id, priority_name FROM priority";
-    private static final String queryStatus = "SELECT id, status_name FROM status";
-    private static final String queryPriorityById = "SELECT priority_name FROM priority WHERE id = ?";
-    private static final String queryStatusById = "SELECT status_name FROM status WHERE id = ?";
     private static final String queryUpdatePriorityTask = "UPDATE tasks SET priority_id = ? WHERE id = ?";
     private static final String queryUpdateStatusTask = "UPDATE tasks SET status_id = ? WHERE id = ?";
-    private static final String insertRolesIdFromRoleName = "SELECT id FROM roles WHERE role_name = ?";
     private static final String insertUser = """
             INSERT INTO users (email, password, role_id, working_hours_weekly, privacy_accepted)
-            VALUES (?, ?, (SELECT id FROM roles WHERE role_name = ?), ?, false)
+            VALUES (?, ?, ?, ?, false)
         """;
     private static final String queryRecoverCredentialsRequestsActiveFromEmail = """
             SELECT created_at FROM recover_credentials_requests
@@ -324,7 +79,7 @@ public class DatabaseManager {
     private static final String queryRecoverCredentialsRequestsClose = """
             UPDATE recover_credentials_requests
             SET evaded = true
-            WHERE email = ?
+            WHERE email = ? AND evaded = false
         """;
     private static final String queryUsersUpdatePrivacy = """
             UPDATE users SET privacy_accepted = true
@@ -360,28 +115,28 @@ public class DatabaseManager {
         """;
     private static final String queryUsersSupervisors = """
             SELECT id, email FROM users
-            WHERE role_id = (SELECT id FROM roles WHERE role_name = 'Supervisor')
+            WHERE role_id = ?
         """;
     private static final String queryUsersResearchersByProjectId = """
             SELECT u.id, u.email
             FROM users u
             INNER JOIN project_visibility pv ON u.id = pv.user_id
             WHERE pv.project_id = ?
-              AND role_id = (SELECT id FROM roles WHERE role_name = 'Researcher')
+              AND role_id = ?
         """;
     private static final String queryUsersResearchersByProjectIdAndExcludedByTaskId = """
             SELECT DISTINCT u.id, u.email
             FROM users u
             INNER JOIN project_visibility pv ON u.id = pv.user_id
             WHERE pv.project_id = ?
-              AND role_id = (SELECT id FROM roles WHERE role_name = 'Researcher')
+              AND role_id = ?
               AND NOT EXISTS (SELECT 1 FROM task_assignments ta WHERE ta.user_id = u.id AND ta.task_id = ?)
         """;
     private static final String queryUsersResearchersExcludingProjectId = """
             SELECT DISTINCT u.id, u.email
             FROM users u
             LEFT JOIN project_visibility pv ON u.id = pv.user_id AND pv.project_id = ?
-            WHERE u.role_id = (SELECT id FROM roles WHERE role_name = 'Researcher')
+            WHERE u.role_id = ?
               AND pv.user_id IS NULL
         """;
     private static final String queryProjectsVisibilityByUserId = """
@@ -400,9 +155,10 @@ public class DatabaseManager {
             VALUES (?, ?, ?, ?, ?)
         """;
     private static final String queryTasksByWorkPackage = """
-            SELECT t.id, t.title
+            SELECT projs.id AS projs_id, projs.title AS projs_title, t.id AS task_id, t.title AS task_title
             FROM tasks t
             JOIN work_packages wp ON t.work_package_id = wp.id
+            JOIN projects projs ON projs.id = wp.project_id
             WHERE wp.id = ?
         """;
     private static final String queryWorkPackagesByProject = """
@@ -417,6 +173,15 @@ public class DatabaseManager {
     private static final String queryProjectsActive = "SELECT DISTINCT id, title FROM projects WHERE archived = FALSE";
     private static final String queryProjectsArchived = "SELECT DISTINCT id, title FROM projects WHERE archived = TRUE";
     private static final String queryIsProjectsArchivedById = "SELECT archived FROM projects WHERE id = ?";
+    private static final String queryProjectTree = """
+            SELECT p.id AS proj_id, p.title AS proj_title, p.supervisor_id AS proj_supervisor_id, p.archived AS proj_archived,
+                   wp.id AS wp_id, wp.title AS wp_title, t.id AS t_id, t.title AS t_title
+            FROM projects p
+            LEFT JOIN work_packages wp ON wp.project_id = p.id
+            LEFT JOIN tasks t ON t.work_package_id = wp.id
+            WHERE p.id = ?
+            ORDER BY wp.id, t.id
+        """;
     private static final String queryUpdateProjectsInArchived = "UPDATE projects SET archived = TRUE WHERE id = ?";
     private static final String insertMilestone = """
             INSERT INTO milestones (project_id, title, description)
@@ -430,9 +195,11 @@ public class DatabaseManager {
             SELECT id, title FROM milestones WHERE project_id = ?
         """;
     private static final String queryTasksByUser = """
-            SELECT t.id, t.title
+            SELECT projs.id AS projs_id, projs.title AS projs_title, t.id AS task_id, t.title AS task_title
             FROM tasks t
             INNER JOIN task_assignments ta ON t.id = ta.task_id
+            INNER JOIN work_packages wp ON wp.id = t.work_package_id
+            INNER JOIN projects projs ON projs.id = wp.project_id
             WHERE ta.user_id = ?
         """;
     private static final String queryUpdateWorkPackage = """
@@ -450,9 +217,10 @@ public class DatabaseManager {
     private static final String queryWorkPackageTimeRangeById = "SELECT start_date, end_date FROM work_packages WHERE id = ?";
     private static final String queryWorkPackageById = "SELECT start_date, end_date, title, project_id FROM work_packages WHERE id = ?";
     private static final String queryTasksByProjectId = """
-            SELECT DISTINCT t.id, t.title
+            SELECT DISTINCT projs.id AS projs_id, projs.title AS projs_title, t.id AS task_id, t.title AS task_title
             FROM work_packages wp
             INNER JOIN tasks t ON wp.id = t.work_package_id
+            INNER JOIN projects projs ON projs.id = wp.project_id
             WHERE wp.project_id = ?
         """;
     private static final String countMilestoneByTaskId = """
@@ -465,6 +233,7 @@ public class DatabaseManager {
             FROM users u
             INNER JOIN task_assignments ta ON u.id = ta.user_id
             WHERE task_id = ?
+            ORDER BY u.id
         """;
     private static final String insertTaskAssignments = """
             INSERT INTO task_assignments (task_id, user_id, effort_hypothetic, effort_consumed)
@@ -499,13 +268,14 @@ public class DatabaseManager {
     // Queste sono i progetti e task a cui è associato attivamente un utente per cui oggi non ha abbia già inserito un record
     private static final String queryRetrieveTimeEntriesAvaibilityByUserAndDay = """
         SELECT projs.id AS projs_id, projs.title AS projs_title, t.id AS task_id, t.title AS task_title
-        FROM project_visibility pv
-        INNER JOIN projects projs ON projs.id = pv.project_id
-        INNER JOIN work_packages wp ON wp.project_id = pv.project_id
-        INNER JOIN task_assignments taskAsgn ON taskAsgn.user_id = pv.user_id
+        FROM task_assignments taskAsgn
         INNER JOIN tasks t ON t.id = taskAsgn.task_id
+        INNER JOIN work_packages wp ON wp.id = t.work_package_id
+        INNER JOIN projects projs ON projs.id = wp.project_id
+        INNER JOIN project_visibility pv ON pv.project_id = projs.id
+                                        AND pv.user_id = taskAsgn.user_id
         WHERE taskAsgn.user_id = ?
-          AND archived = FALSE
+          AND projs.archived = FALSE
           AND NOT EXISTS (SELECT 1 FROM time_entries te
                           WHERE te.task_id = taskAsgn.task_id
                             AND te.user_id = taskAsgn.user_id
@@ -518,46 +288,237 @@ public class DatabaseManager {
         INNER JOIN tasks t ON t.work_package_id = wp.id
         WHERE projs.title = 'TimeOffProj'
     """;
-    private static final String updateEffortConsumedInTaskAssignments = """
+    // Task disponibili per la giornata e task di assenza, letti in una sola query
+    private static final String queryTasksAvailableAndNonWorkingByUserAndDay =
+            queryRetrieveTimeEntriesAvaibilityByUserAndDay + "UNION\n" + queryNonWorkingTasks + "ORDER BY projs_id, task_id\n";
+    private static final String queryTimeEntriesWithTitlesByUserAndDay = """
+        SELECT projs.id AS projs_id, projs.title AS projs_title, t.id AS task_id, t.title AS task_title, te.hours AS te_hours
+        FROM time_entries te
+        INNER JOIN tasks t ON t.id = te.task_id
+        INNER JOIN work_packages wp ON wp.id = t.work_package_id
+        INNER JOIN projects projs ON projs.id = wp.project_id
+        WHERE te.user_id = ?
+          AND te.entry_date = ?
+        ORDER BY projs.id, t.id
+    """;
+    private static final String incrementEffortConsumedInTaskAssignments = """
         UPDATE task_assignments
-        SET effort_consumed = ?
+        SET effort_consumed = effort_consumed + ?
         WHERE user_id = ?
           AND task_id = ?
     """;
-    private static final String queryEffortConsumedInTaskAssignments = "SELECT t.effort_consumed, t.effort_hypothetic FROM task_assignments t WHERE t.user_id = ? AND t.task_id = ?";
-    private static final String querySingleTimeEntryHours = """
-        SELECT hours
-        FROM time_entries
+    private static final String queryRemoveSingleTimeEntryHours = """
+        DELETE FROM time_entries
         WHERE user_id = ?
           AND task_id = ?
           AND entry_date = ?
     """;
-    private static final String queryRemoveSingleTimeEntryHours = """
-        DELETE FROM time_entries
+    private static final String queryTimeEntriesByUserAndRangeForUpdate = """
+        SELECT task_id, entry_date, hours
+        FROM time_entries
+        WHERE user_id = ?
+          AND entry_date >= ?
+          AND entry_date <= ?
+        FOR UPDATE
+    """;
+    private static final String upsertTimeEntry = """
+        MERGE INTO time_entries (user_id, task_id, entry_date, hours)
+        KEY (user_id, task_id, entry_date)
+        VALUES (?, ?, ?, ?)
+    """;
+    // Sostituisce nel task_assignments le ore della entry esistente (se c'è) con le nuove: va eseguita prima di MERGE/DELETE
+    private static final String adjustEffortConsumedForTimeEntry = """
+        UPDATE task_assignments
+        SET effort_consumed = effort_consumed + ? - COALESCE((SELECT CAST(FLOOR(te.hours) AS INT)
+                                                              FROM time_entries te
+                                                              WHERE te.user_id = task_assignments.user_id
+                                                                AND te.task_id = task_assignments.task_id
+                                                                AND te.entry_date = ?), 0)
         WHERE user_id = ?
           AND task_id = ?
-          AND entry_date = ?
+    """;
+    // Ore del mese per progetto, task e giorno; la LEFT JOIN restituisce le ore contrattuali anche senza entry
+    private static final String queryMonthlyHoursByUser = """
+        SELECT u.working_hours_weekly, projs.id AS projs_id, projs.title AS projs_title,
+               t.id AS task_id, t.title AS task_title, te.entry_date, SUM(te.hours) AS total_hours
+        FROM users u
+        LEFT JOIN time_entries te ON te.user_id = u.id AND te.entry_date BETWEEN ? AND ?
+        LEFT JOIN tasks t ON t.id = te.task_id
+        LEFT JOIN work_packages wp ON wp.id = t.work_package_id
+        LEFT JOIN projects projs ON projs.id = wp.project_id
+        WHERE u.id = ?
+        GROUP BY u.working_hours_weekly, projs.id, projs.title, t.id, t.title, te.entry_date
+        ORDER BY projs.id, t.id, te.entry_date
+    """;
+    // Report mensile di un utente, prodotto dai job di ReportJobs.
+    // source_hash identifica le ore da cui è generato, content_hash il PDF (SHA-256 esadecimali)
+    private static final String insertUserReport = """
+        INSERT INTO reports (user_id, report_month, source_hash, content_hash, report_data, signed, created_at, retention_until)
+        VALUES (?, ?, ?, ?, ?, FALSE, CURRENT_TIMESTAMP, ?)
+    """;
+    private static final String queryUserReportData = """
+        SELECT report_data
+        FROM reports
+        WHERE id = ?
+          AND user_id = ?
+    """;
+    private static final String queryUserReport = """
+        SELECT id, user_id, report_month, content_hash, created_at
+        FROM reports
+        WHERE id = ?
+          AND user_id = ?
+    """;
+    private static final String updateUserReportContentHash = """
+        UPDATE reports
+        SET content_hash = ?
+        WHERE id = ?
+    """;
+    private static final String queryReportContentHashes = """
+        SELECT DISTINCT content_hash
+        FROM reports
+        WHERE content_hash IS NOT NULL
+    """;
+    private static final String queryUserReportBySource = """
+        SELECT id
+        FROM reports
+        WHERE user_id = ?
+          AND report_month = ?
+          AND source_hash = ?
+        ORDER BY created_at DESC
+        LIMIT 1
+    """;
+    private static final String queryUserReportByContent = """
+        SELECT id
+        FROM reports
+        WHERE user_id = ?
+          AND report_month = ?
+          AND content_hash = ?
+        LIMIT 1
+    """;
+    private static final String updateUserReportSource = """
+        UPDATE reports
+        SET source_hash = ?,
+            retention_until = ?
+        WHERE id = ?
+    """;
+    // I report non firmati generati da ore che nel frattempo sono cambiate
+    private static final String deleteStaleUserReports = """
+        DELETE FROM reports
+        WHERE user_id = ?
+          AND report_month = ?
+          AND signed = FALSE
+          AND (source_hash IS NULL OR source_hash <> ?)
+    """;
+    private static final String deleteExpiredReports = """
+        DELETE FROM reports
+        WHERE retention_until < ?
+    """;
+    // Export delle ore: entry con utente, task, WP e progetto; il filtro per progetto è opzionale (NULL = tutti)
+    private static final String queryExportTimeEntriesByUser = """
+        SELECT te.user_id, u.email, te.entry_date, te.hours, projs.id AS projs_id, projs.title AS projs_title,
+               wp.id AS wp_id, wp.title AS wp_title, t.id AS task_id, t.title AS task_title
+        FROM time_entries te
+        INNER JOIN users u ON u.id = te.user_id
+        INNER JOIN tasks t ON t.id = te.task_id
+        INNER JOIN work_packages wp ON wp.id = t.work_package_id
+        INNER JOIN projects projs ON projs.id = wp.project_id
+        WHERE te.user_id = ?
+          AND te.entry_date BETWEEN ? AND ?
+          AND projs.id = COALESCE(?, projs.id)
+          AND (te.user_id, te.entry_date, te.task_id) > (?, ?, ?)
+        ORDER BY te.user_id, te.entry_date, te.task_id
+        LIMIT ?
+    """;
+    private static final String queryExportTimeEntries = """
+        SELECT te.user_id, u.email, te.entry_date, te.hours, projs.id AS projs_id, projs.title AS projs_title,
+               wp.id AS wp_id, wp.title AS wp_title, t.id AS task_id, t.title AS task_title
+        FROM time_entries te
+        INNER JOIN users u ON u.id = te.user_id
+        INNER JOIN tasks t ON t.id = te.task_id
+        INNER JOIN work_packages wp ON wp.id = t.work_package_id
+        INNER JOIN projects projs ON projs.id = wp.project_id
+        WHERE te.entry_date BETWEEN ? AND ?
+          AND projs.id = COALESCE(?, projs.id)
+          AND (te.user_id, te.entry_date, te.task_id) > (?, ?, ?)
+        ORDER BY te.user_id, te.entry_date, te.task_id
+        LIMIT ?
+    """;
+    // Task del foglio settimanale: assegnati all'utente, di assenza, o con ore già caricate nel periodo
+    private static final String queryWeekGridTasks = """
+        SELECT t.id AS task_id, t.title AS task_title
+        FROM tasks t
+        INNER JOIN task_assignments ta ON ta.task_id = t.id
+        WHERE ta.user_id = ?
+        UNION
+        SELECT t.id AS task_id, t.title AS task_title
+        FROM tasks t
+        INNER JOIN work_packages wp ON wp.id = t.work_package_id
+        INNER JOIN projects projs ON projs.id = wp.project_id
+        WHERE projs.title = 'TimeOffProj'
+        UNION
+        SELECT t.id AS task_id, t.title AS task_title
+        FROM tasks t
+        INNER JOIN time_entries te ON te.task_id = t.id
+        WHERE te.user_id = ?
+          AND te.entry_date >= ?
+          AND te.entry_date <= ?
+        ORDER BY task_id
     """;
 
     /**
-     * Sets the currently authenticated user.
+     * Sets the data source used by {@link #getConnection()}.
      *
-     * @param u the User object to store.
+     * @param ds the pooled data source to borrow connections from.
      */
-    public static void setUser(User u) {
-        user = u;
+    public static void setDataSource(DataSource ds) {
+        dataSource = ds;
     }
 
     /**
-     * Obtains a connection to the H2 database.
+     * Borrows a connection to the H2 database from the pool.
+     * Closing the returned connection gives it back to the pool instead of closing the H2 session.
+     * The time spent waiting for the pool is recorded by {@link QueryMetrics}.
      *
      * @return a {@link Connection} object for interacting with the database.
-     * @throws SQLException if a database access error occurs.
+     * @throws SQLException if a database access error occurs, the pool times out or no data source is configured.
      */
     public static Connection getConnection() throws SQLException {
-        // Driver is automatically loaded if we have H2 in the classpath.
-        // If needed, you could do: Class.forName("org.h2.Driver");
-        return DriverManager.getConnection(DB_URL, "sa", "");
+        DataSource ds = dataSource;
+        if (ds == null) {
+            throw new SQLException("DatabaseManager data source not configured");
+        }
+        return QueryMetrics.acquire(ds);
+    }
+
+    /**
+     * Prepares one of the SQL query constants on the given connection.
+     * The statement is served from the {@link StatementCache} of the pooled connection, so
+     * H2 parses and plans each query once per connection instead of once per call. Its
+     * executions are measured by {@link QueryMetrics}, tagged with the calling method and the
+     * name of the query constant.
+     *
+     * @param conn the borrowed connection.
+     * @param sql  the SQL query constant.
+     * @return a prepared statement to be closed by the caller as usual.
+     * @throws SQLException if a database access error occurs.
+     */
+    private static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        return QueryMetrics.instrument(StatementCache.prepare(conn, sql), sql);
+    }
+
+    /**
+     * Prepares an insert whose generated keys are read back. These statements are not kept in
+     * the {@link StatementCache}, but their executions are measured by {@link QueryMetrics} as
+     * for {@link #prepare(Connection, String)}.
+     *
+     * @param conn              the borrowed connection.
+     * @param sql               the SQL insert constant.
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS}.
+     * @return a prepared statement to be closed by the caller.
+     * @throws SQLException if a database access error occurs.
+     */
+    private static PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+        return QueryMetrics.instrument(conn.prepareStatement(sql, autoGeneratedKeys), sql);
     }
 
     /**
@@ -569,7 +530,7 @@ public class DatabaseManager {
      */
     public static Map<String, String> getUserRowByEmail(String email) {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(queryUserRowByUserEmail)) {
+             PreparedStatement ps = prepare(conn, queryUserRowByUserEmail)) {
 
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
@@ -591,74 +552,23 @@ public class DatabaseManager {
     }
 
     /**
-     * Sets up the database structure by creating necessary tables and inserting default values.
+     * Sets up the database structure by applying the pending schema migrations.
      *
-     * It creates the 'roles', 'users', 'recover_credentials_requests' tables if they do not exist,
-     * inserts default roles and an administrator user, and logs success or error messages to the console.
+     * The applied versions are tracked in the 'schema_version' table by {@link SchemaMigrator}:
+     * when the database is already current no DDL or seeding statement is executed.
+     * Success or error messages are logged to the console.
      */
     public static void setupDatabase() {
-        try (Connection conn = getConnection();
-             Statement stmtSetupDatabase = conn.createStatement()) {
-
-            // Create all tables
-            // 1) Create base tables
-            stmtSetupDatabase.execute(createRolesTableSQL);
-            stmtSetupDatabase.execute(createUsersTableSQL);
-            stmtSetupDatabase.execute(createPriorityTableSQL);
-            stmtSetupDatabase.execute(createStatusTableSQL);
-            stmtSetupDatabase.execute(createRecoverCredentialsRequestsTableSQL);
-
-            // 2) Create tables that depend on users
-            stmtSetupDatabase.execute(createProjectsTableSQL);     // references users
-            stmtSetupDatabase.execute(createWorkPackagesTableSQL); // references projects
-            stmtSetupDatabase.execute(createTasksTableSQL);        // references work_packages
-            stmtSetupDatabase.execute(createDependenciesTableSQL); // references tasks
-            stmtSetupDatabase.execute(createTaskAssignmentsTableSQL); // references tasks + users
-
-            // 3) Create additional tables
-            stmtSetupDatabase.execute(createMilestonesTableSQL);          // (optional references project?)
-            stmtSetupDatabase.execute(createMilestoneAssignmentsTableSQL);// references milestones + tasks
-            stmtSetupDatabase.execute(createTimeEntriesTableSQL);         // references tasks + users
-            stmtSetupDatabase.execute(createCreateReportsTableSQL);       // references projects
-            stmtSetupDatabase.execute(createProjectVisibilityTableSQL);   // references projects + users
-
-
-            // Insert default data (roles, priority, status, admin)
-            // H2 doesn't allow multiple statements in a single execute() by default,
-            // so you may need to split them or enable ALLOW_MULTIQUERIES=TRUE.
-            // For simplicity, let's split them manually:
-            for (String sql : insertRolesSQL.split(";")) {
-                if (!sql.trim().isEmpty()) {
-                    stmtSetupDatabase.execute(sql);
-                }
-            }
-            for (String sql : insertPrioritySQL.split(";")) {
-                if (!sql.trim().isEmpty()) {
-                    stmtSetupDatabase.execute(sql);
-                }
-            }
-            for (String sql : insertStatusSQL.split(";")) {
-                if (!sql.trim().isEmpty()) {
-                    stmtSetupDatabase.execute(sql);
-                }
-            }
-            for (String sql : insertAdminSQL.split(";")) {
-                if (!sql.trim().isEmpty()) {
-                    stmtSetupDatabase.execute(sql);
-                }
-            }
-            for (String sql : insertTestUsersSQL.split(";")) {
-                if (!sql.trim().isEmpty()) {
-                    stmtSetupDatabase.execute(sql);
-                }
-            }
-            for (String sql : insertNotWorkingHoursDestination.split(";")) {
-                if (!sql.trim().isEmpty()) {
-                    stmtSetupDatabase.execute(sql);
-                }
-            }
+        try (Connection conn = getConnection()) {
+
+            int applied = SchemaMigrator.migrate(conn, SchemaMigrations.ALL);
+            ReferenceData.reload();
 
-            System.out.println("Database structure set up successfully (H2).");
+            if (applied > 0) {
+                System.out.println("Database structure set up successfully (H2), " + applied + " migration(s) applied.");
+            } else {
+                System.out.println("Database structure is up to date (H2).");
+            }
 
         } catch (SQLException e) {
             System.err.println("Error setting up the database: " + e.getMessage());
@@ -673,7 +583,7 @@ public class DatabaseManager {
      */
     public static String getUserRole(String email) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtRoleId = conn.prepareStatement(queryUsersRoleIdFromEmail)) {
+             PreparedStatement stmtRoleId = prepare(conn, queryUsersRoleIdFromEmail)) {
 
             stmtRoleId.setString(1, email);
 
@@ -682,17 +592,7 @@ public class DatabaseManager {
                     return ""; // No user found.
                 }
 
-                int roleId = rsRoleId.getInt("role_id");
-
-                try (PreparedStatement stmtRoleName = conn.prepareStatement(queryRolesRoleNameFromId)) {
-                    stmtRoleName.setInt(1, roleId);
-
-                    try (ResultSet rsRoleName = stmtRoleName.executeQuery()) {
-                        if (rsRoleName.next()) {
-                            return rsRoleName.getString("role_name");
-                        }
-                    }
-                }
+                return getRoleName(rsRoleId.getInt("role_id"));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -710,7 +610,7 @@ public class DatabaseManager {
      */
     public static boolean updateUserPassword(String email, String newPassword) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtUsersUpdatePassword = conn.prepareStatement(queryUsersUpdatePassword)) {
+             PreparedStatement stmtUsersUpdatePassword = prepare(conn, queryUsersUpdatePassword)) {
             stmtUsersUpdatePassword.setString(1, newPassword);
             stmtUsersUpdatePassword.setString(2, email);
             int rowsUpdated = stmtUsersUpdatePassword.executeUpdate();
@@ -727,112 +627,29 @@ public class DatabaseManager {
      * @return an array of role names.
      */
     public static String[] getAllRoles() {
-        List<String> roles = new ArrayList<>();
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtRoles = conn.prepareStatement(queryRoles);
-             ResultSet rsRoles = stmtRoles.executeQuery()) {
-            while (rsRoles.next()) {
-                roles.add(rsRoles.getString("role_name"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return roles.toArray(new String[0]);
-    }
-
-    /**
-     * Retrieves all role names available in the system.
-     *
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return an array of role names.
-     */
-    public static String[] getAllPriority(boolean formatWithIndex) {
-        List<String> priority = new ArrayList<>();
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtPriority = conn.prepareStatement(queryPriority);
-             ResultSet rsPriority = stmtPriority.executeQuery()) {
-            while (rsPriority.next()) {
-                String priorityUniqueName = ((formatWithIndex) ? (rsPriority.getInt("id") + " - ") : ("")) + rsPriority.getString("priority_name");
-                priority.add(priorityUniqueName);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return priority.toArray(new String[0]);
+        return ReferenceData.get().getRoles().values().toArray(new String[0]);
     }
 
     /**
-     * Retrieves status names available in the system.
+     * Retrieves the name of a priority.
      *
      * @param priorityId priority id.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return an array of role names.
+     * @return the priority name, or an empty string if not found.
      */
-    public static String getPriorityById(int priorityId, boolean formatWithIndex) {
-        String priority = "";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtPriority = conn.prepareStatement(queryPriorityById)){
-
-            stmtPriority.setInt(1, priorityId);
-            ResultSet rsPriority = stmtPriority.executeQuery();
-
-            while (rsPriority.next()) {
-                priority = ((formatWithIndex) ? (priorityId + " - ") : ("")) + rsPriority.getString("priority_name");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return priority;
+    public static String getPriorityById(int priorityId) {
+        String priorityName = ReferenceData.get().getPriorityName(priorityId);
+        return (priorityName != null) ? priorityName : "";
     }
 
     /**
-     * Retrieves all role names available in the system.
-     *
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return an array of role names.
-     */
-    public static String[] getAllStatus(boolean formatWithIndex) {
-        List<String> status = new ArrayList<>();
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtStatus = conn.prepareStatement(queryStatus);
-             ResultSet rsStatus = stmtStatus.executeQuery()) {
-            while (rsStatus.next()) {
-                String statusUniqueName = ((formatWithIndex) ? (rsStatus.getInt("id") + " - ") : ("")) + rsStatus.getString("status_name");
-                status.add(statusUniqueName);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return status.toArray(new String[0]);
-    }
-
-    /**
-     * Retrieves status names available in the system.
+     * Retrieves the name of a status.
      *
      * @param statusId status id.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return an array of role names.
+     * @return the status name, or an empty string if not found.
      */
-    public static String getStatusById(int statusId, boolean formatWithIndex) {
-        String status = "";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtStatus = conn.prepareStatement(queryStatusById)){
-
-            stmtStatus.setInt(1, statusId);
-            ResultSet rsStatus = stmtStatus.executeQuery();
-
-            while (rsStatus.next()) {
-                status = ((formatWithIndex) ? (statusId + " - ") : ("")) + rsStatus.getString("status_name");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return status;
+    public static String getStatusById(int statusId) {
+        String statusName = ReferenceData.get().getStatusName(statusId);
+        return (statusName != null) ? statusName : "";
     }
 
     /**
@@ -841,18 +658,18 @@ public class DatabaseManager {
      *
      * @param email the email address of the user whose role is to be updated.
      * @param role  the new role name to assign to the user.
+     * @param currentUserEmail the email address of the user requesting the change.
      * @return true if the role was successfully updated; false otherwise.
      */
-    public static boolean updateUserRole(String email, String role) {
-        String em = getUser().getEmail();
-        if (email.equals(getUser().getEmail())) {
+    public static boolean updateUserRole(String email, String role, String currentUserEmail) {
+        if (email.equals(currentUserEmail)) {
             return false;
         }
 
         int role_id = getRoleId(role);
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtUsersUpdateRoleId = conn.prepareStatement(queryUsersUpdateRoleId)) {
+             PreparedStatement stmtUsersUpdateRoleId = prepare(conn, queryUsersUpdateRoleId)) {
             stmtUsersUpdateRoleId.setInt(1, role_id);
             stmtUsersUpdateRoleId.setString(2, email);
             int rowsUpdated = stmtUsersUpdateRoleId.executeUpdate();
@@ -863,15 +680,6 @@ public class DatabaseManager {
         return false;
     }
 
-    /**
-     * Retrieves the currently authenticated user.
-     *
-     * @return the current {@link User} object, or null if no user is authenticated.
-     */
-    public static User getUser() {
-        return user;
-    }
-
     /**
      * Retrieves the role name corresponding to a given role ID.
      *
@@ -879,23 +687,7 @@ public class DatabaseManager {
      * @return the role name if found; otherwise, returns an empty string.
      */
     public static String getRoleName(int role_id) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmtRoleName = conn.prepareStatement(queryRolesRoleNameFromId)) {
-
-            stmtRoleName.setInt(1, role_id);
-
-            try (ResultSet rsRoleName = stmtRoleName.executeQuery()) {
-                if (!rsRoleName.next()) {
-                    return ""; // No role found.
-                }
-
-                return rsRoleName.getString("role_name");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return ""; // No role found.
+        return ReferenceData.get().getRoleName(role_id);
     }
 
     /**
@@ -905,23 +697,7 @@ public class DatabaseManager {
      * @return the role ID if found; otherwise, returns -1.
      */
     public static int getRoleId(String role_name) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmtRoleId = conn.prepareStatement(insertRolesIdFromRoleName)) {
-
-            stmtRoleId.setString(1, role_name);
-
-            try (ResultSet rsRoleId = stmtRoleId.executeQuery()) {
-                if (!rsRoleId.next()) {
-                    return -1; // No role found.
-                }
-
-                return rsRoleId.getInt("id");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return -1; // No role found.
+        return ReferenceData.get().getRoleId(role_name);
     }
 
     /**
@@ -938,10 +714,10 @@ public class DatabaseManager {
         }
 
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtInsertUser = conn.prepareStatement(insertUser)) {
+             PreparedStatement stmtInsertUser = prepare(conn, insertUser)) {
             stmtInsertUser.setString(1, email);
             stmtInsertUser.setString(2, password);
-            stmtInsertUser.setString(3, role_name);
+            stmtInsertUser.setInt(3, getRoleId(role_name));
             stmtInsertUser.setString(4, working_hours_weekly);
             stmtInsertUser.executeUpdate();
             return true;
@@ -966,7 +742,7 @@ public class DatabaseManager {
         }
 
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtExtractActiveRequest = conn.prepareStatement(queryRecoverCredentialsRequestsActiveFromEmail)) {
+             PreparedStatement stmtExtractActiveRequest = prepare(conn, queryRecoverCredentialsRequestsActiveFromEmail)) {
             stmtExtractActiveRequest.setString(1, email);
 
             try (ResultSet rsCreateAt = stmtExtractActiveRequest.executeQuery()) {
@@ -974,11 +750,12 @@ public class DatabaseManager {
                     return rsCreateAt.getTimestamp("created_at").toString(); // Active request already exists.
                 }
 
-                try (PreparedStatement stmtAddRequest = conn.prepareStatement(insertRecoverCredentialsRequests)) {
+                try (PreparedStatement stmtAddRequest = prepare(conn, insertRecoverCredentialsRequests)) {
                     stmtAddRequest.setString(1, email);
                     stmtAddRequest.executeUpdate(); // Generate new request.
+                    PendingRecoveryCounter.increment();
 
-                    try (PreparedStatement stmtNewActiveRequest = conn.prepareStatement(queryRecoverCredentialsRequestsActiveFromEmail)) {
+                    try (PreparedStatement stmtNewActiveRequest = prepare(conn, queryRecoverCredentialsRequestsActiveFromEmail)) {
                         stmtNewActiveRequest.setString(1, email);
                         ResultSet rsNewCreateAt = stmtNewActiveRequest.executeQuery();
                         rsNewCreateAt.next();
@@ -993,13 +770,14 @@ public class DatabaseManager {
     }
 
     /**
-     * Counts the number of active recover credentials requests.
+     * Counts the number of active recover credentials requests on the table.
+     * Pages should read the in-memory {@link PendingRecoveryCounter} instead.
      *
      * @return the count of active recovery requests, or -1 if an error occurs.
      */
     public static int countRecoverCredentialsRequestsActive() {
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(countRecoverCredentialsRequestsActive);
+             PreparedStatement stmt = prepare(conn, countRecoverCredentialsRequestsActive);
              ResultSet rs = stmt.executeQuery()) {
 
             // This will always return one row, even if the count is zero:
@@ -1025,7 +803,7 @@ public class DatabaseManager {
         List<String[]> requests = new ArrayList<>();
 
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtRecoverCredentialsRequestsActiveTSOrdered = conn.prepareStatement(queryRecoverCredentialsRequestsActiveTSOrdered);
+             PreparedStatement stmtRecoverCredentialsRequestsActiveTSOrdered = prepare(conn, queryRecoverCredentialsRequestsActiveTSOrdered);
              ResultSet rs = stmtRecoverCredentialsRequestsActiveTSOrdered.executeQuery()) {
 
             while (rs.next()) {
@@ -1049,9 +827,10 @@ public class DatabaseManager {
         }
 
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtCloseActiveRequest = conn.prepareStatement(queryRecoverCredentialsRequestsClose)) {
+             PreparedStatement stmtCloseActiveRequest = prepare(conn, queryRecoverCredentialsRequestsClose)) {
             stmtCloseActiveRequest.setString(1, email);
-            stmtCloseActiveRequest.executeUpdate();
+            int closed = stmtCloseActiveRequest.executeUpdate();
+            PendingRecoveryCounter.decrement(closed);
             return true;
         } catch (SQLException e) {
             return false;
@@ -1066,7 +845,7 @@ public class DatabaseManager {
      */
     public static boolean acceptPrivacyPolicy(String email) {
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtUsersUpdatePrivacy = conn.prepareStatement(queryUsersUpdatePrivacy)) {
+             PreparedStatement stmtUsersUpdatePrivacy = prepare(conn, queryUsersUpdatePrivacy)) {
             stmtUsersUpdatePrivacy.setString(1, email);
             stmtUsersUpdatePrivacy.executeUpdate();
             return true;
@@ -1084,7 +863,7 @@ public class DatabaseManager {
      */
     public static boolean getPrivacyPolicy(String email) {
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtPrivacyAccepted = conn.prepareStatement(queryUsersPrivacy)) {
+             PreparedStatement stmtPrivacyAccepted = prepare(conn, queryUsersPrivacy)) {
             stmtPrivacyAccepted.setString(1, email);
 
             try (ResultSet rsPrivacyAccepted = stmtPrivacyAccepted.executeQuery()) {
@@ -1107,7 +886,7 @@ public class DatabaseManager {
      */
     public static boolean checkEmailExists(String email) {
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtCheckEmail = conn.prepareStatement(queryUsersRoleIdFromEmail)) {
+             PreparedStatement stmtCheckEmail = prepare(conn, queryUsersRoleIdFromEmail)) {
             stmtCheckEmail.setString(1, email);
 
             try (ResultSet rsCheckEmail = stmtCheckEmail.executeQuery()) {
@@ -1131,7 +910,7 @@ public class DatabaseManager {
         HashMap<LocalDate, Double> weeklyHours = new HashMap<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtTimeEntryWeeklyByUserId = conn.prepareStatement(queryTimeEntryWeeklyByUserId)) {
+             PreparedStatement stmtTimeEntryWeeklyByUserId = prepare(conn, queryTimeEntryWeeklyByUserId)) {
             stmtTimeEntryWeeklyByUserId.setInt(1, userId);
             stmtTimeEntryWeeklyByUserId.setString(2, startDate.toString());
             stmtTimeEntryWeeklyByUserId.setString(3, endDate.toString());
@@ -1160,7 +939,7 @@ public class DatabaseManager {
 
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtTimeEntryHoursByDay = conn.prepareStatement(countTimeEntryHoursByDay)) {
+             PreparedStatement stmtTimeEntryHoursByDay = prepare(conn, countTimeEntryHoursByDay)) {
             stmtTimeEntryHoursByDay.setInt(1, userId);
             stmtTimeEntryHoursByDay.setString(2, entryDate.toString());
 
@@ -1184,7 +963,7 @@ public class DatabaseManager {
         List<String> tasks = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtTaskAssignmentsByUserId = conn.prepareStatement(queryTaskAssignmentsByUserId)) {
+             PreparedStatement stmtTaskAssignmentsByUserId = prepare(conn, queryTaskAssignmentsByUserId)) {
             stmtTaskAssignmentsByUserId.setInt(1, userId);
             ResultSet rs = stmtTaskAssignmentsByUserId.executeQuery();
 
@@ -1207,7 +986,7 @@ public class DatabaseManager {
         int taskId = -1;
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtTaskIdFromName = conn.prepareStatement(queryTaskIdFromName)) {
+             PreparedStatement stmtTaskIdFromName = prepare(conn, queryTaskIdFromName)) {
             stmtTaskIdFromName.setString(1, taskName);
             ResultSet rs = stmtTaskIdFromName.executeQuery();
 
@@ -1221,93 +1000,270 @@ public class DatabaseManager {
     }
 
     /**
-     * Inserts a new time entry for a user and task.
+     * Records the hours worked by a user on a task in a single transaction: the time entry is
+     * inserted and the effort consumed of the user's task assignment is incremented in SQL,
+     * on the same connection. Either both changes are committed or none is, and two concurrent
+     * submissions cannot overwrite each other's effort total.
+     * <p>
+     * Tasks without an assignment row (the time-off tasks of TimeOffProj) only get the time entry.
      *
      * @param userId The ID of the user.
      * @param taskId The ID of the task.
      * @param targetDate The date of the time entry.
      * @param hours The number of hours worked.
-     * @return true if the entry was inserted successfully, false otherwise.
+     * @return true if the entry was recorded, false otherwise (e.g. an entry for that day already exists).
      */
-    public static boolean insertTimeEntry(int userId, int taskId, LocalDate targetDate, double hours) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmtInsertTimeEntry = conn.prepareStatement(insertTimeEntry)) {
+    public static boolean addTimeEntry(int userId, int taskId, LocalDate targetDate, double hours) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
 
-            PreparedStatement stmtInsertTimeEntry2 = conn.prepareStatement("SELECT * FROM time_entries WHERE user_id = ? AND task_id = ? AND entry_date = ?");
-            stmtInsertTimeEntry2.setInt(1, userId);
-            stmtInsertTimeEntry2.setInt(2, taskId);
-            stmtInsertTimeEntry2.setDate(3, Date.valueOf(targetDate));
-            ResultSet rsResearchersByProjectId = stmtInsertTimeEntry2.executeQuery();
+            try (PreparedStatement stmtInsertTimeEntry = prepare(conn, insertTimeEntry);
+                 PreparedStatement stmtIncrementEffort = prepare(conn, incrementEffortConsumedInTaskAssignments)) {
 
-            while (rsResearchersByProjectId.next()) {
-                var researchersUniqueName = rsResearchersByProjectId.getDouble("hours");
-                researchersUniqueName += 0.0;
-            }
+                stmtInsertTimeEntry.setInt(1, userId);
+                stmtInsertTimeEntry.setInt(2, taskId);
+                stmtInsertTimeEntry.setDate(3, Date.valueOf(targetDate));
+                stmtInsertTimeEntry.setDouble(4, hours);
+                stmtInsertTimeEntry.executeUpdate();
 
-            stmtInsertTimeEntry.setInt(1, userId);
-            stmtInsertTimeEntry.setInt(2, taskId);
-            stmtInsertTimeEntry.setDate(3, Date.valueOf(targetDate));
-            stmtInsertTimeEntry.setDouble(4, hours);
+                stmtIncrementEffort.setInt(1, (int) hours);
+                stmtIncrementEffort.setInt(2, userId);
+                stmtIncrementEffort.setInt(3, taskId);
+                stmtIncrementEffort.executeUpdate();
 
-            int rowsInserted = stmtInsertTimeEntry.executeUpdate();
-            return rowsInserted > 0;
+                conn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
+
     /**
-     * Inserts a new time entry for a user and task.
+     * Sets the hours worked by a user on a task for a day, creating the time entry or correcting
+     * the existing one. In a single transaction the effort consumed of the task assignment is first
+     * moved by the difference between the new and the recorded hours (computed in SQL), then the
+     * entry is upserted with MERGE: a correction is one round trip with two statements.
      *
      * @param userId The ID of the user.
      * @param taskId The ID of the task.
-     * @param effort_consumed The number of used.
-     * @param operationType The operation type, >=1 for addition, -1<= for subtraction and 0 for replace.
-     * @return true if the entry was inserted successfully, false otherwise.
+     * @param targetDate The date of the time entry.
+     * @param hours The number of hours worked.
+     * @return true if the entry was stored, false otherwise (nothing is changed in that case).
      */
-    public static boolean updateEffortConsumedInTaskAssignments(int userId, int taskId, int effort_consumed, int operationType) {
+    public static boolean updateTimeEntry(int userId, int taskId, LocalDate targetDate, double hours) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
 
-        int total_effort_consumed = effort_consumed +
-                                    (getEffortConsumedInTaskAssignments(userId, taskId) * (operationType == 0 ? 0 : operationType / abs(operationType)));
+            try (PreparedStatement stmtAdjustEffort = prepare(conn, adjustEffortConsumedForTimeEntry);
+                 PreparedStatement stmtUpsertTimeEntry = prepare(conn, upsertTimeEntry)) {
 
-        try (Connection conn = getConnection();
-             PreparedStatement stmtInsertTimeEntry = conn.prepareStatement(updateEffortConsumedInTaskAssignments)) {
-            stmtInsertTimeEntry.setInt(1, total_effort_consumed);
-            stmtInsertTimeEntry.setInt(2, userId);
-            stmtInsertTimeEntry.setInt(3, taskId);
+                setAdjustEffortParameters(stmtAdjustEffort, userId, taskId, targetDate, (int) hours);
+                stmtAdjustEffort.executeUpdate();
+
+                stmtUpsertTimeEntry.setInt(1, userId);
+                stmtUpsertTimeEntry.setInt(2, taskId);
+                stmtUpsertTimeEntry.setDate(3, Date.valueOf(targetDate));
+                stmtUpsertTimeEntry.setDouble(4, hours);
+                stmtUpsertTimeEntry.executeUpdate();
+
+                conn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Binds the parameters of adjustEffortConsumedForTimeEntry.
+     */
+    private static void setAdjustEffortParameters(PreparedStatement stmt, int userId, int taskId, LocalDate targetDate, int newHours) throws SQLException {
+        stmt.setInt(1, newHours);
+        stmt.setDate(2, Date.valueOf(targetDate));
+        stmt.setInt(3, userId);
+        stmt.setInt(4, taskId);
+    }
+
+    /**
+     * Saves the weekly timesheet of a user in a single transaction.
+     * <p>
+     * The existing entries of the period are read (and locked) once, then every submitted cell is
+     * compared with them: new or changed hours are upserted and cells set to 0 are deleted, each
+     * kind with a single JDBC batch. The effort consumed of every touched task assignment is then
+     * adjusted by the task's total delta, again with one batch. Cells equal to the stored value
+     * cause no write at all.
+     *
+     * @param userId the user's target id.
+     * @param startDay first day of the period (inclusive).
+     * @param endDay last day of the period (inclusive).
+     * @param hoursByTask the submitted grid: taskId -> day -> hours, 0 meaning "no entry".
+     * @return true if the timesheet was saved, false otherwise (nothing is stored in that case).
+     */
+    public static boolean saveWeeklyTimeEntries(int userId, LocalDate startDay, LocalDate endDay,
+                                                Map<Integer, Map<LocalDate, Double>> hoursByTask) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmtExistingEntries = prepare(conn, queryTimeEntriesByUserAndRangeForUpdate);
+                 PreparedStatement stmtUpsertTimeEntry = prepare(conn, upsertTimeEntry);
+                 PreparedStatement stmtDeleteTimeEntry = prepare(conn, queryRemoveSingleTimeEntryHours);
+                 PreparedStatement stmtIncrementEffort = prepare(conn, incrementEffortConsumedInTaskAssignments)) {
+
+                // 1) Current entries of the period: taskId -> day -> hours
+                Map<Integer, Map<LocalDate, Double>> existing = new HashMap<>();
+                stmtExistingEntries.setInt(1, userId);
+                stmtExistingEntries.setDate(2, Date.valueOf(startDay));
+                stmtExistingEntries.setDate(3, Date.valueOf(endDay));
+                ResultSet rsExistingEntries = stmtExistingEntries.executeQuery();
+                while (rsExistingEntries.next()) {
+                    existing.computeIfAbsent(rsExistingEntries.getInt("task_id"), k -> new HashMap<>())
+                            .put(rsExistingEntries.getDate("entry_date").toLocalDate(), rsExistingEntries.getDouble("hours"));
+                }
+
+                // 2) Batch the changed cells and sum the effort delta of each task
+                Map<Integer, Integer> effortDeltaByTask = new HashMap<>();
+                int upserts = 0;
+                int deletes = 0;
+
+                for (Map.Entry<Integer, Map<LocalDate, Double>> taskCells : hoursByTask.entrySet()) {
+                    int taskId = taskCells.getKey();
+                    Map<LocalDate, Double> storedCells = existing.getOrDefault(taskId, Map.of());
+
+                    for (Map.Entry<LocalDate, Double> cell : taskCells.getValue().entrySet()) {
+                        LocalDate day = cell.getKey();
+                        if (day.isBefore(startDay) || day.isAfter(endDay)) {
+                            throw new SQLException("Time entry " + day + " is outside " + startDay + " - " + endDay);
+                        }
+
+                        Double stored = storedCells.get(day);
+                        double hours = cell.getValue() == null ? 0.0 : cell.getValue();
+
+                        if (hours <= 0) {
+                            if (stored == null) {
+                                continue;
+                            }
+                            stmtDeleteTimeEntry.setInt(1, userId);
+                            stmtDeleteTimeEntry.setInt(2, taskId);
+                            stmtDeleteTimeEntry.setDate(3, Date.valueOf(day));
+                            stmtDeleteTimeEntry.addBatch();
+                            deletes++;
+                        } else {
+                            if (stored != null && stored == hours) {
+                                continue;
+                            }
+                            stmtUpsertTimeEntry.setInt(1, userId);
+                            stmtUpsertTimeEntry.setInt(2, taskId);
+                            stmtUpsertTimeEntry.setDate(3, Date.valueOf(day));
+                            stmtUpsertTimeEntry.setDouble(4, hours);
+                            stmtUpsertTimeEntry.addBatch();
+                            upserts++;
+                        }
+
+                        // effort_consumed counts whole hours, as in addTimeEntry
+                        int delta = (int) hours - (stored == null ? 0 : stored.intValue());
+                        effortDeltaByTask.merge(taskId, delta, Integer::sum);
+                    }
+                }
+
+                if (upserts > 0) {
+                    stmtUpsertTimeEntry.executeBatch();
+                }
+                if (deletes > 0) {
+                    stmtDeleteTimeEntry.executeBatch();
+                }
+
+                // 3) One effort update per task
+                int effortUpdates = 0;
+                for (Map.Entry<Integer, Integer> effortDelta : effortDeltaByTask.entrySet()) {
+                    if (effortDelta.getValue() != 0) {
+                        stmtIncrementEffort.setInt(1, effortDelta.getValue());
+                        stmtIncrementEffort.setInt(2, userId);
+                        stmtIncrementEffort.setInt(3, effortDelta.getKey());
+                        stmtIncrementEffort.addBatch();
+                        effortUpdates++;
+                    }
+                }
+                if (effortUpdates > 0) {
+                    stmtIncrementEffort.executeBatch();
+                }
 
-            int rowsInserted = stmtInsertTimeEntry.executeUpdate();
-            return rowsInserted > 0;
+                conn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    /**
+     * Retrieves the tasks shown as rows of the weekly timesheet of a user: the tasks assigned to
+     * the user, the time-off tasks and any task with hours already recorded in the period.
+     *
+     * @param userId the user's target id.
+     * @param startDay first day of the period (inclusive).
+     * @param endDay last day of the period (inclusive).
+     * @return the tasks as taskId -> task title, ordered by id.
+     */
+    public static LinkedHashMap<Integer, String> getWeekGridTasks(int userId, LocalDate startDay, LocalDate endDay) {
+        LinkedHashMap<Integer, String> tasks = new LinkedHashMap<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmtWeekGridTasks = prepare(conn, queryWeekGridTasks)) {
+            stmtWeekGridTasks.setInt(1, userId);
+            stmtWeekGridTasks.setInt(2, userId);
+            stmtWeekGridTasks.setDate(3, Date.valueOf(startDay));
+            stmtWeekGridTasks.setDate(4, Date.valueOf(endDay));
+            ResultSet rsWeekGridTasks = stmtWeekGridTasks.executeQuery();
+
+            while (rsWeekGridTasks.next()) {
+                tasks.put(rsWeekGridTasks.getInt("task_id"), rsWeekGridTasks.getString("task_title"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return tasks;
+    }
+
     /**
      * Retrieves the list of projects assigned to a specific user.
      *
      * @param userId The ID of the user.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return An array of assigned project names.
+     * @return The assigned projects.
      */
-    public static String[] getAssignedProjects(int userId, boolean formatWithIndex) {
-        ArrayList<String> projects = new ArrayList<>();
+    public static List<ProjectRef> getAssignedProjects(int userId) {
+        List<ProjectRef> projects = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtProjectsVisibilityByUserId = conn.prepareStatement(queryProjectsVisibilityByUserId)) {
+             PreparedStatement stmtProjectsVisibilityByUserId = prepare(conn, queryProjectsVisibilityByUserId)) {
             stmtProjectsVisibilityByUserId.setInt(1, userId);
             ResultSet rs = stmtProjectsVisibilityByUserId.executeQuery();
 
             while (rs.next()) {
-                String projectUniqueName = ((formatWithIndex) ? (rs.getInt("id") + " - ") : ("")) + rs.getString("title");
-                projects.add(projectUniqueName);
+                projects.add(new ProjectRef(rs.getInt("id"), rs.getString("title")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return projects.toArray(new String[0]);
+        return projects;
     }
 
     /**
@@ -1321,7 +1277,7 @@ public class DatabaseManager {
      */
     public static boolean addProject(String title, String description, int adminId, int supervisorId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtAddProject = conn.prepareStatement(insertProject, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement stmtAddProject = prepare(conn, insertProject, Statement.RETURN_GENERATED_KEYS)) {
             stmtAddProject.setString(1, title);
             stmtAddProject.setString(2, description);
             stmtAddProject.setInt(3, adminId);
@@ -1334,7 +1290,7 @@ public class DatabaseManager {
                     if (generatedKeys.next()) {
                         int project_id = generatedKeys.getInt(1);
 
-                        try (PreparedStatement stmtSupervisorVisibility = conn.prepareStatement(insertProjectsVisibility)) {
+                        try (PreparedStatement stmtSupervisorVisibility = prepare(conn, insertProjectsVisibility)) {
                             stmtSupervisorVisibility.setInt(1, project_id);
                             stmtSupervisorVisibility.setInt(2, supervisorId);
 
@@ -1355,50 +1311,48 @@ public class DatabaseManager {
     /**
      *  Retrieves a list of supervisors in the system.
      * 
-     *  @return An array of supervisors in the format "id - email".
+     *  @return The supervisors.
      */
-    public static String[] getSupervisors() {
-        ArrayList<String> projects = new ArrayList<>();
+    public static List<UserRef> getSupervisors() {
+        List<UserRef> supervisors = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtUsersSupervisors = conn.prepareStatement(queryUsersSupervisors)) {
+             PreparedStatement stmtUsersSupervisors = prepare(conn, queryUsersSupervisors)) {
+            stmtUsersSupervisors.setInt(1, getRoleId(ReferenceData.ROLE_SUPERVISOR));
             ResultSet rs = stmtUsersSupervisors.executeQuery();
 
             while (rs.next()) {
-                String supervisorsUniqueName = rs.getString("id") + " - " + rs.getString("email");
-                projects.add(supervisorsUniqueName);
+                supervisors.add(new UserRef(rs.getInt("id"), rs.getString("email")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return projects.toArray(new String[0]);
+        return supervisors;
     }
 
     /**
      * Retrieves a list of researchers associated with a specific project.
      * 
      * @param projectId The ID of the project.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return An array of researchers in the format "id - email".
+     * @return The researchers of the project.
      */
-    public static String[] getResearchersByProjectId(int projectId, boolean formatWithIndex) {
-        ArrayList<String> projects = new ArrayList<>();
+    public static List<UserRef> getResearchersByProjectId(int projectId) {
+        List<UserRef> researchers = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtResearchersByProjectId = conn.prepareStatement(queryUsersResearchersByProjectId)) {
+             PreparedStatement stmtResearchersByProjectId = prepare(conn, queryUsersResearchersByProjectId)) {
             stmtResearchersByProjectId.setInt(1, projectId);
-            ResultSet rsResearchersByProjectId = stmtResearchersByProjectId.executeQuery();
+            stmtResearchersByProjectId.setInt(2, getRoleId(ReferenceData.ROLE_RESEARCHER));
+            ResultSet rs = stmtResearchersByProjectId.executeQuery();
 
-            while (rsResearchersByProjectId.next()) {
-                String researchersUniqueName = ((formatWithIndex) ? (rsResearchersByProjectId.getInt("id") + " - ") : ("")) + rsResearchersByProjectId.getString("email");
-                projects.add(researchersUniqueName);
+            while (rs.next()) {
+                researchers.add(new UserRef(rs.getInt("id"), rs.getString("email")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return projects.toArray(new String[0]);
+        return researchers;
     }
 
     /**
@@ -1406,53 +1360,49 @@ public class DatabaseManager {
      *  
      * @param projectId The ID of the project.
      * @param taskId The ID of the task to exclude researchers from.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return An array of researchers in the format "id - email", excluding those assigned to the specified task.
+     * @return The researchers of the project, excluding those assigned to the specified task.
      */
-    public static String[] getResearchersByProjectIdAndExcludedByTaskId(int projectId, int taskId, boolean formatWithIndex) {
-        ArrayList<String> projects = new ArrayList<>();
+    public static List<UserRef> getResearchersByProjectIdAndExcludedByTaskId(int projectId, int taskId) {
+        List<UserRef> researchers = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtResearchersByProjectId = conn.prepareStatement(queryUsersResearchersByProjectIdAndExcludedByTaskId)) {
+             PreparedStatement stmtResearchersByProjectId = prepare(conn, queryUsersResearchersByProjectIdAndExcludedByTaskId)) {
             stmtResearchersByProjectId.setInt(1, projectId);
-            stmtResearchersByProjectId.setInt(2, taskId);
-            ResultSet rsResearchersByProjectId = stmtResearchersByProjectId.executeQuery();
+            stmtResearchersByProjectId.setInt(2, getRoleId(ReferenceData.ROLE_RESEARCHER));
+            stmtResearchersByProjectId.setInt(3, taskId);
+            ResultSet rs = stmtResearchersByProjectId.executeQuery();
 
-            while (rsResearchersByProjectId.next()) {
-                String researchersUniqueName = ((formatWithIndex) ? (rsResearchersByProjectId.getInt("id") + " - ") : ("")) + rsResearchersByProjectId.getString("email");
-                projects.add(researchersUniqueName);
+            while (rs.next()) {
+                researchers.add(new UserRef(rs.getInt("id"), rs.getString("email")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return projects.toArray(new String[0]);
+        return researchers;
     }
 
     /**
      * Retrieves a list of researchers excluding those associated with a specific project.
      *
      * @param projectId The ID of the project to exclude researchers from.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return An array of researchers in the format "id - email", excluding those associated with the specified project.
+     * @return The researchers not associated with the specified project.
      */
-    public static String[] getResearchersExcludingProjectId(int projectId, boolean formatWithIndex) {
-        ArrayList<String> projects = new ArrayList<>();
+    public static List<UserRef> getResearchersExcludingProjectId(int projectId) {
+        List<UserRef> researchers = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtResearchersExcludingProjectId = conn.prepareStatement(queryUsersResearchersExcludingProjectId)) {
+             PreparedStatement stmtResearchersExcludingProjectId = prepare(conn, queryUsersResearchersExcludingProjectId)) {
             stmtResearchersExcludingProjectId.setInt(1, projectId);
-            ResultSet rsResearchersExcludingProjectId = stmtResearchersExcludingProjectId.executeQuery();
+            stmtResearchersExcludingProjectId.setInt(2, getRoleId(ReferenceData.ROLE_RESEARCHER));
+            ResultSet rs = stmtResearchersExcludingProjectId.executeQuery();
 
-            while (rsResearchersExcludingProjectId.next()) {
-                String researchersUniqueName = ((formatWithIndex) ? (rsResearchersExcludingProjectId.getInt("id") + " - ") : ("")) + rsResearchersExcludingProjectId.getString("email");
-                projects.add(researchersUniqueName);
+            while (rs.next()) {
+                researchers.add(new UserRef(rs.getInt("id"), rs.getString("email")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return projects.toArray(new String[0]);
+        return researchers;
     }
 
     /** 
@@ -1467,7 +1417,7 @@ public class DatabaseManager {
      */
     public static boolean addWorkPackage(int project_id, String title, String description, LocalDate start_date, LocalDate end_date) {
         try (Connection conn = getConnection(); //(project_id, title, description, start_date, end_date)
-             PreparedStatement stmtAddProject = conn.prepareStatement(insertWorkPackage)) {
+             PreparedStatement stmtAddProject = prepare(conn, insertWorkPackage)) {
             stmtAddProject.setInt(1, project_id);
             stmtAddProject.setString(2, title);
             stmtAddProject.setString(3, description);
@@ -1490,20 +1440,18 @@ public class DatabaseManager {
      * Retrieves a list of work packages associated with a specific project.
      *
      * @param projectId The ID of the project.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of work package titles.
+     * @return The work packages of the project.
      */
-    public static List<String> getWorkPackagesByProject(int projectId, boolean formatWithIndex) {
-        List<String> workPackages = new ArrayList<>();
+    public static List<WorkPackageRef> getWorkPackagesByProject(int projectId) {
+        List<WorkPackageRef> workPackages = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtWorkPackagesByProject = conn.prepareStatement(queryWorkPackagesByProject)) {
+             PreparedStatement stmtWorkPackagesByProject = prepare(conn, queryWorkPackagesByProject)) {
             stmtWorkPackagesByProject.setInt(1, projectId);
-            ResultSet rsWorkPackagesByProject = stmtWorkPackagesByProject.executeQuery();
+            ResultSet rs = stmtWorkPackagesByProject.executeQuery();
 
-            while (rsWorkPackagesByProject.next()) {
-                String workPackageUniqueName = ((formatWithIndex) ? (rsWorkPackagesByProject.getInt("id") + " - ") : ("")) + rsWorkPackagesByProject.getString("title");
-                workPackages.add(workPackageUniqueName);
+            while (rs.next()) {
+                workPackages.add(new WorkPackageRef(rs.getInt("id"), rs.getString("title")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -1512,23 +1460,21 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a list of tasks associated with a specific project.
+     * Retrieves a list of tasks associated with a specific work package.
      *
-     * @param workPackagesId The ID of the project.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of task titles.
+     * @param workPackagesId The ID of the work package.
+     * @return The tasks of the work package.
      */
-    public static List<String> getTasksByWorkPackages(int workPackagesId, boolean formatWithIndex) {
-        List<String> tasks = new ArrayList<>();
+    public static List<TaskRef> getTasksByWorkPackages(int workPackagesId) {
+        List<TaskRef> tasks = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtTasksByWorkPackages = conn.prepareStatement(queryTasksByWorkPackage)) {
+             PreparedStatement stmtTasksByWorkPackages = prepare(conn, queryTasksByWorkPackage)) {
             stmtTasksByWorkPackages.setInt(1, workPackagesId);
             ResultSet rsTasksByWorkPackages = stmtTasksByWorkPackages.executeQuery();
 
             while (rsTasksByWorkPackages.next()) {
-                String taskUniqueName = ((formatWithIndex) ? (rsTasksByWorkPackages.getInt("id") + " - ") : ("")) + rsTasksByWorkPackages.getString("title");
-                tasks.add(taskUniqueName);
+                tasks.add(readTaskRef(rsTasksByWorkPackages));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -1551,7 +1497,7 @@ public class DatabaseManager {
      */
     public static int addTask(int work_package_id, String title, String description, int effortHours, int durationHours, LocalDate deadline, int priority_id, int status_id) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtAddTask = conn.prepareStatement(insertTask, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement stmtAddTask = prepare(conn, insertTask, Statement.RETURN_GENERATED_KEYS)) {
 
             stmtAddTask.setInt(1, work_package_id);
             stmtAddTask.setString(2, title);
@@ -1583,49 +1529,94 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a list of work packages associated with a specific project.
+     * Retrieves the projects that are not archived.
      *
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of work package titles.
+     * @return The active projects.
      */
-    public static String[] getProjectsActive(boolean formatWithIndex) {
-        List<String> projectsActive = new ArrayList<>();
+    public static List<ProjectRef> getProjectsActive() {
+        List<ProjectRef> projectsActive = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtProjectsActive = conn.prepareStatement(queryProjectsActive)) {
-            ResultSet rsProjectsActive = stmtProjectsActive.executeQuery();
+             PreparedStatement stmtProjectsActive = prepare(conn, queryProjectsActive)) {
+            ResultSet rs = stmtProjectsActive.executeQuery();
 
-            while (rsProjectsActive.next()) {
-                String projectUniqueName = ((formatWithIndex) ? (rsProjectsActive.getInt("id") + " - ") : ("")) + rsProjectsActive.getString("title");
-                projectsActive.add(projectUniqueName);
+            while (rs.next()) {
+                projectsActive.add(new ProjectRef(rs.getInt("id"), rs.getString("title")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return projectsActive.toArray(new String[0]);
+        return projectsActive;
     }
 
     /**
-     * Retrieves a list of work packages associated with a specific project.
+     * Retrieves the archived projects.
      *
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of work package titles.
+     * @return The archived projects.
      */
-    public static String[] getProjectsArchived(boolean formatWithIndex) {
-        List<String> projectsArchived = new ArrayList<>();
+    public static List<ProjectRef> getProjectsArchived() {
+        List<ProjectRef> projectsArchived = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtProjectsArchived = conn.prepareStatement(queryProjectsArchived)) {
-            ResultSet rsProjectsArchived = stmtProjectsArchived.executeQuery();
+             PreparedStatement stmtProjectsArchived = prepare(conn, queryProjectsArchived)) {
+            ResultSet rs = stmtProjectsArchived.executeQuery();
+
+            while (rs.next()) {
+                projectsArchived.add(new ProjectRef(rs.getInt("id"), rs.getString("title")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return projectsArchived;
+    }
+
+    /**
+     * Loads a project with its work packages and their tasks using a single joined query.
+     * Work packages without tasks are included with an empty task list.
+     *
+     * @param projectId the project id.
+     * @return the project tree, or null if the project does not exist.
+     */
+    public static ProjectTree getProjectTree(int projectId) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmtProjectTree = prepare(conn, queryProjectTree)) {
+
+            stmtProjectTree.setInt(1, projectId);
+            ResultSet rsProjectTree = stmtProjectTree.executeQuery();
+
+            ProjectTree tree = null;
+            ProjectTree.WorkPackageNode workPackage = null;
+
+            // rows are ordered by work package, so each one is closed when the next starts
+            while (rsProjectTree.next()) {
+                if (tree == null) {
+                    tree = new ProjectTree(
+                            rsProjectTree.getInt("proj_id"),
+                            rsProjectTree.getString("proj_title"),
+                            rsProjectTree.getInt("proj_supervisor_id"),
+                            rsProjectTree.getBoolean("proj_archived"),
+                            new ArrayList<>());
+                }
 
-            while (rsProjectsArchived.next()) {
-                String projectUniqueName = ((formatWithIndex) ? (rsProjectsArchived.getInt("id") + " - ") : ("")) + rsProjectsArchived.getString("title");
-                projectsArchived.add(projectUniqueName);
+                int wpId = rsProjectTree.getInt("wp_id");
+                if (rsProjectTree.wasNull()) {
+                    continue; // project without work packages
+                }
+                if (workPackage == null || workPackage.id() != wpId) {
+                    workPackage = new ProjectTree.WorkPackageNode(wpId, rsProjectTree.getString("wp_title"), new ArrayList<>());
+                    tree.workPackages().add(workPackage);
+                }
+
+                int taskId = rsProjectTree.getInt("t_id");
+                if (!rsProjectTree.wasNull()) {
+                    workPackage.tasks().add(new ProjectTree.TaskNode(taskId, rsProjectTree.getString("t_title")));
+                }
             }
+            return tree;
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return projectsArchived.toArray(new String[0]);
     }
 
     /**
@@ -1636,7 +1627,7 @@ public class DatabaseManager {
      */
     public static boolean getIsProjectsArchivedById(int projectId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtIsProjectsArchivedById = conn.prepareStatement(queryIsProjectsArchivedById)) {
+             PreparedStatement stmtIsProjectsArchivedById = prepare(conn, queryIsProjectsArchivedById)) {
 
             stmtIsProjectsArchivedById.setInt(1, projectId);
 
@@ -1666,7 +1657,7 @@ public class DatabaseManager {
      */
     public static boolean addMilestone(int projectId, String title, String description){
         try (Connection conn = getConnection();
-             PreparedStatement stmtMilestone = conn.prepareStatement(insertMilestone)) {
+             PreparedStatement stmtMilestone = prepare(conn, insertMilestone)) {
 
             stmtMilestone.setInt(1, projectId);
             stmtMilestone.setString(2, title);
@@ -1685,20 +1676,18 @@ public class DatabaseManager {
      * Retrieves a list of milestones associated with a specific project.
      *
      * @param projectId The ID of the project.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of milestone titles with their IDs.
+     * @return The milestones of the project.
      */
-    public static List<String> getMilestonesByProject(int projectId, boolean formatWithIndex) {
-        List<String> milestones = new ArrayList<>();
+    public static List<MilestoneRef> getMilestonesByProject(int projectId) {
+        List<MilestoneRef> milestones = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtMilestonesByProject = conn.prepareStatement(queryMilestonesByProject)) {
+             PreparedStatement stmtMilestonesByProject = prepare(conn, queryMilestonesByProject)) {
             stmtMilestonesByProject.setInt(1, projectId);
             ResultSet rsMilestonesByProject = stmtMilestonesByProject.executeQuery();
 
             while (rsMilestonesByProject.next()) {
-                String milestoneUniqueName = ((formatWithIndex) ? (rsMilestonesByProject.getInt("id") + " - ") : ("")) + rsMilestonesByProject.getString("title");
-                milestones.add(milestoneUniqueName);
+                milestones.add(new MilestoneRef(rsMilestonesByProject.getInt("id"), rsMilestonesByProject.getString("title")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -1715,7 +1704,7 @@ public class DatabaseManager {
      */
     public static int addMilestoneAssignments(int milestoneId, int taskId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtUpdateMilestone = conn.prepareStatement(insertMilestoneAssignments)) {
+             PreparedStatement stmtUpdateMilestone = prepare(conn, insertMilestoneAssignments)) {
             stmtUpdateMilestone.setInt(1, milestoneId);
             stmtUpdateMilestone.setInt(2, taskId);
 
@@ -1730,28 +1719,26 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a list of work packages associated with a specific project.
+     * Retrieves the tasks assigned to a specific user.
      *
-     * @param userId The ID of the project.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of work package titles.
+     * @param userId The ID of the user.
+     * @return The tasks assigned to the user, with their project.
      */
-    public static List<String> getTasksByUser(int userId, boolean formatWithIndex) {
-        List<String> workPackages = new ArrayList<>();
+    public static List<TaskRef> getTasksByUser(int userId) {
+        List<TaskRef> tasks = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtWorkPackagesByProject = conn.prepareStatement(queryTasksByUser)) {
-            stmtWorkPackagesByProject.setInt(1, userId);
-            ResultSet rsWorkPackagesByProject = stmtWorkPackagesByProject.executeQuery();
+             PreparedStatement stmtTasksByUser = prepare(conn, queryTasksByUser)) {
+            stmtTasksByUser.setInt(1, userId);
+            ResultSet rsTasksByUser = stmtTasksByUser.executeQuery();
 
-            while (rsWorkPackagesByProject.next()) {
-                String workPackagesUniqueName = ((formatWithIndex) ? (rsWorkPackagesByProject.getInt("id") + " - ") : ("")) + rsWorkPackagesByProject.getString("title");
-                workPackages.add(workPackagesUniqueName);
+            while (rsTasksByUser.next()) {
+                tasks.add(readTaskRef(rsTasksByUser));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return workPackages;
+        return tasks;
     }
 
     /**
@@ -1762,7 +1749,7 @@ public class DatabaseManager {
      */
     public static boolean archiveProject(int project_id) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtArchiveProject = conn.prepareStatement(queryUpdateProjectsInArchived)) {
+             PreparedStatement stmtArchiveProject = prepare(conn, queryUpdateProjectsInArchived)) {
             stmtArchiveProject.setInt(1, project_id);
 
             int affectedRows = stmtArchiveProject.executeUpdate();
@@ -1787,7 +1774,7 @@ public class DatabaseManager {
      */
     public static boolean editWorkPackage(int workpackages_id, LocalDate start_date, LocalDate end_date) {
         try (Connection conn = getConnection(); //(project_id, title, description, start_date, end_date)
-             PreparedStatement stmtEditWorkPackage = conn.prepareStatement(queryUpdateWorkPackage)) {
+             PreparedStatement stmtEditWorkPackage = prepare(conn, queryUpdateWorkPackage)) {
             stmtEditWorkPackage.setDate(1, Date.valueOf(start_date));
             stmtEditWorkPackage.setDate(2, Date.valueOf(end_date));
             stmtEditWorkPackage.setInt(3, workpackages_id);
@@ -1812,7 +1799,7 @@ public class DatabaseManager {
      */
     public static boolean deleteWorkPackageById(int workPackageId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtDeleteWorkPackageById = conn.prepareStatement(deleteWorkPackageById)) {
+             PreparedStatement stmtDeleteWorkPackageById = prepare(conn, deleteWorkPackageById)) {
             stmtDeleteWorkPackageById.setInt(1, workPackageId);
             int affectedRows = stmtDeleteWorkPackageById.executeUpdate();
             return affectedRows > 0;
@@ -1830,7 +1817,7 @@ public class DatabaseManager {
      */
     public static boolean deleteTaskById(int taskId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtDeleteWorkPackageById = conn.prepareStatement(deleteTaskById)) {
+             PreparedStatement stmtDeleteWorkPackageById = prepare(conn, deleteTaskById)) {
             stmtDeleteWorkPackageById.setInt(1, taskId);
             int affectedRows = stmtDeleteWorkPackageById.executeUpdate();
             return affectedRows > 0;
@@ -1848,7 +1835,7 @@ public class DatabaseManager {
      */
     public static int countTaskDependenciesByTaskId(int task_id) {
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtExtractTaskDependenciesByTaskId = conn.prepareStatement(countTaskDependenciesByTaskId)) {
+             PreparedStatement stmtExtractTaskDependenciesByTaskId = prepare(conn, countTaskDependenciesByTaskId)) {
             stmtExtractTaskDependenciesByTaskId.setInt(1, task_id);
 
             try (ResultSet rsTaskDependenciesByTaskId = stmtExtractTaskDependenciesByTaskId.executeQuery()) {
@@ -1870,7 +1857,7 @@ public class DatabaseManager {
      */
     public static int countMilestoneByTaskId(int task_id) {
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmtExtractMilestonesByTaskId = conn.prepareStatement(countMilestoneByTaskId)) {
+             PreparedStatement stmtExtractMilestonesByTaskId = prepare(conn, countMilestoneByTaskId)) {
             stmtExtractMilestonesByTaskId.setInt(1, task_id);
 
             try (ResultSet rsMilestonesByTaskId = stmtExtractMilestonesByTaskId.executeQuery()) {
@@ -1893,7 +1880,7 @@ public class DatabaseManager {
      */
     public static boolean checkTaskDeadlineValidity(int workPackageId, LocalDate deadline) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtWorkPackageTimeRangeById = conn.prepareStatement(queryWorkPackageTimeRangeById)) {
+             PreparedStatement stmtWorkPackageTimeRangeById = prepare(conn, queryWorkPackageTimeRangeById)) {
             stmtWorkPackageTimeRangeById.setInt(1, workPackageId);
             try (ResultSet rsWorkPackageTimeRangeById = stmtWorkPackageTimeRangeById.executeQuery()) {
                 if (rsWorkPackageTimeRangeById.next()) {
@@ -1910,23 +1897,21 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a list of milestones associated with a specific project.
+     * Retrieves a list of tasks associated with a specific project.
      *
      * @param projectId The ID of the project.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return A list of milestone titles with their IDs.
+     * @return The tasks of the project.
      */
-    public static List<String> getTasksByProject(int projectId, boolean formatWithIndex) {
-        List<String> tasks = new ArrayList<>();
+    public static List<TaskRef> getTasksByProject(int projectId) {
+        List<TaskRef> tasks = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtTasksByProjectId = conn.prepareStatement(queryTasksByProjectId)) {
+             PreparedStatement stmtTasksByProjectId = prepare(conn, queryTasksByProjectId)) {
             stmtTasksByProjectId.setInt(1, projectId);
             ResultSet rsTasksByProjectId = stmtTasksByProjectId.executeQuery();
 
             while (rsTasksByProjectId.next()) {
-                String taskUniqueName = ((formatWithIndex) ? (rsTasksByProjectId.getInt("id") + " - ") : ("")) + rsTasksByProjectId.getString("title");
-                tasks.add(taskUniqueName);
+                tasks.add(readTaskRef(rsTasksByProjectId));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -1935,19 +1920,16 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a list of user assignment hours data for a given task.
-     * Each row from the database is mapped into a HashMap with:
-     *   Key: a string in the format "id - email"
-     *   Value: a string in the format "effort_consumed - effort_hypothetic"
+     * Retrieves the users assigned to a given task, with their consumed and estimated effort.
      *
      * @param taskId the ID of the task to filter the query
-     * @return a list of HashMaps, each containing one entry with the user and assignment hours data
+     * @return one row per assigned user
      */
-    public static List<HashMap<String, String>> getUsersAndAssignmentsHoursByTasks(int taskId) {
-        List<HashMap<String, String>> results = new ArrayList<>();
+    public static List<AssignmentHours> getAssignmentHoursByTask(int taskId) {
+        List<AssignmentHours> results = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(queryUsersAndAssignmentsHoursByTasks)) {
+             PreparedStatement stmt = prepare(conn, queryUsersAndAssignmentsHoursByTasks)) {
 
             // Set the taskId parameter for the SQL query
             stmt.setInt(1, taskId);
@@ -1955,28 +1937,15 @@ public class DatabaseManager {
             // Execute the query and obtain the result set
             ResultSet rs = stmt.executeQuery();
 
-            // Process each row in the result set
             while (rs.next()) {
-                // Retrieve values from the result set
-                int id = rs.getInt("id");
-                String email = rs.getString("email");
-                int effortConsumed = rs.getInt("effort_consumed");
-                int effortHypothetic = rs.getInt("effort_hypothetic");
-
-                // Create the key: "id - email"
-                String key = id + " - " + email;
-                // Create the value: "effortConsumed - effortHypothetic"
-                String value = effortConsumed + " - " + effortHypothetic;
-
-                // Create a new HashMap for the current row
-                HashMap<String, String> map = new HashMap<>();
-                map.put(key, value);
-
-                // Add the map to the results list
-                results.add(map);
+                results.add(new AssignmentHours(
+                        rs.getInt("id"),
+                        rs.getString("email"),
+                        rs.getInt("effort_consumed"),
+                        rs.getInt("effort_hypothetic")
+                ));
             }
         } catch (SQLException e) {
-            // Log the exception stack trace
             e.printStackTrace();
         }
         return results;
@@ -1992,7 +1961,7 @@ public class DatabaseManager {
      */
     public static boolean addTaskAssignment(int taskId, int userId, int effortHypothetic) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtAddTaskAssignment = conn.prepareStatement(insertTaskAssignments)) {
+             PreparedStatement stmtAddTaskAssignment = prepare(conn, insertTaskAssignments)) {
             stmtAddTaskAssignment.setInt(1, taskId);
             stmtAddTaskAssignment.setInt(2, userId);
             stmtAddTaskAssignment.setInt(3, effortHypothetic);
@@ -2011,14 +1980,13 @@ public class DatabaseManager {
      * Retrieves the task title by its ID.
      *
      * @param taskId the task ID.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return the task title, formatted with index if specified.
+     * @return the task title, or null if the task is not found.
      */
-    public static String getTaskTitleNameById(int taskId, boolean formatWithIndex) {
-        String results = "";
+    public static String getTaskTitleNameById(int taskId) {
+        String results = null;
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtSingleTaskNameById = conn.prepareStatement(queryTaskTitleById)) {
+             PreparedStatement stmtSingleTaskNameById = prepare(conn, queryTaskTitleById)) {
 
             // Set the taskId parameter for the SQL query
             stmtSingleTaskNameById.setInt(1, taskId);
@@ -2026,9 +1994,9 @@ public class DatabaseManager {
             // Execute the query and obtain the result set
             ResultSet rsSingleTaskNameById = stmtSingleTaskNameById.executeQuery();
 
-            rsSingleTaskNameById.next();
-
-            results = ((formatWithIndex) ? taskId + " - " : "") + rsSingleTaskNameById.getString("title");
+            if (rsSingleTaskNameById.next()) {
+                results = rsSingleTaskNameById.getString("title");
+            }
 
         } catch (SQLException e) {
             // Log the exception stack trace
@@ -2041,15 +2009,13 @@ public class DatabaseManager {
      * Retrieves the project title by its ID.
      *
      * @param projectId the project ID.
-     * @param formatWithIndex Define the return format, if true every string has the format "index - value", else "value".
-     * @return the project title, formatted with index if specified.
+     * @return the project title, or null if not found or an error occurs.
      */
-    public static String getProjectTitleById(int projectId, boolean formatWithIndex) {
-        String results = "";
-        String projectUniqueName = "";
+    public static String getProjectTitleById(int projectId) {
+        String results = null;
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtProjectTitleById = conn.prepareStatement(queryProjectTitleById)) {
+             PreparedStatement stmtProjectTitleById = prepare(conn, queryProjectTitleById)) {
 
             // Set the taskId parameter for the SQL query
             stmtProjectTitleById.setInt(1, projectId);
@@ -2057,10 +2023,9 @@ public class DatabaseManager {
             // Execute the query and obtain the result set
             ResultSet rsProjectTitleById = stmtProjectTitleById.executeQuery();
 
-            rsProjectTitleById.next();
-
-            projectUniqueName = ((formatWithIndex) ? (projectId + " - ") : ("")) + rsProjectTitleById.getString("title");
-            results = projectUniqueName;
+            if (rsProjectTitleById.next()) {
+                results = rsProjectTitleById.getString("title");
+            }
 
         } catch (SQLException e) {
             // Log the exception stack trace
@@ -2079,7 +2044,7 @@ public class DatabaseManager {
         int result = -1;
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtSupervisorIdByProjectId = conn.prepareStatement(querySupervisorIdByProjectId)) {
+             PreparedStatement stmtSupervisorIdByProjectId = prepare(conn, querySupervisorIdByProjectId)) {
 
             // Set the taskId parameter for the SQL query
             stmtSupervisorIdByProjectId.setInt(1, projectId);
@@ -2107,7 +2072,7 @@ public class DatabaseManager {
      */
     public static boolean addReasearchersToProject(int projectId, int userId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtAddReasearchersToProject = conn.prepareStatement(insertProjectsVisibility)) {
+             PreparedStatement stmtAddReasearchersToProject = prepare(conn, insertProjectsVisibility)) {
             stmtAddReasearchersToProject.setInt(1, projectId);
             stmtAddReasearchersToProject.setInt(2, userId);
 
@@ -2130,7 +2095,7 @@ public class DatabaseManager {
      */
     public static boolean removeResearcherFromProject(int projectId, int userId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtRemoveReasearchersFromProject = conn.prepareStatement(queryDeleteProjectVisibility)) {
+             PreparedStatement stmtRemoveReasearchersFromProject = prepare(conn, queryDeleteProjectVisibility)) {
             stmtRemoveReasearchersFromProject.setInt(1, projectId);
             stmtRemoveReasearchersFromProject.setInt(2, userId);
 
@@ -2153,7 +2118,7 @@ public class DatabaseManager {
      */
     public static boolean removeResearcherFromTaskAssignments(int taskId, int userId) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtRemoveReasearchersFromTaskAssignments = conn.prepareStatement(queryDeleteTaskAssignments)) {
+             PreparedStatement stmtRemoveReasearchersFromTaskAssignments = prepare(conn, queryDeleteTaskAssignments)) {
             stmtRemoveReasearchersFromTaskAssignments.setInt(1, taskId);
             stmtRemoveReasearchersFromTaskAssignments.setInt(2, userId);
 
@@ -2167,36 +2132,39 @@ public class DatabaseManager {
         }
     }
     /**
-     * Retrieves the project-/work-package-/task-titles and IDs for a given task.
+     * Retrieves a task together with its work package and project.
      *
      * @param taskId the task’s ID
-     * @return a Map with keys:
-     *         "wpId", "wpTitle", "projectId", "projectTitle", "taskTitle"
+     * @return the task details, or null if the task does not exist
      */
-    public static Map<String, String> getProjectAndWorkPackageFromTaskId(int taskId) {
-        Map<String, String> returnProjectAndWorkPackageFromTaskId = new HashMap<>();
+    public static TaskDetails getTaskDetails(int taskId) {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(queryProjectAndWorkPackageFromTaskId)) {
+             PreparedStatement ps = prepare(conn, queryProjectAndWorkPackageFromTaskId)) {
 
             ps.setInt(1, taskId);
-            try (ResultSet rsProjectAndWorkPackageFromTaskId = ps.executeQuery()) {
-                if (rsProjectAndWorkPackageFromTaskId.next()) {
-                    returnProjectAndWorkPackageFromTaskId.put("proj_id", String.valueOf(rsProjectAndWorkPackageFromTaskId.getInt("proj_id")));
-                    returnProjectAndWorkPackageFromTaskId.put("proj_title", rsProjectAndWorkPackageFromTaskId.getString("proj_title"));
-                    returnProjectAndWorkPackageFromTaskId.put("wp_id", String.valueOf(rsProjectAndWorkPackageFromTaskId.getInt("wp_id")));
-                    returnProjectAndWorkPackageFromTaskId.put("wp_title", rsProjectAndWorkPackageFromTaskId.getString("wp_title"));
-                    returnProjectAndWorkPackageFromTaskId.put("wp_sdate", String.valueOf(rsProjectAndWorkPackageFromTaskId.getDate("wp_sdate")));
-                    returnProjectAndWorkPackageFromTaskId.put("wp_edate", String.valueOf(rsProjectAndWorkPackageFromTaskId.getString("wp_edate")));
-                    returnProjectAndWorkPackageFromTaskId.put("t_title", rsProjectAndWorkPackageFromTaskId.getString("t_title"));
-                    returnProjectAndWorkPackageFromTaskId.put("t_deadline", String.valueOf(rsProjectAndWorkPackageFromTaskId.getString("t_deadline")));
-                    returnProjectAndWorkPackageFromTaskId.put("t_priorityId", String.valueOf(rsProjectAndWorkPackageFromTaskId.getInt("t_priorityId")));
-                    returnProjectAndWorkPackageFromTaskId.put("t_statusId", String.valueOf(rsProjectAndWorkPackageFromTaskId.getInt("t_statusId")));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Date wpStart = rs.getDate("wp_sdate");
+                    Date wpEnd = rs.getDate("wp_edate");
+                    return new TaskDetails(
+                            taskId,
+                            rs.getString("t_title"),
+                            rs.getDate("t_deadline").toLocalDate(),
+                            rs.getInt("t_priorityId"),
+                            rs.getInt("t_statusId"),
+                            rs.getInt("wp_id"),
+                            rs.getString("wp_title"),
+                            (wpStart != null) ? wpStart.toLocalDate() : null,
+                            (wpEnd != null) ? wpEnd.toLocalDate() : null,
+                            rs.getInt("proj_id"),
+                            rs.getString("proj_title")
+                    );
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return returnProjectAndWorkPackageFromTaskId;
+        return null;
     }
 
     /**
@@ -2209,7 +2177,7 @@ public class DatabaseManager {
     public static Map<String, String> getWorkPackageFromId(int wpId) {
         Map<String, String> returnProjectAndWorkPackageFromTaskId = new HashMap<>();
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(queryWorkPackageById)) {
+             PreparedStatement ps = prepare(conn, queryWorkPackageById)) {
 
             ps.setInt(1, wpId);
             try (ResultSet rsProjectAndWorkPackageFromTaskId = ps.executeQuery()) {
@@ -2235,7 +2203,7 @@ public class DatabaseManager {
      */
     public static int getWorkingHoursWeekly(int userId) {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(queryWorkingHoursWeeklyByUserId)) {
+             PreparedStatement ps = prepare(conn, queryWorkingHoursWeeklyByUserId)) {
             ps.setInt(1, userId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -2256,7 +2224,7 @@ public class DatabaseManager {
      */
     public static int getUserIdByEmail(String email) {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(queryUsersFromEmail)) {
+             PreparedStatement ps = prepare(conn, queryUsersFromEmail)) {
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -2270,22 +2238,19 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a complex structure HashMap<LocalDate, HashMap<Integer, HashMap<Integer, Double>>> with all the time_entries, divided by different layers: day (LocalDate) -> projectId (Integer) -> taskId (Integer) and hours (Double).
+     * Retrieves the time_entries of a user in a range of days as a {@link Timesheet}: day -> projectId -> taskId and hours.
      *
      * @param userId the user's target id.
      * @param startDay day that I want to start the search.
      * @param endDay day that I want to end the search, it is an inclusive limit so if startDay == endDay then the search is only for that day.
-     * @return the user’s time_entries.
+     * @return the user’s time_entries, empty if they cannot be read.
      */
-    public static HashMap<LocalDate, HashMap<Integer, HashMap<Integer, Double>>> getUsersAndAssignmentsHoursByRangeDay(int userId, LocalDate startDay, LocalDate endDay) {
+    public static Timesheet getTimesheet(int userId, LocalDate startDay, LocalDate endDay) {
 
-        HashMap<LocalDate, HashMap<Integer, HashMap<Integer, Double>>> results = new HashMap<>();
-        //each element is a combination [LocalDate day (1) - (0..N) (Integer projectId)]
-        //      nested level: for each [Integer projectId (1) - (1..N) (Integer taskId)]
-        //          nested level: for each [Integer taskId (1) - (1) (Integer hours_worked)]
+        Timesheet.Builder timesheet = Timesheet.builder(startDay, endDay);
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtRetrieveTimeEntriesByUserAndWeek = conn.prepareStatement(queryRetrieveTimeEntriesByUserAndWeek)) {
+             PreparedStatement stmtRetrieveTimeEntriesByUserAndWeek = prepare(conn, queryRetrieveTimeEntriesByUserAndWeek)) {
 
             stmtRetrieveTimeEntriesByUserAndWeek.setInt(1, userId);
             stmtRetrieveTimeEntriesByUserAndWeek.setDate(2, Date.valueOf(startDay));
@@ -2294,45 +2259,37 @@ public class DatabaseManager {
             // Execute the query and obtain the result set
             ResultSet rsRetrieveTimeEntriesByUserAndWeek = stmtRetrieveTimeEntriesByUserAndWeek.executeQuery();
 
-            // loop each hours charged by user in the week
+            // loop each hours charged by user in the range
             while (rsRetrieveTimeEntriesByUserAndWeek.next()) {
-                // Retrieve values from the result set
-                LocalDate tes_entry_date = rsRetrieveTimeEntriesByUserAndWeek.getDate("tes_entry_date").toLocalDate();
-                int t_project_id = rsRetrieveTimeEntriesByUserAndWeek.getInt("wp_project_id");
-                int tes_task_id = rsRetrieveTimeEntriesByUserAndWeek.getInt("tes_task_id");
-                double tes_hours = rsRetrieveTimeEntriesByUserAndWeek.getDouble("tes_hours");
-
-                // Create a new HashMap for the current row
-                Map<Integer, Double> map_taskId_and_Hours = new HashMap<>();
-                map_taskId_and_Hours.put(tes_task_id, tes_hours);
-
-                // Find the corresponding day map in results //t_project_id
-                results.computeIfAbsent(tes_entry_date, k -> new HashMap<>())
-                        .computeIfAbsent(t_project_id, k -> new HashMap<>())
-                        .putAll(map_taskId_and_Hours);
+                timesheet.add(
+                        rsRetrieveTimeEntriesByUserAndWeek.getDate("tes_entry_date").toLocalDate(),
+                        rsRetrieveTimeEntriesByUserAndWeek.getInt("wp_project_id"),
+                        rsRetrieveTimeEntriesByUserAndWeek.getInt("tes_task_id"),
+                        rsRetrieveTimeEntriesByUserAndWeek.getDouble("tes_hours")
+                );
             }
         } catch (SQLException e) {
             // Log the exception stack trace
             e.printStackTrace();
+            return Timesheet.builder(startDay, endDay).build();
         }
-        return results;
+        return timesheet.build();
     }
 
     /**
-     * Retrieves a structure HashMap<String, String> which each element is a combination [String taskId-taskTitle (1) - (1) String projectId-projectTitle]
-     *   with the task where the user can add hours for a specific day without any problem
+     * Retrieves the tasks where the user can add hours for a specific day without any problem,
+     * with their project.
      *
      * @param userId the user's target id.
      * @param targetDay day that I want to look the hours added.
-     * @return the user’s available time_entries.
+     * @return the user’s available tasks.
      */
-    public static HashMap<String, String> getRetrieveTimeEntriesAvaibilityByUserAndDay(int userId, LocalDate targetDay, boolean formatWithIndex) {
+    public static List<TaskRef> getRetrieveTimeEntriesAvaibilityByUserAndDay(int userId, LocalDate targetDay) {
 
-        //each element is a combination [String taskId-taskTitle (1) - (1) String projectId-projectTitle]
-        HashMap<String, String> results = new HashMap<>();
+        List<TaskRef> results = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtRetrieveTimeEntriesAvaibilityByUserAndDay = conn.prepareStatement(queryRetrieveTimeEntriesAvaibilityByUserAndDay)) {
+             PreparedStatement stmtRetrieveTimeEntriesAvaibilityByUserAndDay = prepare(conn, queryRetrieveTimeEntriesAvaibilityByUserAndDay)) {
 
             stmtRetrieveTimeEntriesAvaibilityByUserAndDay.setInt(1, userId);
             stmtRetrieveTimeEntriesAvaibilityByUserAndDay.setDate(2, Date.valueOf(targetDay));
@@ -2341,16 +2298,7 @@ public class DatabaseManager {
             ResultSet rsRetrieveTimeEntriesAvaibilityByUserAndDay = stmtRetrieveTimeEntriesAvaibilityByUserAndDay.executeQuery();
 
             while (rsRetrieveTimeEntriesAvaibilityByUserAndDay.next()) {
-                // Retrieve values from the result set
-                int task_id = rsRetrieveTimeEntriesAvaibilityByUserAndDay.getInt("task_id");
-                String task_title = rsRetrieveTimeEntriesAvaibilityByUserAndDay.getString("task_title");
-                int projs_id = rsRetrieveTimeEntriesAvaibilityByUserAndDay.getInt("projs_id");
-                String projs_title = rsRetrieveTimeEntriesAvaibilityByUserAndDay.getString("projs_title");
-
-                results.put(
-                        ((formatWithIndex) ? (task_id + " - ") : "") + task_title,
-                        ((formatWithIndex) ? (projs_id + " - ") : "") + projs_title
-                );
+                results.add(readTaskRef(rsRetrieveTimeEntriesAvaibilityByUserAndDay));
             }
         } catch (SQLException e) {
             // Log the exception stack trace
@@ -2360,122 +2308,107 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves the total effort consumed in task assignments for a specific user and task.
+     * Retrieves the time entries of a user for a day, with project and task titles resolved in the
+     * same query.
      *
      * @param userId the user's target id.
-     * @param taskId the task's target id.
-     * @return the total effort consumed in task assignments.
+     * @param targetDay day that I want to look the hours added.
+     * @return the user's hours of the day, ordered by project and task.
      */
-    public static int getEffortConsumedInTaskAssignments(int userId, int taskId) {
-        int effortConsumed = 0;
+    public static List<TaskHours> getTimeEntriesWithTitlesByUserAndDay(int userId, LocalDate targetDay) {
+
+        List<TaskHours> results = new ArrayList<>();
+
         try (Connection conn = getConnection();
-             PreparedStatement stmtEffortConsumedInTaskAssignments = conn.prepareStatement(queryEffortConsumedInTaskAssignments)) {
+             PreparedStatement stmtTimeEntriesWithTitles = prepare(conn, queryTimeEntriesWithTitlesByUserAndDay)) {
 
-            stmtEffortConsumedInTaskAssignments.setInt(1, userId);
-            stmtEffortConsumedInTaskAssignments.setInt(2, taskId);
+            stmtTimeEntriesWithTitles.setInt(1, userId);
+            stmtTimeEntriesWithTitles.setDate(2, Date.valueOf(targetDay));
 
-            // Execute the query and obtain the result set
-            ResultSet rsEffortConsumedInTaskAssignments = stmtEffortConsumedInTaskAssignments.executeQuery();
+            ResultSet rsTimeEntriesWithTitles = stmtTimeEntriesWithTitles.executeQuery();
 
-            while (rsEffortConsumedInTaskAssignments.next()) {
-                // Retrieve values from the result set
-                effortConsumed = rsEffortConsumedInTaskAssignments.getInt("effort_consumed");
+            while (rsTimeEntriesWithTitles.next()) {
+                results.add(new TaskHours(readTaskRef(rsTimeEntriesWithTitles), rsTimeEntriesWithTitles.getDouble("te_hours")));
             }
         } catch (SQLException e) {
-            // Log the exception stack trace
             e.printStackTrace();
         }
-        return effortConsumed;
+        return results;
     }
 
     /**
-     * Removes a time entry and updates task assignment for a user and task on a specific day.
+     * Same as {@link #getRetrieveTimeEntriesAvaibilityByUserAndDay} plus the time-off tasks of
+     * {@link #getNonWorkingTasks}, read with a single UNION query.
      *
-     * @param userId the user id.
-     * @param taskId the task id.
-     * @param targetDay the date.
-     * @return true if removed, false otherwise.
+     * @param userId the user's target id.
+     * @param targetDay day that I want to look the hours added.
+     * @return the tasks where the user can add hours, ordered by project and task.
      */
-    public static boolean removeTimeEntryAndTaskAssignmentByUserIdAndTaskId(int userId, int taskId, LocalDate targetDay) {
-        try {
+    public static List<TaskRef> getTasksAvailableAndNonWorkingByUserAndDay(int userId, LocalDate targetDay) {
 
-            // 01. Ottengo quante ore devo andare a togliere dal task_assignments che non tiene traccia dei singoli giorni
-            int singleTimeEntryHours = getSingleTimeEntryHours(userId, taskId, targetDay);
+        List<TaskRef> results = new ArrayList<>();
 
-            // 02. Vado a togliere le ore dal task_assignments
-            boolean updateEffortConsumedInTaskAssignmentsStatus = updateEffortConsumedInTaskAssignments(userId, taskId, singleTimeEntryHours, -1);
+        try (Connection conn = getConnection();
+             PreparedStatement stmtTasksAvailable = prepare(conn, queryTasksAvailableAndNonWorkingByUserAndDay)) {
 
-            if (updateEffortConsumedInTaskAssignmentsStatus) {
+            stmtTasksAvailable.setInt(1, userId);
+            stmtTasksAvailable.setDate(2, Date.valueOf(targetDay));
 
-                // 03. Rimuovo l'entry dal time_entries
-                boolean removeSingleTimeEntryHoursStatus = removeSingleTimeEntryHours(userId, taskId, targetDay);
+            ResultSet rsTasksAvailable = stmtTasksAvailable.executeQuery();
 
-                return removeSingleTimeEntryHoursStatus;
+            while (rsTasksAvailable.next()) {
+                results.add(readTaskRef(rsTasksAvailable));
             }
-
-            return false;
-
-        } catch (Exception e) {
+        } catch (SQLException e) {
             e.printStackTrace();
-            return false;
         }
+        return results;
     }
 
     /**
-     * Removes a single time entry for a user, task, and day.
-     *
-     * @param userId the user id.
-     * @param taskId the task id.
-     * @param targetDay the date.
-     * @return true if removed, false otherwise.
+     * Reads a task reference from the projs_id, projs_title, task_id and task_title columns.
      */
-    public static boolean removeSingleTimeEntryHours(int userId, int taskId, LocalDate targetDay) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmtRemoveSingleTimeEntryHours = conn.prepareStatement(queryRemoveSingleTimeEntryHours)) {
-            stmtRemoveSingleTimeEntryHours.setInt(1, userId);
-            stmtRemoveSingleTimeEntryHours.setInt(2, taskId);
-            stmtRemoveSingleTimeEntryHours.setDate(3, Date.valueOf(targetDay));
-
-            int affectedRows = stmtRemoveSingleTimeEntryHours.executeUpdate();
-
-            return affectedRows > 0;
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+    private static TaskRef readTaskRef(ResultSet rs) throws SQLException {
+        return new TaskRef(rs.getInt("task_id"), rs.getString("task_title"), rs.getInt("projs_id"), rs.getString("projs_title"));
     }
 
     /**
-     * Gets the hours for a single time entry.
+     * Removes a time entry and updates task assignment for a user and task on a specific day,
+     * in a single transaction.
      *
      * @param userId the user id.
      * @param taskId the task id.
      * @param targetDay the date.
-     * @return hours as int, or -1 if not found.
+     * @return true if removed, false otherwise.
      */
-    public static int getSingleTimeEntryHours(int userId, int taskId, LocalDate targetDay) {
-        int singleTimeEntryHours = 0;
-
-        try (Connection conn = getConnection();
-             PreparedStatement stmtSingleTimeEntryHours = conn.prepareStatement(querySingleTimeEntryHours)) {
-            stmtSingleTimeEntryHours.setInt(1, userId);
-            stmtSingleTimeEntryHours.setInt(2, taskId);
-            stmtSingleTimeEntryHours.setDate(3, Date.valueOf(targetDay));
-
-            // Execute the query and obtain the result set
-            ResultSet rsSingleTimeEntryHours = stmtSingleTimeEntryHours.executeQuery();
-
-            while (rsSingleTimeEntryHours.next()) {
-                // Retrieve values from the result set
-                singleTimeEntryHours = (int) rsSingleTimeEntryHours.getDouble("hours");
+    public static boolean removeTimeEntryAndTaskAssignmentByUserIdAndTaskId(int userId, int taskId, LocalDate targetDay) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmtAdjustEffort = prepare(conn, adjustEffortConsumedForTimeEntry);
+                 PreparedStatement stmtRemoveSingleTimeEntryHours = prepare(conn, queryRemoveSingleTimeEntryHours)) {
+
+                // 01. Tolgo dal task_assignments le ore della entry, lette direttamente in SQL
+                setAdjustEffortParameters(stmtAdjustEffort, userId, taskId, targetDay, 0);
+                stmtAdjustEffort.executeUpdate();
+
+                // 02. Rimuovo l'entry dal time_entries
+                stmtRemoveSingleTimeEntryHours.setInt(1, userId);
+                stmtRemoveSingleTimeEntryHours.setInt(2, taskId);
+                stmtRemoveSingleTimeEntryHours.setDate(3, Date.valueOf(targetDay));
+                int rowsDeleted = stmtRemoveSingleTimeEntryHours.executeUpdate();
+
+                conn.commit();
+                return rowsDeleted > 0;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-
-            return singleTimeEntryHours;
-
         } catch (SQLException e) {
             e.printStackTrace();
-            return -1;
+            return false;
         }
     }
 
@@ -2488,7 +2421,7 @@ public class DatabaseManager {
      */
     public static boolean updatePriorityTask(int taskId, int priority_id) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtUpdatePriorityTask = conn.prepareStatement(queryUpdatePriorityTask)) {
+             PreparedStatement stmtUpdatePriorityTask = prepare(conn, queryUpdatePriorityTask)) {
             stmtUpdatePriorityTask.setInt(1, priority_id);
             stmtUpdatePriorityTask.setInt(2, taskId);
 
@@ -2511,7 +2444,7 @@ public class DatabaseManager {
      */
     public static boolean updateStatusTask(int taskId, int status_id) {
         try (Connection conn = getConnection();
-             PreparedStatement stmtUpdateStatusTask = conn.prepareStatement(queryUpdateStatusTask)) {
+             PreparedStatement stmtUpdateStatusTask = prepare(conn, queryUpdateStatusTask)) {
             stmtUpdateStatusTask.setInt(1, status_id);
             stmtUpdateStatusTask.setInt(2, taskId);
 
@@ -2541,33 +2474,22 @@ public class DatabaseManager {
     }
 
     /**
-     * Gets a map of non-working tasks.
+     * Gets the non-working tasks.
      *
-     * @param formatWithIndex if true, format with index.
-     * @return map with task and project info.
+     * @return the time-off tasks, with their project.
      */
-    public static HashMap<String, String> getNonWorkingTasks(boolean formatWithIndex) {
+    public static List<TaskRef> getNonWorkingTasks() {
 
-        //each element is a combination [String taskId-taskTitle (1) - (1) String projectId-projectTitle]
-        HashMap<String, String> results = new HashMap<>();
+        List<TaskRef> results = new ArrayList<>();
 
         try (Connection conn = getConnection();
-             PreparedStatement stmtNonWorkingTasks = conn.prepareStatement(queryNonWorkingTasks)) {
+             PreparedStatement stmtNonWorkingTasks = prepare(conn, queryNonWorkingTasks)) {
 
             // Execute the query and obtain the result set
             ResultSet rsNonWorkingTasks = stmtNonWorkingTasks.executeQuery();
 
             while (rsNonWorkingTasks.next()) {
-                // Retrieve values from the result set
-                int task_id = rsNonWorkingTasks.getInt("task_id");
-                String task_title = rsNonWorkingTasks.getString("task_title");
-                int projs_id = rsNonWorkingTasks.getInt("projs_id");
-                String projs_title = rsNonWorkingTasks.getString("projs_title");
-
-                results.put(
-                        ((formatWithIndex) ? (task_id + " - ") : "") + task_title,
-                        ((formatWithIndex) ? (projs_id + " - ") : "") + projs_title
-                );
+                results.add(readTaskRef(rsNonWorkingTasks));
             }
         } catch (SQLException e) {
             // Log the exception stack trace
@@ -2575,4 +2497,350 @@ public class DatabaseManager {
         }
         return results;
     }
+
+    /**
+     * Reads the hours charged by a user in a period, summed by project, task and day with a
+     * single GROUP BY query, and hands them to the handler one row at a time, ordered by project,
+     * task and day: the rows are never collected in memory.
+     *
+     * @param userId the user's target id.
+     * @param firstDay the first day of the period.
+     * @param lastDay the last day of the period.
+     * @param handler receives the rows as they are read.
+     * @return the weekly contract hours of the user, or -1 if the user is not found or the query fails.
+     * @throws IOException if the handler fails.
+     */
+    public static int forEachMonthlyHours(int userId, LocalDate firstDay, LocalDate lastDay, MonthlyHours.Handler handler) throws IOException {
+        int workingHoursWeekly = -1;
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmtMonthlyHours = prepare(conn, queryMonthlyHoursByUser)) {
+
+            stmtMonthlyHours.setDate(1, Date.valueOf(firstDay));
+            stmtMonthlyHours.setDate(2, Date.valueOf(lastDay));
+            stmtMonthlyHours.setInt(3, userId);
+
+            try (ResultSet rsMonthlyHours = stmtMonthlyHours.executeQuery()) {
+                while (rsMonthlyHours.next()) {
+                    workingHoursWeekly = rsMonthlyHours.getInt("working_hours_weekly");
+
+                    Date entryDate = rsMonthlyHours.getDate("entry_date");
+                    if (entryDate == null) {
+                        continue; // no hours in the period: only the contract hours are returned
+                    }
+                    handler.accept(new MonthlyHours(readTaskRef(rsMonthlyHours), entryDate.toLocalDate(),
+                            rsMonthlyHours.getDouble("total_hours")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return workingHoursWeekly;
+    }
+
+    /**
+     * Finds the stored monthly report of a user generated from the given hours.
+     *
+     * @param userId the user's target id.
+     * @param month the first day of the month of the report.
+     * @param sourceHash the hash of the hours of the month, see {@link #storeUserReport}.
+     * @return the id of the report, or -1 if there is none or the query fails.
+     */
+    public static int findUserReport(int userId, LocalDate month, String sourceHash) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmtReportBySource = prepare(conn, queryUserReportBySource)) {
+            stmtReportBySource.setInt(1, userId);
+            stmtReportBySource.setDate(2, Date.valueOf(month));
+            stmtReportBySource.setString(3, sourceHash);
+
+            try (ResultSet rsReportBySource = stmtReportBySource.executeQuery()) {
+                if (rsReportBySource.next()) {
+                    return rsReportBySource.getInt("id");
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the monthly report of a user, in a single transaction.
+     * <p>
+     * A report with the same content for the same user and month is not stored twice: the
+     * existing row is reused and gets the new source hash and retention. The unsigned reports of
+     * the month generated from other hours are deleted, since the hours they show have changed.
+     * </p>
+     *
+     * @param userId the user's target id.
+     * @param month the first day of the month of the report.
+     * @param sourceHash the hash of the hours the report was generated from.
+     * @param contentHash the hash of the rendered report.
+     * @param reportData the rendered report.
+     * @param retentionUntil the day until which the report must be kept.
+     * @return the id of the stored report, or -1 if it cannot be stored.
+     */
+    public static int storeUserReport(int userId, LocalDate month, String sourceHash, String contentHash,
+                                      byte[] reportData, LocalDate retentionUntil) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmtReportByContent = prepare(conn, queryUserReportByContent);
+                 PreparedStatement stmtUpdateSource = prepare(conn, updateUserReportSource);
+                 PreparedStatement stmtAddReport = prepare(conn, insertUserReport, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement stmtDeleteStale = prepare(conn, deleteStaleUserReports)) {
+
+                // 01. Stesso PDF già presente: si riusa la riga
+                int reportId = -1;
+                stmtReportByContent.setInt(1, userId);
+                stmtReportByContent.setDate(2, Date.valueOf(month));
+                stmtReportByContent.setString(3, contentHash);
+                try (ResultSet rsReportByContent = stmtReportByContent.executeQuery()) {
+                    if (rsReportByContent.next()) {
+                        reportId = rsReportByContent.getInt("id");
+                    }
+                }
+
+                if (reportId >= 0) {
+                    stmtUpdateSource.setString(1, sourceHash);
+                    stmtUpdateSource.setDate(2, Date.valueOf(retentionUntil));
+                    stmtUpdateSource.setInt(3, reportId);
+                    stmtUpdateSource.executeUpdate();
+                } else {
+                    // 02. Altrimenti si inserisce il nuovo report
+                    stmtAddReport.setInt(1, userId);
+                    stmtAddReport.setDate(2, Date.valueOf(month));
+                    stmtAddReport.setString(3, sourceHash);
+                    stmtAddReport.setString(4, contentHash);
+                    stmtAddReport.setBytes(5, reportData);
+                    stmtAddReport.setDate(6, Date.valueOf(retentionUntil));
+                    stmtAddReport.executeUpdate();
+                    try (ResultSet generatedKeys = stmtAddReport.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            reportId = generatedKeys.getInt(1);
+                        }
+                    }
+                }
+
+                // 03. I report generati da ore precedenti non sono più validi
+                stmtDeleteStale.setInt(1, userId);
+                stmtDeleteStale.setDate(2, Date.valueOf(month));
+                stmtDeleteStale.setString(3, sourceHash);
+                stmtDeleteStale.executeUpdate();
+
+                conn.commit();
+                return reportId;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Deletes the reports whose retention has expired.
+     *
+     * @param today the current day: reports kept until an earlier day are deleted.
+     * @return the number of deleted reports, or -1 if the deletion fails.
+     */
+    public static int deleteExpiredReports(LocalDate today) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmtDeleteExpired = prepare(conn, deleteExpiredReports)) {
+            stmtDeleteExpired.setDate(1, Date.valueOf(today));
+            return stmtDeleteExpired.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Copies a stored report of a user to the given stream, without loading it in memory.
+     *
+     * @param reportId the id of the report.
+     * @param userId the user the report must belong to.
+     * @param out the stream the report is written to; it is not closed.
+     * @return true if the report was found and written, false otherwise.
+     * @throws IOException if the stream cannot be written.
+     */
+    public static boolean writeUserReport(int reportId, int userId, OutputStream out) throws IOException {
+        try (Connection conn = getConnection();
+             PreparedStatement stmtReportData = prepare(conn, queryUserReportData)) {
+            stmtReportData.setInt(1, reportId);
+            stmtReportData.setInt(2, userId);
+
+            try (ResultSet rsReportData = stmtReportData.executeQuery()) {
+                if (!rsReportData.next()) {
+                    return false;
+                }
+                try (InputStream reportData = rsReportData.getBinaryStream("report_data")) {
+                    if (reportData == null) {
+                        return false;
+                    }
+                    reportData.transferTo(out);
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Gets a stored report of a user, without its content.
+     *
+     * @param reportId the id of the report.
+     * @param userId the user the report must belong to.
+     * @return the report, or null if it does not exist, belongs to another user or the query fails.
+     */
+    public static StoredReport getUserReport(int reportId, int userId) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmtUserReport = prepare(conn, queryUserReport)) {
+            stmtUserReport.setInt(1, reportId);
+            stmtUserReport.setInt(2, userId);
+
+            try (ResultSet rsUserReport = stmtUserReport.executeQuery()) {
+                if (rsUserReport.next()) {
+                    Timestamp createdAt = rsUserReport.getTimestamp("created_at");
+                    return new StoredReport(
+                            rsUserReport.getInt("id"),
+                            rsUserReport.getInt("user_id"),
+                            rsUserReport.getDate("report_month").toLocalDate(),
+                            rsUserReport.getString("content_hash"),
+                            createdAt != null ? createdAt.toLocalDateTime() : null
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Records the content hash of a report stored before it was computed at insert time.
+     *
+     * @param reportId the id of the report.
+     * @param contentHash the hexadecimal SHA-256 of the report.
+     * @return true if the report was updated, false otherwise.
+     */
+    public static boolean updateReportContentHash(int reportId, String contentHash) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmtUpdateContentHash = prepare(conn, updateUserReportContentHash)) {
+            stmtUpdateContentHash.setString(1, contentHash);
+            stmtUpdateContentHash.setInt(2, reportId);
+            return stmtUpdateContentHash.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the content hashes of all the stored reports.
+     *
+     * @return the set of hashes, or null if the query fails.
+     */
+    public static Set<String> getReportContentHashes() {
+        Set<String> contentHashes = new HashSet<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmtContentHashes = prepare(conn, queryReportContentHashes);
+             ResultSet rsContentHashes = stmtContentHashes.executeQuery()) {
+            while (rsContentHashes.next()) {
+                contentHashes.add(rsContentHashes.getString("content_hash"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return contentHashes;
+    }
+
+    /**
+     * Reads the time entries in a period, with their user, task, work package and project, and
+     * hands them to the handler ordered by user, day and task. The rows are read in pages of
+     * {@link #EXPORT_PAGE_SIZE}, each one starting after the key of the previous page, and the
+     * connection goes back to the pool before a page is handed over: a slow handler, such as a
+     * download to a slow client, never holds a connection, and memory is bounded by one page.
+     *
+     * @param userId the user whose entries are read, or null for all the users.
+     * @param projectId the project whose entries are read, or null for all the projects.
+     * @param firstDay the first day of the period.
+     * @param lastDay the last day of the period.
+     * @param handler receives the rows, one page at a time.
+     * @return the number of rows read, or -1 if a query fails.
+     * @throws IOException if the handler fails.
+     */
+    public static long forEachTimeEntry(Integer userId, Integer projectId, LocalDate firstDay, LocalDate lastDay,
+                                        TimeEntryRow.Handler handler) throws IOException {
+        long rows = 0;
+        List<TimeEntryRow> page = new ArrayList<>(EXPORT_PAGE_SIZE);
+        // key (user, day, task) of the last row handed over: the first page starts before every row
+        int afterUserId = Integer.MIN_VALUE;
+        LocalDate afterDay = firstDay;
+        int afterTaskId = Integer.MIN_VALUE;
+
+        do {
+            page.clear();
+            try (Connection conn = getConnection();
+                 PreparedStatement stmtExport = prepare(conn, (userId != null) ? queryExportTimeEntriesByUser : queryExportTimeEntries)) {
+                int index = 1;
+                if (userId != null) {
+                    stmtExport.setInt(index++, userId);
+                }
+                stmtExport.setDate(index++, Date.valueOf(firstDay));
+                stmtExport.setDate(index++, Date.valueOf(lastDay));
+                if (projectId != null) {
+                    stmtExport.setInt(index++, projectId);
+                } else {
+                    stmtExport.setNull(index++, Types.INTEGER);
+                }
+                stmtExport.setInt(index++, afterUserId);
+                stmtExport.setDate(index++, Date.valueOf(afterDay));
+                stmtExport.setInt(index++, afterTaskId);
+                stmtExport.setInt(index, EXPORT_PAGE_SIZE);
+
+                try (ResultSet rsExport = stmtExport.executeQuery()) {
+                    while (rsExport.next()) {
+                        page.add(new TimeEntryRow(
+                                rsExport.getInt("user_id"),
+                                rsExport.getString("email"),
+                                rsExport.getDate("entry_date").toLocalDate(),
+                                rsExport.getDouble("hours"),
+                                rsExport.getInt("projs_id"),
+                                rsExport.getString("projs_title"),
+                                rsExport.getInt("wp_id"),
+                                rsExport.getString("wp_title"),
+                                rsExport.getInt("task_id"),
+                                rsExport.getString("task_title")
+                        ));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return -1;
+            }
+
+            // the connection is already back in the pool
+            for (TimeEntryRow row : page) {
+                handler.accept(row);
+            }
+            rows += page.size();
+            if (!page.isEmpty()) {
+                TimeEntryRow last = page.get(page.size() - 1);
+                afterUserId = last.userId();
+                afterDay = last.day();
+                afterTaskId = last.taskId();
+            }
+        } while (page.size() == EXPORT_PAGE_SIZE);
+
+        return rows;
+    }
 }
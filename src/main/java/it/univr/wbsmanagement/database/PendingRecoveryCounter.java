@@ -0,0 +1,122 @@
+package it.univr.wbsmanagement.database;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory count of the active (not evaded) recover-credentials requests.
+ *
+ * <p>The count is shown in the admin menu of every page, so it is kept here instead of being
+ * counted on the table at each request: {@link DatabaseManager#addRecoverCredentialsRequests}
+ * and {@link DatabaseManager#updateRecoverCredentialsRequests} adjust it when they open or close
+ * a request, and {@link #resync()} reloads it from the table (on first use and periodically,
+ * to pick up changes made outside the application).</p>
+ *
+ * <p>The reads served from memory and from the table are exposed by {@link #bindTo} as
+ * {@code wbs.recovery-counter.reads{result=hit|miss}}, with the
+ * {@code wbs.recovery-counter.hit-rate} gauge.</p>
+ */
+public final class PendingRecoveryCounter {
+
+    /**
+     * Marks a count not loaded yet.
+     */
+    private static final int NOT_LOADED = -1;
+
+    private static final AtomicInteger pending = new AtomicInteger(NOT_LOADED);
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private PendingRecoveryCounter() {
+    }
+
+    /**
+     * Writes the hits, misses and hit rate of the count to the given registry.
+     *
+     * @param meterRegistry the application registry.
+     */
+    public static void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("wbs.recovery-counter.reads", PendingRecoveryCounter.class, c -> getHits())
+                .description("Reads of the pending recover-credentials count")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("wbs.recovery-counter.reads", PendingRecoveryCounter.class, c -> getMisses())
+                .description("Reads of the pending recover-credentials count")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("wbs.recovery-counter.hit-rate", PendingRecoveryCounter.class, c -> getHitRate())
+                .description("Ratio of the reads of the pending recover-credentials count served from memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the number of active recover-credentials requests, loading it from the
+     * database only if it was never loaded (or the last reload failed).
+     *
+     * @return the count of active recovery requests, or -1 if it cannot be loaded.
+     */
+    public static int get() {
+        int count = pending.get();
+        if (count != NOT_LOADED) {
+            hits.increment();
+            return count;
+        }
+        misses.increment();
+        return resync();
+    }
+
+    /**
+     * Reloads the count from the recover_credentials_requests table.
+     *
+     * @return the reloaded count, or -1 if the query failed.
+     */
+    public static int resync() {
+        int count = DatabaseManager.countRecoverCredentialsRequestsActive();
+        pending.set(count < 0 ? NOT_LOADED : count);
+        return count;
+    }
+
+    /**
+     * Records a newly opened request.
+     */
+    static void increment() {
+        pending.updateAndGet(count -> count == NOT_LOADED ? NOT_LOADED : count + 1);
+    }
+
+    /**
+     * Records closed requests.
+     *
+     * @param closed the number of requests just closed.
+     */
+    static void decrement(int closed) {
+        pending.updateAndGet(count -> count == NOT_LOADED ? NOT_LOADED : Math.max(0, count - closed));
+    }
+
+    /**
+     * @return the number of reads served from memory.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of reads that had to query the table.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of hits over all reads, 0 if nothing was read yet.
+     */
+    public static double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+}
@@ -0,0 +1,383 @@
+package it.univr.wbsmanagement.database;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency, row and error metrics of the {@link DatabaseManager} data access.
+ *
+ * <p>{@link DatabaseManager#getConnection()} and the statements it prepares go through here, so
+ * every method is measured without changing its body. The meters are tagged with
+ * {@code method}, the DatabaseManager method on the stack (or {@code Class.method} for the
+ * other classes of this package), and {@code query}, the name of the SQL query constant:</p>
+ * <ul>
+ *     <li>{@code wbs.db.connection.acquire} (timer): time spent borrowing a connection from the
+ *         pool; its count is the number of calls of each method.</li>
+ *     <li>{@code wbs.db.query} (timer): execution time of each statement.</li>
+ *     <li>{@code wbs.db.rows} (summary): rows read from each query, or written by each update.</li>
+ *     <li>{@code wbs.db.errors} (counter): failed connection borrows and statements.</li>
+ * </ul>
+ *
+ * <p>The tags are resolved once per connection borrow and once per prepared statement, and the
+ * meters of each method and query are registered once and then kept in a map, so an execution
+ * only records into meters it already holds. Statements slower than the configured threshold
+ * are logged with their method, query name and duration.</p>
+ *
+ * <p>The meters are written to {@link Metrics#globalRegistry} until
+ * {@link it.univr.wbsmanagement.config.DatabaseConfig} binds the Spring registry, which exposes
+ * them on {@code /actuator/metrics} and {@code /actuator/prometheus}.</p>
+ */
+public final class QueryMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private static final String UNKNOWN = "unknown";
+    private static final String OTHER_QUERY = "other";
+
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    /**
+     * Name of every SQL query constant of DatabaseManager, by its text.
+     */
+    private static final Map<String, String> queryNames = loadQueryNames();
+
+    private static volatile Meters meters = new Meters(Metrics.globalRegistry);
+    private static volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private QueryMetrics() {
+    }
+
+    /**
+     * Writes the meters to the given registry, with the statement cache hits and misses.
+     *
+     * @param meterRegistry the application registry.
+     */
+    public static void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("wbs.db.statement-cache.requests", StatementCache.class, c -> StatementCache.getHits())
+                .description("Prepared statements requested from the per-connection cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("wbs.db.statement-cache.requests", StatementCache.class, c -> StatementCache.getMisses())
+                .description("Prepared statements requested from the per-connection cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        meters = new Meters(meterRegistry);
+    }
+
+    /**
+     * @return the registry the meters are written to.
+     */
+    static MeterRegistry getRegistry() {
+        return meters.registry;
+    }
+
+    /**
+     * @param threshold statements taking longer than this are logged.
+     */
+    public static void setSlowQueryThreshold(Duration threshold) {
+        slowQueryNanos = threshold.toNanos();
+    }
+
+    /**
+     * Borrows a connection, measuring how long the pool took to provide it.
+     *
+     * @param dataSource the pool.
+     * @return the borrowed connection.
+     * @throws SQLException if the pool fails or times out.
+     */
+    static Connection acquire(DataSource dataSource) throws SQLException {
+        Meters current = meters;
+        String method = callerMethod();
+        long start = System.nanoTime();
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            current.acquireErrors(method).increment();
+            throw e;
+        } finally {
+            current.acquire(method).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Wraps a statement prepared by a DatabaseManager method so its executions are measured.
+     *
+     * @param statement the prepared statement.
+     * @param sql       the SQL query constant it was prepared from.
+     * @return a statement that behaves like the given one.
+     */
+    static PreparedStatement instrument(PreparedStatement statement, String sql) {
+        InstrumentedStatement handler = new InstrumentedStatement(statement,
+                meters.statement(callerMethod(), queryNames.getOrDefault(sql, OTHER_QUERY)));
+        return (PreparedStatement) Proxy.newProxyInstance(
+                QueryMetrics.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    /**
+     * Finds the method that is using the database: the first frame outside this class (and its
+     * nested classes) and the DatabaseManager helpers.
+     */
+    private static String callerMethod() {
+        return stackWalker.walk(frames -> frames
+                .filter(frame -> !isQueryMetricsFrame(frame.getClassName())
+                        && !(frame.getClassName().equals(DatabaseManager.class.getName())
+                             && (frame.getMethodName().equals("getConnection") || frame.getMethodName().equals("prepare"))))
+                .findFirst()
+                .map(frame -> {
+                    String methodName = frame.getMethodName();
+                    // lambda$getProjectTree$0 -> getProjectTree
+                    if (methodName.startsWith("lambda$")) {
+                        int end = methodName.indexOf('$', 7);
+                        methodName = methodName.substring(7, end > 0 ? end : methodName.length());
+                    }
+                    String className = frame.getClassName();
+                    return className.equals(DatabaseManager.class.getName())
+                            ? methodName
+                            : className.substring(className.lastIndexOf('.') + 1) + "." + methodName;
+                })
+                .orElse(UNKNOWN));
+    }
+
+    /**
+     * Whether a frame belongs to this class or one of its nested classes; a class whose name
+     * only starts with it, such as a test, is a caller.
+     */
+    private static boolean isQueryMetricsFrame(String className) {
+        String name = QueryMetrics.class.getName();
+        return className.equals(name) || className.startsWith(name + "$");
+    }
+
+    private static Map<String, String> loadQueryNames() {
+        Map<String, String> names = new HashMap<>();
+        for (Field field : DatabaseManager.class.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && field.getType() == String.class) {
+                try {
+                    field.setAccessible(true);
+                    names.put((String) field.get(null), field.getName());
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    // not a query constant that can be read: its statements are tagged as "other"
+                }
+            }
+        }
+        return names;
+    }
+
+    private static Counter errors(MeterRegistry registry, String method, String query) {
+        return Counter.builder("wbs.db.errors")
+                .description("Failed connection borrows and statements")
+                .tag("method", method)
+                .tag("query", query)
+                .register(registry);
+    }
+
+    /**
+     * The meters registered in one registry, by method and query.
+     */
+    private static final class Meters {
+        private final MeterRegistry registry;
+        private final Map<String, Timer> acquireTimers = new ConcurrentHashMap<>();
+        private final Map<String, Counter> acquireErrors = new ConcurrentHashMap<>();
+        private final Map<String, StatementMeters> statements = new ConcurrentHashMap<>();
+
+        Meters(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        Timer acquire(String method) {
+            return acquireTimers.computeIfAbsent(method, m -> Timer.builder("wbs.db.connection.acquire")
+                    .description("Time spent borrowing a connection from the pool")
+                    .tag("method", m)
+                    .register(registry));
+        }
+
+        Counter acquireErrors(String method) {
+            return acquireErrors.computeIfAbsent(method, m -> errors(registry, m, "getConnection"));
+        }
+
+        StatementMeters statement(String method, String query) {
+            return statements.computeIfAbsent(method + '\n' + query, k -> new StatementMeters(registry, method, query));
+        }
+    }
+
+    /**
+     * The meters of the statements of one method and query.
+     */
+    private static final class StatementMeters {
+        private final String method;
+        private final String query;
+        private final Timer executions;
+        private final DistributionSummary rows;
+        private final Counter errors;
+
+        StatementMeters(MeterRegistry registry, String method, String query) {
+            this.method = method;
+            this.query = query;
+            this.executions = Timer.builder("wbs.db.query")
+                    .description("Execution time of a DatabaseManager statement")
+                    .tag("method", method)
+                    .tag("query", query)
+                    .register(registry);
+            this.rows = DistributionSummary.builder("wbs.db.rows")
+                    .description("Rows read by a query or written by an update")
+                    .tag("method", method)
+                    .tag("query", query)
+                    .register(registry);
+            this.errors = errors(registry, method, query);
+        }
+    }
+
+    /**
+     * Measures the executions of one statement and the rows of its result sets.
+     */
+    private static final class InstrumentedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final StatementMeters meters;
+        private CountingResultSet openResultSet;
+
+        InstrumentedStatement(PreparedStatement statement, StatementMeters meters) {
+            this.statement = statement;
+            this.meters = meters;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method invoked, Object[] args) throws Throwable {
+            String name = invoked.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    reportResultSet();
+                    break;
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "execute":
+                    return execute(invoked, args);
+                default:
+                    break;
+            }
+            try {
+                return invoked.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private Object execute(Method invoked, Object[] args) throws Throwable {
+            reportResultSet();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invoked.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                meters.errors.increment();
+                log.warn("Query {} in {} failed: {}", meters.query, meters.method, e.getCause().getMessage());
+                throw e.getCause();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                meters.executions.record(elapsed, TimeUnit.NANOSECONDS);
+                if (elapsed > slowQueryNanos) {
+                    log.warn("Slow query {} in {}: {} ms", meters.query, meters.method, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                }
+            }
+
+            if (result instanceof ResultSet rs) {
+                openResultSet = new CountingResultSet(rs);
+                return Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(), new Class<?>[]{ResultSet.class}, openResultSet);
+            }
+            if (result instanceof Integer rows) {
+                meters.rows.record(rows);
+            } else if (result instanceof Long rows) {
+                meters.rows.record(rows);
+            } else if (result instanceof int[] counts) {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                meters.rows.record(rows);
+            }
+            return result;
+        }
+
+        /**
+         * Records the rows of the last result set, if it was not closed on its own.
+         */
+        private void reportResultSet() {
+            if (openResultSet != null) {
+                openResultSet.report();
+                openResultSet = null;
+            }
+        }
+
+        /**
+         * Counts the rows read from a result set and records them once, when it is closed.
+         */
+        private final class CountingResultSet implements InvocationHandler {
+            private final ResultSet resultSet;
+            private long rows;
+            private boolean reported;
+
+            CountingResultSet(ResultSet resultSet) {
+                this.resultSet = resultSet;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method invoked, Object[] args) throws Throwable {
+                switch (invoked.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "close":
+                        report();
+                        break;
+                    default:
+                        break;
+                }
+                try {
+                    Object result = invoked.invoke(resultSet, args);
+                    if (Boolean.TRUE.equals(result) && invoked.getName().equals("next")) {
+                        rows++;
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            void report() {
+                if (!reported) {
+                    reported = true;
+                    meters.rows.record(rows);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the reference tables (roles, priority and status).
+ *
+ * <p>These tables are seeded by the schema migrations and practically never change, so they are
+ * read once by {@link DatabaseManager#setupDatabase()} and served from memory afterwards, both to
+ * the lookup methods of DatabaseManager and to the queries that filter by role (which bind the
+ * resolved id instead of running a subquery on roles). {@link #reload()} replaces the snapshot
+ * after a change to the tables.</p>
+ */
+public final class ReferenceData {
+
+    private static final String queryRoles = "SELECT id, role_name FROM roles ORDER BY id";
+    private static final String queryPriority = "SELECT id, priority_name FROM priority ORDER BY id";
+    private static final String queryStatus = "SELECT id, status_name FROM status ORDER BY id";
+
+    public static final String ROLE_SUPERVISOR = "Supervisor";
+    public static final String ROLE_RESEARCHER = "Researcher";
+
+    private static final ReferenceData EMPTY = new ReferenceData(Map.of(), Map.of(), Map.of());
+
+    private static volatile ReferenceData current;
+
+    private final Map<Integer, String> roles;
+    private final Map<String, Integer> roleIds;
+    private final Map<Integer, String> priorities;
+    private final Map<Integer, String> statuses;
+
+    private ReferenceData(Map<Integer, String> roles, Map<Integer, String> priorities, Map<Integer, String> statuses) {
+        this.roles = Collections.unmodifiableMap(new LinkedHashMap<>(roles));
+        this.priorities = Collections.unmodifiableMap(new LinkedHashMap<>(priorities));
+        this.statuses = Collections.unmodifiableMap(new LinkedHashMap<>(statuses));
+
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        roles.forEach((id, name) -> ids.put(name, id));
+        this.roleIds = Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Returns the current snapshot, loading it on first use.
+     *
+     * @return the reference data; empty (and retried on the next call) if the tables cannot be read.
+     */
+    public static ReferenceData get() {
+        ReferenceData data = current;
+        return (data != null) ? data : reload();
+    }
+
+    /**
+     * Reads the reference tables again and replaces the current snapshot.
+     * If the tables cannot be read the previous snapshot is kept.
+     *
+     * @return the snapshot in use after the reload.
+     */
+    public static synchronized ReferenceData reload() {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            current = new ReferenceData(readNames(conn, queryRoles), readNames(conn, queryPriority), readNames(conn, queryStatus));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return (current != null) ? current : EMPTY;
+    }
+
+    /**
+     * Reads an (id, name) table into a map ordered by id.
+     */
+    private static Map<Integer, String> readNames(Connection conn, String sql) throws SQLException {
+        Map<Integer, String> names = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                names.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the role names by id, ordered by id.
+     */
+    public Map<Integer, String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return the priority names by id, ordered by id.
+     */
+    public Map<Integer, String> getPriorities() {
+        return priorities;
+    }
+
+    /**
+     * @return the status names by id, ordered by id.
+     */
+    public Map<Integer, String> getStatuses() {
+        return statuses;
+    }
+
+    /**
+     * @param roleId the role id.
+     * @return the role name, or an empty string if the role does not exist.
+     */
+    public String getRoleName(int roleId) {
+        return roles.getOrDefault(roleId, "");
+    }
+
+    /**
+     * @param roleName the role name.
+     * @return the role id, or -1 if the role does not exist.
+     */
+    public int getRoleId(String roleName) {
+        return roleIds.getOrDefault(roleName, -1);
+    }
+
+    /**
+     * @param priorityId the priority id.
+     * @return the priority name, or null if the priority does not exist.
+     */
+    public String getPriorityName(int priorityId) {
+        return priorities.get(priorityId);
+    }
+
+    /**
+     * @param statusId the status id.
+     * @return the status name, or null if the status does not exist.
+     */
+    public String getStatusName(int statusId) {
+        return statuses.get(statusId);
+    }
+}
@@ -0,0 +1,370 @@
+package it.univr.wbsmanagement.database;
+
+import java.util.List;
+
+import it.univr.wbsmanagement.database.SchemaMigrator.Migration;
+
+/**
+ * The ordered catalogue of schema migrations applied by {@link SchemaMigrator}.
+ *
+ * <p>Each migration is a script of ';'-separated statements. Once a migration has been released
+ * its script must never change, because its checksum is stored in {@code schema_version} and
+ * validated on every start: schema and data changes go in a new migration with the next version.</p>
+ */
+final class SchemaMigrations {
+
+    // SQL statements for creating tables and inserting default values, adapted for H2.
+    private static final String createRolesTableSQL = """
+            CREATE TABLE IF NOT EXISTS roles (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                role_name VARCHAR(255) UNIQUE NOT NULL
+            );
+        """;
+
+    private static final String createUsersTableSQL = """
+            CREATE TABLE IF NOT EXISTS users (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                email VARCHAR(255) UNIQUE NOT NULL,
+                password VARCHAR(255) NOT NULL,
+                role_id INT NOT NULL,
+                privacy_accepted BOOLEAN DEFAULT FALSE,
+                working_hours_weekly INT NOT NULL,
+                FOREIGN KEY (role_id) REFERENCES roles(id)
+            );
+        """;
+
+    private static final String createPriorityTableSQL = """
+            CREATE TABLE IF NOT EXISTS priority (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                priority_name VARCHAR(255) UNIQUE NOT NULL
+            );
+        """;
+
+    private static final String createStatusTableSQL = """
+            CREATE TABLE IF NOT EXISTS status (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                status_name VARCHAR(255) UNIQUE NOT NULL
+            );
+        """;
+
+    // In H2, "INSERT OR IGNORE" doesn't exist. We split them into conditional inserts.
+    private static final String insertRolesSQL = """
+            INSERT INTO roles (role_name)
+                SELECT 'Researcher'
+                WHERE NOT EXISTS (SELECT 1 FROM roles WHERE role_name = 'Researcher');
+            INSERT INTO roles (role_name)
+                SELECT 'Supervisor'
+                WHERE NOT EXISTS (SELECT 1 FROM roles WHERE role_name = 'Supervisor');
+            INSERT INTO roles (role_name)
+                SELECT 'Administrator'
+                WHERE NOT EXISTS (SELECT 1 FROM roles WHERE role_name = 'Administrator');
+        """;
+
+    private static final String insertPrioritySQL = """
+            INSERT INTO priority (priority_name)
+                SELECT 'High'
+                WHERE NOT EXISTS (SELECT 1 FROM priority WHERE priority_name = 'High');
+            INSERT INTO priority (priority_name)
+                SELECT 'Medium'
+                WHERE NOT EXISTS (SELECT 1 FROM priority WHERE priority_name = 'Medium');
+            INSERT INTO priority (priority_name)
+                SELECT 'Low'
+                WHERE NOT EXISTS (SELECT 1 FROM priority WHERE priority_name = 'Low');
+        """;
+
+    private static final String insertStatusSQL = """
+            INSERT INTO status (status_name)
+                SELECT 'In Progress'
+                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'In Progress');
+            INSERT INTO status (status_name)
+                SELECT 'Waiting dependency'
+                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Waiting dependency');
+            INSERT INTO status (status_name)
+                SELECT 'Blocked'
+                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Blocked');
+            INSERT INTO status (status_name)
+                SELECT 'Completed'
+                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Completed');
+            INSERT INTO status (status_name)
+                SELECT 'Not started'
+                WHERE NOT EXISTS (SELECT 1 FROM status WHERE status_name = 'Not started');
+        """;
+
+    private static final String insertAdminSQL = """
+            -- We do a similar conditional approach for the admin user
+            INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly)
+            SELECT 'admin', 'admin', (SELECT id FROM roles WHERE role_name = 'Administrator'), TRUE, 0
+            WHERE NOT EXISTS (SELECT 1 FROM users WHERE email='admin');
+        """;
+
+    private static final String insertTestUsersSQL = """
+            INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly)
+            SELECT 'supervisor', 'supervisor', (SELECT id FROM roles WHERE role_name = 'Supervisor'), TRUE, 0
+            WHERE NOT EXISTS (SELECT 1 FROM users WHERE email='supervisor');
+        
+            INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly)
+            SELECT 'researcher', 'researcher', (SELECT id FROM roles WHERE role_name = 'Researcher'), TRUE, 0
+            WHERE NOT EXISTS (SELECT 1 FROM users WHERE email='researcher');
+        """;
+
+    private static final String insertNotWorkingHoursDestination = """
+            INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
+            SELECT 'TimeOffProj', 'Contains various reason to have time off-working', (SELECT id FROM users WHERE email='admin'), (SELECT id FROM users WHERE email='supervisor')
+            WHERE NOT EXISTS (SELECT 1 FROM projects WHERE title='TimeOffProj');
+        
+            INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+            SELECT (SELECT id FROM projects WHERE title='TimeOffProj'), 'TimeOffWP_Charg', 'It contains the vacancy task', CAST('1980-01-01' AS DATE), CAST('2099-12-31' AS DATE)
+            WHERE NOT EXISTS (SELECT 1 FROM work_packages WHERE title='TimeOffWP_Charg');
+            
+            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
+            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_Charg'), 'Generic_not_work', 'Hours not worked by the user', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
+            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Generic_not_work');
+            
+            INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+            SELECT (SELECT id FROM projects WHERE title='TimeOffProj'), 'TimeOffWP_NotCharg', 'It contains the not chargable task - like blood donation', CAST('1980-01-01' AS DATE), CAST('2099-12-31' AS DATE)
+            WHERE NOT EXISTS (SELECT 1 FROM work_packages WHERE title='TimeOffWP_NotCharg');
+            
+            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
+            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Medical_certification', 'Hours not worked by the user certificated by a doctor', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
+            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Medical_certification');
+            
+            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
+            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Blood_donation', 'Hours not worked by the user for blood donation', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
+            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Blood_donation');
+            
+            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
+            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Exam', 'Hours not worked by the user for certificate exam', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
+            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Exam');
+            
+            INSERT INTO tasks (work_package_id, title, description, duration_hours, effort_hours, deadline, priority_id, status_id)
+            SELECT (SELECT id FROM work_packages WHERE title='TimeOffWP_NotCharg'), 'Public_Holyday', 'Public holyday', 0, 0, CAST('2099-12-31' AS DATE), (SELECT id FROM priority WHERE priority_name = 'Low'), (SELECT id FROM status WHERE status_name = 'Completed')
+            WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE title='Public_Holyday');
+        """;
+
+    private static final String createRecoverCredentialsRequestsTableSQL = """
+            CREATE TABLE IF NOT EXISTS recover_credentials_requests (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                email VARCHAR(255) NOT NULL,
+                evaded BOOLEAN DEFAULT FALSE,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            );
+        """;
+
+    private static final String createProjectsTableSQL = """
+            CREATE TABLE IF NOT EXISTS projects (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                title VARCHAR(255) NOT NULL UNIQUE,
+                description VARCHAR(255),
+                created_by_admin_id INT NOT NULL,
+                supervisor_id INT NOT NULL,
+                created_at DATE DEFAULT CURRENT_DATE,
+                archived BOOLEAN DEFAULT FALSE,
+                FOREIGN KEY (created_by_admin_id) REFERENCES users(id),
+                FOREIGN KEY (supervisor_id) REFERENCES users(id)
+            );
+        """;
+
+    private static final String createWorkPackagesTableSQL = """
+            CREATE TABLE IF NOT EXISTS work_packages (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                project_id INT NOT NULL,
+                title VARCHAR(255) NOT NULL,
+                description VARCHAR(255),
+                start_date DATE,
+                end_date DATE,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE
+            );
+        """;
+
+    private static final String createTasksTableSQL = """
+            CREATE TABLE IF NOT EXISTS tasks (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                work_package_id INT NOT NULL,
+                title VARCHAR(255) NOT NULL,
+                description VARCHAR(255) NOT NULL,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                effort_hours INT NOT NULL,
+                duration_hours INT NOT NULL,
+                deadline DATE NOT NULL,
+                priority_id INT NOT NULL,
+                status_id INT NOT NULL,
+                FOREIGN KEY (work_package_id) REFERENCES work_packages(id) ON DELETE CASCADE
+            );
+        """;
+
+    private static final String createDependenciesTableSQL = """
+            CREATE TABLE IF NOT EXISTS dependencies (
+                task_id_blocked INT NOT NULL,
+                task_id_required INT NOT NULL,
+                PRIMARY KEY (task_id_blocked, task_id_required),
+                FOREIGN KEY (task_id_blocked) REFERENCES tasks(id),
+                FOREIGN KEY (task_id_required) REFERENCES tasks(id) ON DELETE CASCADE
+            );
+        """;
+
+    private static final String createTaskAssignmentsTableSQL = """
+            CREATE TABLE IF NOT EXISTS task_assignments (
+                task_id INT NOT NULL,
+                user_id INT NOT NULL,
+                effort_hypothetic INT NOT NULL,
+                effort_consumed INT NOT NULL,
+                PRIMARY KEY (task_id, user_id),
+                FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE,
+                FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+            );
+        """;
+
+    private static final String createMilestonesTableSQL = """
+            CREATE TABLE IF NOT EXISTS milestones (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                project_id INT NOT NULL,
+                title VARCHAR(255) NOT NULL,
+                description VARCHAR(255)
+            );
+        """;
+
+    private static final String createMilestoneAssignmentsTableSQL = """
+            CREATE TABLE IF NOT EXISTS milestone_assignments (
+                milestone_id INT NOT NULL,
+                task_id INT NOT NULL,
+                PRIMARY KEY (milestone_id, task_id),
+                FOREIGN KEY (milestone_id) REFERENCES milestones(id) ON DELETE CASCADE,
+                FOREIGN KEY (task_id) REFERENCES tasks(id)
+            );
+        """;
+
+    private static final String createTimeEntriesTableSQL = """
+            CREATE TABLE IF NOT EXISTS time_entries (
+                user_id INT NOT NULL,
+                task_id INT NOT NULL,
+                entry_date DATE DEFAULT CURRENT_DATE,
+                hours DECIMAL(3,1) NOT NULL,
+                PRIMARY KEY (user_id, task_id, entry_date),
+                FOREIGN KEY (user_id) REFERENCES users(id),
+                FOREIGN KEY (task_id) REFERENCES tasks(id)
+            );
+        """;
+
+    private static final String createCreateReportsTableSQL = """
+            CREATE TABLE IF NOT EXISTS reports (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                project_id INT NOT NULL,
+                report_data BLOB,  -- or VARCHAR if you prefer
+                signed BOOLEAN NOT NULL DEFAULT FALSE,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                retention_until DATE,
+                FOREIGN KEY (project_id) REFERENCES projects(id)
+            );
+        """;
+
+    private static final String createProjectVisibilityTableSQL = """
+            CREATE TABLE IF NOT EXISTS project_visibility (
+                project_id INT NOT NULL,
+                user_id INT NOT NULL,
+                PRIMARY KEY (project_id, user_id),
+                FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE,
+                FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+            );
+        """;
+
+    /**
+     * Version 1: the original schema and seed data, previously executed by setupDatabase() on every start.
+     * Every statement is idempotent, so it can also be recorded on databases created before versioning.
+     */
+    private static final String v1BaselineSQL = String.join("",
+            // 1) Create base tables
+            createRolesTableSQL,
+            createUsersTableSQL,
+            createPriorityTableSQL,
+            createStatusTableSQL,
+            createRecoverCredentialsRequestsTableSQL,
+
+            // 2) Create tables that depend on users
+            createProjectsTableSQL,           // references users
+            createWorkPackagesTableSQL,       // references projects
+            createTasksTableSQL,              // references work_packages
+            createDependenciesTableSQL,       // references tasks
+            createTaskAssignmentsTableSQL,    // references tasks + users
+
+            // 3) Create additional tables
+            createMilestonesTableSQL,
+            createMilestoneAssignmentsTableSQL, // references milestones + tasks
+            createTimeEntriesTableSQL,          // references tasks + users
+            createCreateReportsTableSQL,        // references projects
+            createProjectVisibilityTableSQL,    // references projects + users
+
+            // 4) Default data (roles, priority, status, admin, test users, time-off project)
+            insertRolesSQL,
+            insertPrioritySQL,
+            insertStatusSQL,
+            insertAdminSQL,
+            insertTestUsersSQL,
+            insertNotWorkingHoursDestination
+    );
+
+    /**
+     * Version 2: secondary indexes for the filters of the DatabaseManager query catalogue.
+     * Foreign-key columns (tasks.work_package_id, work_packages.project_id, project_visibility.user_id,
+     * task_assignments.user_id, ...) are not listed: H2 already backs every foreign key with an index.
+     * QueryPlanTest checks with EXPLAIN that the hot queries use these indexes.
+     */
+    private static final String v2QueryIndexesSQL = """
+            -- queryTaskIdFromName
+            CREATE INDEX IF NOT EXISTS idx_tasks_title ON tasks(title);
+
+            -- queryRetrieveTimeEntriesByUserAndWeek, queryTimeEntryWeeklyByUserId, countTimeEntryHoursByDay:
+            -- the primary key (user_id, task_id, entry_date) cannot range-scan a user's days
+            CREATE INDEX IF NOT EXISTS idx_time_entries_user_date ON time_entries(user_id, entry_date);
+
+            -- queryMilestonesByProject: milestones.project_id has no foreign key, hence no implicit index
+            CREATE INDEX IF NOT EXISTS idx_milestones_project ON milestones(project_id);
+
+            -- queryRecoverCredentialsRequestsActiveFromEmail, queryRecoverCredentialsRequestsClose
+            CREATE INDEX IF NOT EXISTS idx_recover_requests_email ON recover_credentials_requests(email, evaded);
+
+            -- countRecoverCredentialsRequestsActive, queryRecoverCredentialsRequestsActiveTSOrdered
+            CREATE INDEX IF NOT EXISTS idx_recover_requests_evaded ON recover_credentials_requests(evaded, created_at);
+        """;
+
+    /**
+     * Version 3: monthly timesheet reports. The reports table was created for project reports;
+     * a monthly report belongs to a user and a month instead, so project_id becomes optional.
+     * The rows are written by the report jobs (ReportJobs) and read back for the download.
+     */
+    private static final String v3UserReportsSQL = """
+            ALTER TABLE reports ALTER COLUMN project_id DROP NOT NULL;
+            ALTER TABLE reports ADD COLUMN IF NOT EXISTS user_id INT;
+            ALTER TABLE reports ADD COLUMN IF NOT EXISTS report_month DATE;
+            ALTER TABLE reports ADD CONSTRAINT IF NOT EXISTS fk_reports_user FOREIGN KEY (user_id) REFERENCES users(id);
+
+            -- the reports of a user by month
+            CREATE INDEX IF NOT EXISTS idx_reports_user_month ON reports(user_id, report_month);
+        """;
+
+    /**
+     * Version 4: cache of the monthly reports. source_hash identifies the hours a report was
+     * generated from and content_hash the PDF itself, both as hexadecimal SHA-256 digests.
+     */
+    private static final String v4ReportCacheSQL = """
+            ALTER TABLE reports ADD COLUMN IF NOT EXISTS source_hash VARCHAR(64);
+            ALTER TABLE reports ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+            -- deleteExpiredReports
+            CREATE INDEX IF NOT EXISTS idx_reports_retention ON reports(retention_until);
+        """;
+
+    /**
+     * All migrations, in version order.
+     */
+    static final List<Migration> ALL = List.of(
+            new Migration(1, "baseline schema and seed data", v1BaselineSQL),
+            new Migration(2, "secondary indexes for hot queries", v2QueryIndexesSQL),
+            new Migration(3, "monthly reports of a user", v3UserReportsSQL),
+            new Migration(4, "report cache hashes", v4ReportCacheSQL)
+    );
+
+    private SchemaMigrations() {
+    }
+}
@@ -0,0 +1,159 @@
+package it.univr.wbsmanagement.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned schema migrations of {@link SchemaMigrations} to the database.
+ *
+ * <p>The applied versions are recorded in the {@code schema_version} table together with the
+ * checksum of their script. On start the recorded versions are read with a single query: when
+ * they are all current and their checksums match, no DDL or seed statement is executed at all.
+ * Otherwise only the missing migrations are applied, in version order.</p>
+ */
+public final class SchemaMigrator {
+
+    private static final String createSchemaVersionTableSQL = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INT PRIMARY KEY,
+                description VARCHAR(255) NOT NULL,
+                checksum BIGINT NOT NULL,
+                installed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                execution_ms BIGINT NOT NULL
+            );
+        """;
+    private static final String querySchemaVersions = "SELECT version, checksum FROM schema_version ORDER BY version";
+    private static final String insertSchemaVersion = """
+            INSERT INTO schema_version (version, description, checksum, execution_ms)
+            VALUES (?, ?, ?, ?)
+        """;
+
+    /**
+     * A single migration: a version number, a short description and its ';'-separated SQL script.
+     *
+     * @param version     the version reached once the migration is applied, starting from 1.
+     * @param description a short human-readable description.
+     * @param sql         the script to execute.
+     */
+    public record Migration(int version, String description, String sql) {
+
+        /**
+         * @return the CRC32 checksum of the script, stored to detect scripts edited after release.
+         */
+        public long checksum() {
+            CRC32 crc = new CRC32();
+            crc.update(sql.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+    }
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Brings the database up to the latest version of the given migrations.
+     *
+     * @param conn       the connection to migrate through.
+     * @param migrations the migrations, in version order.
+     * @return the number of migrations applied, 0 when the schema was already current.
+     * @throws SQLException if a migration fails; the failing migration is not recorded.
+     * @throws IllegalStateException if an applied migration was modified or is unknown to this application.
+     */
+    public static int migrate(Connection conn, List<Migration> migrations) throws SQLException {
+        Map<Integer, Long> applied = readAppliedVersions(conn);
+        validate(applied, migrations);
+
+        int count = 0;
+        for (Migration migration : migrations) {
+            if (!applied.containsKey(migration.version())) {
+                apply(conn, migration);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads version and checksum of the applied migrations, creating schema_version on first run.
+     */
+    private static Map<Integer, Long> readAppliedVersions(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new TreeMap<>();
+
+        try (ResultSet tables = conn.getMetaData().getTables(null, null, "SCHEMA_VERSION", null)) {
+            if (!tables.next()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(createSchemaVersionTableSQL);
+                }
+                return applied;
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(querySchemaVersions);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Checks that every applied migration is still part of the catalogue with an unchanged script.
+     */
+    private static void validate(Map<Integer, Long> applied, List<Migration> migrations) {
+        Map<Integer, Migration> known = new TreeMap<>();
+        for (Migration migration : migrations) {
+            known.put(migration.version(), migration);
+        }
+
+        for (Map.Entry<Integer, Long> entry : applied.entrySet()) {
+            Migration migration = known.get(entry.getKey());
+            if (migration == null) {
+                throw new IllegalStateException("Database schema version " + entry.getKey()
+                        + " is unknown to this application version");
+            }
+            if (migration.checksum() != entry.getValue()) {
+                throw new IllegalStateException("Checksum mismatch for schema migration " + entry.getKey()
+                        + " (" + migration.description() + "): released migrations must not be modified");
+            }
+        }
+    }
+
+    /**
+     * Executes one migration script and records it in schema_version.
+     * Note that H2 commits implicitly on DDL, so scripts should stay idempotent (IF NOT EXISTS, WHERE NOT EXISTS).
+     */
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : migration.sql().split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    stmt.execute(sql);
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(insertSchemaVersion)) {
+                ps.setInt(1, migration.version());
+                ps.setString(2, migration.description());
+                ps.setLong(3, migration.checksum());
+                ps.setLong(4, System.currentTimeMillis() - start);
+                ps.executeUpdate();
+            }
+
+            conn.commit();
+            System.out.println("Applied schema migration " + migration.version() + ": " + migration.description());
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Schema migration " + migration.version() + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
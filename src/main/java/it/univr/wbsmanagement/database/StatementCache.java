@@ -0,0 +1,212 @@
+package it.univr.wbsmanagement.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-connection cache of the prepared statements used by {@link DatabaseManager}.
+ *
+ * <p>Statements are keyed by the SQL query constant and kept on the physical H2 connection
+ * that sits behind the pool, so they survive across borrows and H2 does not parse and plan
+ * the same query again on every call.</p>
+ *
+ * <p>The statement handed to the caller is a thin wrapper: closing it (for example at the end
+ * of a try-with-resources block) only clears its parameters and closes its result set, the
+ * underlying statement stays open for the next borrower of the same connection.</p>
+ *
+ * <p>Because the statements belong to the physical connection, the pool does not see them: it
+ * neither closes them when the connection is returned nor notices that they wrote in an open
+ * transaction, so it does not roll that transaction back on return. Every DatabaseManager method
+ * that turns auto-commit off therefore rolls back itself on any exception, runtime ones included,
+ * before turning auto-commit on again.</p>
+ */
+public final class StatementCache {
+
+    /**
+     * Upper bound of statements kept for a single connection; the least recently used one is closed beyond it.
+     */
+    static final int MAX_STATEMENTS_PER_CONNECTION = 128;
+
+    /**
+     * Cached statements for each physical connection.
+     */
+    private static final Map<Connection, Map<String, CachedStatement>> statementsByConnection =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private StatementCache() {
+    }
+
+    /**
+     * Returns a prepared statement for the given query constant, reusing the one cached for the
+     * physical connection behind {@code conn} when it is available.
+     *
+     * @param conn the (pooled) connection borrowed by the caller.
+     * @param sql  the SQL query constant.
+     * @return a prepared statement whose {@code close()} gives it back to the cache.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    public static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        Connection physical = conn.unwrap(Connection.class);
+
+        Map<String, CachedStatement> statements = statementsByConnection.get(physical);
+        if (statements == null) {
+            // A new physical connection: forget the ones the pool has closed in the meantime
+            purgeClosedConnections();
+            statements = newStatementMap();
+            statementsByConnection.put(physical, statements);
+        }
+
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+            hits.increment();
+        } else if (cached != null && cached.inUse) {
+            // Same query nested on the same connection: hand out a private, uncached statement
+            misses.increment();
+            return physical.prepareStatement(sql);
+        } else {
+            misses.increment();
+            cached = new CachedStatement(physical.prepareStatement(sql));
+            statements.put(sql, cached);
+        }
+
+        cached.inUse = true;
+        return cached.handle;
+    }
+
+    /**
+     * @return the number of statements served from the cache.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of statements that had to be prepared.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of hits over all requests, 0 if nothing was requested yet.
+     */
+    public static double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @param physical a physical connection.
+     * @return true if statements are cached for the connection.
+     */
+    static boolean isCached(Connection physical) {
+        return statementsByConnection.containsKey(physical);
+    }
+
+    /**
+     * Builds the LRU map of statements of a single connection.
+     */
+    private static Map<String, CachedStatement> newStatementMap() {
+        return new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= MAX_STATEMENTS_PER_CONNECTION || eldest.getValue().inUse) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue().statement);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Drops the statements of physical connections already closed by the pool.
+     */
+    private static void purgeClosedConnections() {
+        synchronized (statementsByConnection) {
+            statementsByConnection.keySet().removeIf(connection -> {
+                try {
+                    return connection.isClosed();
+                } catch (SQLException e) {
+                    return true;
+                }
+            });
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A statement kept open on its connection, plus the wrapper lent to callers.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement handle;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.handle = (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+
+        /**
+         * Resets the statement so the next caller starts clean.
+         */
+        private void release() throws SQLException {
+            if (statement.isClosed()) {
+                return;
+            }
+            ResultSet rs = statement.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            statement.clearParameters();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Effort of a researcher assigned to a task.
+ *
+ * @param userId           the id of the assigned user.
+ * @param email            the email of the assigned user.
+ * @param effortConsumed   the hours already charged on the task.
+ * @param effortHypothetic the hours estimated for the assignment.
+ */
+public record AssignmentHours(int userId, String email, int effortConsumed, int effortHypothetic) {
+}
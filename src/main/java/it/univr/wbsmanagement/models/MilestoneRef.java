@@ -0,0 +1,10 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Reference to a milestone of a project.
+ *
+ * @param id    the milestone id.
+ * @param title the milestone title.
+ */
+public record MilestoneRef(int id, String title) {
+}
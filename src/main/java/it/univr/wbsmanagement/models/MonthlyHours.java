@@ -0,0 +1,26 @@
+package it.univr.wbsmanagement.models;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Hours charged by a user on a task in a day of a monthly report.
+ *
+ * <p>They are read by
+ * {@link it.univr.wbsmanagement.database.DatabaseManager#forEachMonthlyHours} one row at a time
+ * and handed to a {@link Handler}, ordered by project, task and day.</p>
+ *
+ * @param task  the task, with its project.
+ * @param day   the day.
+ * @param hours the hours charged on the task that day.
+ */
+public record MonthlyHours(TaskRef task, LocalDate day, double hours) {
+
+    /**
+     * Receives the rows of a monthly report as they are read.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void accept(MonthlyHours hours) throws IOException;
+    }
+}
@@ -0,0 +1,10 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Reference to a project, as listed in the project dropdowns and lists.
+ *
+ * @param id    the project id.
+ * @param title the project title.
+ */
+public record ProjectRef(int id, String title) {
+}
@@ -0,0 +1,38 @@
+package it.univr.wbsmanagement.models;
+
+import java.util.List;
+
+/**
+ * Read model of a project with its work packages and their tasks, as shown in the
+ * project details page.
+ *
+ * <p>It is loaded with a single joined query by
+ * {@link it.univr.wbsmanagement.database.DatabaseManager#getProjectTree(int)}.</p>
+ *
+ * @param id           the project id.
+ * @param title        the project title.
+ * @param supervisorId the user id of the project supervisor.
+ * @param archived     whether the project is archived.
+ * @param workPackages the work packages of the project, ordered by id.
+ */
+public record ProjectTree(int id, String title, int supervisorId, boolean archived, List<WorkPackageNode> workPackages) {
+
+    /**
+     * A work package of the project with its tasks.
+     *
+     * @param id    the work package id.
+     * @param title the work package title.
+     * @param tasks the tasks of the work package, ordered by id.
+     */
+    public record WorkPackageNode(int id, String title, List<TaskNode> tasks) {
+    }
+
+    /**
+     * A task of a work package.
+     *
+     * @param id    the task id.
+     * @param title the task title.
+     */
+    public record TaskNode(int id, String title) {
+    }
+}
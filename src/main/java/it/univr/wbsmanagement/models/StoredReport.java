@@ -0,0 +1,16 @@
+package it.univr.wbsmanagement.models;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A monthly report stored in the reports table, without its content.
+ *
+ * @param id          the report id.
+ * @param userId      the id of the user the report belongs to.
+ * @param month       the first day of the month of the report.
+ * @param contentHash the hexadecimal SHA-256 of the PDF, or null for reports stored before it was recorded.
+ * @param createdAt   when the report was stored.
+ */
+public record StoredReport(int id, int userId, LocalDate month, String contentHash, LocalDateTime createdAt) {
+}
@@ -0,0 +1,23 @@
+package it.univr.wbsmanagement.models;
+
+import java.time.LocalDate;
+
+/**
+ * A task with its work package and project, as shown in the task details page.
+ *
+ * @param id                 the task id.
+ * @param title              the task title.
+ * @param deadline           the task deadline.
+ * @param priorityId         the task priority id.
+ * @param statusId           the task status id.
+ * @param workPackageId      the id of the work package of the task.
+ * @param workPackageTitle   the title of the work package of the task.
+ * @param workPackageStart   the start date of the work package.
+ * @param workPackageEnd     the end date of the work package.
+ * @param projectId          the id of the project of the task.
+ * @param projectTitle       the title of the project of the task.
+ */
+public record TaskDetails(int id, String title, LocalDate deadline, int priorityId, int statusId,
+                          int workPackageId, String workPackageTitle, LocalDate workPackageStart, LocalDate workPackageEnd,
+                          int projectId, String projectTitle) {
+}
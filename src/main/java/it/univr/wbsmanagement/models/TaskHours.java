@@ -0,0 +1,10 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Hours charged by a user on a task in a single day.
+ *
+ * @param task  the task.
+ * @param hours the hours charged.
+ */
+public record TaskHours(TaskRef task, double hours) {
+}
@@ -0,0 +1,12 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Reference to a task together with the project it belongs to, as listed in the time tracking pages.
+ *
+ * @param id           the task id.
+ * @param title        the task title.
+ * @param projectId    the id of the project of the task.
+ * @param projectTitle the title of the project of the task.
+ */
+public record TaskRef(int id, String title, int projectId, String projectTitle) {
+}
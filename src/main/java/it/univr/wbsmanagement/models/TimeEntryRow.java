@@ -0,0 +1,36 @@
+package it.univr.wbsmanagement.models;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * A time entry with its user, task, work package and project, as written by the exports.
+ *
+ * <p>The rows are read by
+ * {@link it.univr.wbsmanagement.database.DatabaseManager#forEachTimeEntry} one page at a time and
+ * handed to a {@link Handler}, so an export never holds more than one page of rows.</p>
+ *
+ * @param userId           the id of the user who charged the hours.
+ * @param userEmail        the email of the user.
+ * @param day              the day of the entry.
+ * @param hours            the hours charged.
+ * @param projectId        the project id.
+ * @param projectTitle     the project title.
+ * @param workPackageId    the work package id.
+ * @param workPackageTitle the work package title.
+ * @param taskId           the task id.
+ * @param taskTitle        the task title.
+ */
+public record TimeEntryRow(int userId, String userEmail, LocalDate day, double hours,
+                           int projectId, String projectTitle,
+                           int workPackageId, String workPackageTitle,
+                           int taskId, String taskTitle) {
+
+    /**
+     * Receives the rows of an export as they are read.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void accept(TimeEntryRow row) throws IOException;
+    }
+}
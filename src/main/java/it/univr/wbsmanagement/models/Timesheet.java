@@ -0,0 +1,272 @@
+package it.univr.wbsmanagement.models;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Hours charged by a user over a range of days, stored as day x project x task entries.
+ *
+ * <p>The entries are kept in parallel primitive arrays sorted by day: the day as an offset from
+ * the first day of the range, the project and task ids, and the hours in tenths (the precision of
+ * time_entries.hours). The total of every day is computed once when the timesheet is built, so
+ * {@link #getDayTotal(LocalDate)} is O(1) and {@link #getHours(LocalDate, int)} only scans the
+ * entries of that day. The same structure serves a week, a month or a year.</p>
+ */
+public final class Timesheet {
+
+    private final LocalDate startDay;
+    private final int days;
+
+    // entries, sorted by day offset
+    private final int size;
+    private final int[] dayOffsets;
+    private final int[] projectIds;
+    private final int[] taskIds;
+    private final int[] tenths;
+
+    // dayStarts[d] .. dayStarts[d + 1] is the range of the entries of day d
+    private final int[] dayStarts;
+    private final int[] dayTotals;
+    private final int total;
+
+    private Timesheet(LocalDate startDay, int days, int size, int[] dayOffsets, int[] projectIds, int[] taskIds, int[] tenths) {
+        this.startDay = startDay;
+        this.days = days;
+        this.size = size;
+        this.dayStarts = new int[days + 1];
+        this.dayTotals = new int[days];
+
+        boolean sorted = true;
+        int sum = 0;
+        for (int i = 0; i < size; i++) {
+            dayStarts[dayOffsets[i] + 1]++;
+            dayTotals[dayOffsets[i]] += tenths[i];
+            sum += tenths[i];
+            sorted &= (i == 0 || dayOffsets[i - 1] <= dayOffsets[i]);
+        }
+        for (int d = 0; d < days; d++) {
+            dayStarts[d + 1] += dayStarts[d];
+        }
+        this.total = sum;
+
+        if (sorted) {
+            // the usual case, the query orders the entries by day: the builder arrays are kept as they are
+            this.dayOffsets = dayOffsets;
+            this.projectIds = projectIds;
+            this.taskIds = taskIds;
+            this.tenths = tenths;
+            return;
+        }
+
+        // counting sort by day, stable so the order of the entries of a day is kept
+        this.dayOffsets = new int[size];
+        this.projectIds = new int[size];
+        this.taskIds = new int[size];
+        this.tenths = new int[size];
+        int[] next = Arrays.copyOf(dayStarts, days);
+        for (int i = 0; i < size; i++) {
+            int j = next[dayOffsets[i]]++;
+            this.dayOffsets[j] = dayOffsets[i];
+            this.projectIds[j] = projectIds[i];
+            this.taskIds[j] = taskIds[i];
+            this.tenths[j] = tenths[i];
+        }
+    }
+
+    /**
+     * Starts a timesheet for the days from startDay to endDay, both included.
+     *
+     * @param startDay the first day of the range.
+     * @param endDay   the last day of the range.
+     * @return a builder to add the entries to.
+     */
+    public static Builder builder(LocalDate startDay, LocalDate endDay) {
+        return new Builder(startDay, endDay);
+    }
+
+    /**
+     * @return the first day of the range.
+     */
+    public LocalDate getStartDay() {
+        return startDay;
+    }
+
+    /**
+     * @return the last day of the range.
+     */
+    public LocalDate getEndDay() {
+        return startDay.plusDays(days - 1L);
+    }
+
+    /**
+     * @return the number of days of the range.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the hours charged over the whole range.
+     */
+    public double getTotal() {
+        return total / 10.0;
+    }
+
+    /**
+     * @param day a day of the range.
+     * @return the hours charged in that day, 0 for days outside the range.
+     */
+    public double getDayTotal(LocalDate day) {
+        int d = offsetOf(day);
+        return (d < 0) ? 0.0 : dayTotals[d] / 10.0;
+    }
+
+    /**
+     * @param day    a day of the range.
+     * @param taskId the task id.
+     * @return whether hours were charged on the task in that day.
+     */
+    public boolean hasHours(LocalDate day, int taskId) {
+        return indexOf(day, taskId) >= 0;
+    }
+
+    /**
+     * @param day    a day of the range.
+     * @param taskId the task id.
+     * @return the hours charged on the task in that day, 0 if none.
+     */
+    public double getHours(LocalDate day, int taskId) {
+        int i = indexOf(day, taskId);
+        return (i < 0) ? 0.0 : tenths[i] / 10.0;
+    }
+
+    /**
+     * @param i the index of an entry, from 0 to {@link #size()} - 1.
+     * @return the day of the entry.
+     */
+    public LocalDate getDay(int i) {
+        return startDay.plusDays(dayOffsets[i]);
+    }
+
+    /**
+     * @param i the index of an entry.
+     * @return the project id of the entry.
+     */
+    public int getProjectId(int i) {
+        return projectIds[i];
+    }
+
+    /**
+     * @param i the index of an entry.
+     * @return the task id of the entry.
+     */
+    public int getTaskId(int i) {
+        return taskIds[i];
+    }
+
+    /**
+     * @param i the index of an entry.
+     * @return the hours of the entry.
+     */
+    public double getHours(int i) {
+        return tenths[i] / 10.0;
+    }
+
+    private int offsetOf(LocalDate day) {
+        long d = day.toEpochDay() - startDay.toEpochDay();
+        return (d < 0 || d >= days) ? -1 : (int) d;
+    }
+
+    private int indexOf(LocalDate day, int taskId) {
+        int d = offsetOf(day);
+        if (d < 0) {
+            return -1;
+        }
+        for (int i = dayStarts[d]; i < dayStarts[d + 1]; i++) {
+            if (taskIds[i] == taskId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the entries of a {@link Timesheet}, in any order.
+     */
+    public static final class Builder {
+
+        private final LocalDate startDay;
+        private final long startEpochDay;
+        private final int days;
+
+        private int size;
+        private int[] dayOffsets;
+        private int[] projectIds;
+        private int[] taskIds;
+        private int[] tenths;
+
+        private Builder(LocalDate startDay, LocalDate endDay) {
+            if (endDay.isBefore(startDay)) {
+                throw new IllegalArgumentException("endDay " + endDay + " is before startDay " + startDay);
+            }
+            this.startDay = startDay;
+            this.startEpochDay = startDay.toEpochDay();
+            this.days = (int) (endDay.toEpochDay() - startEpochDay) + 1;
+
+            // room for a few entries a day, grown on demand
+            int capacity = Math.max(16, days * 4);
+            this.dayOffsets = new int[capacity];
+            this.projectIds = new int[capacity];
+            this.taskIds = new int[capacity];
+            this.tenths = new int[capacity];
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param day       the day, inside the range of the timesheet.
+         * @param projectId the project id.
+         * @param taskId    the task id.
+         * @param hours     the hours charged, rounded to tenths.
+         * @return this builder.
+         * @throws IllegalArgumentException if the day is outside the range.
+         */
+        public Builder add(LocalDate day, int projectId, int taskId, double hours) {
+            long d = day.toEpochDay() - startEpochDay;
+            if (d < 0 || d >= days) {
+                throw new IllegalArgumentException("day " + day + " is outside the timesheet range");
+            }
+            if (size == taskIds.length) {
+                int capacity = size + (size >> 1);
+                dayOffsets = Arrays.copyOf(dayOffsets, capacity);
+                projectIds = Arrays.copyOf(projectIds, capacity);
+                taskIds = Arrays.copyOf(taskIds, capacity);
+                tenths = Arrays.copyOf(tenths, capacity);
+            }
+            dayOffsets[size] = (int) d;
+            projectIds[size] = projectId;
+            taskIds[size] = taskId;
+            tenths[size] = (int) Math.round(hours * 10);
+            size++;
+            return this;
+        }
+
+        /**
+         * Builds the timesheet. The builder must not be used afterwards.
+         *
+         * @return the timesheet with the entries added.
+         */
+        public Timesheet build() {
+            Timesheet timesheet = new Timesheet(startDay, days, size, dayOffsets, projectIds, taskIds, tenths);
+            dayOffsets = projectIds = taskIds = tenths = null;
+            return timesheet;
+        }
+    }
+}
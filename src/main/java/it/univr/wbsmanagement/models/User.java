@@ -2,6 +2,8 @@ package it.univr.wbsmanagement.models;
 
 import it.univr.wbsmanagement.database.DatabaseManager;
 
+import java.io.Serializable;
+
 /**
  * Represents a user in the time tracking system.
  *
@@ -11,7 +13,10 @@ import it.univr.wbsmanagement.database.DatabaseManager;
  *
  * <p>Note: The set_role methods are placeholders and currently always return true.</p>
  */
-public class User {
+public class User implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * The id of the user.
      */
@@ -0,0 +1,10 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Reference to a user, as listed in the researcher dropdowns.
+ *
+ * @param id    the user id.
+ * @param email the user email.
+ */
+public record UserRef(int id, String email) {
+}
@@ -0,0 +1,10 @@
+package it.univr.wbsmanagement.models;
+
+/**
+ * Reference to a work package, as listed in the work package dropdowns.
+ *
+ * @param id    the work package id.
+ * @param title the work package title.
+ */
+public record WorkPackageRef(int id, String title) {
+}
@@ -0,0 +1,273 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.MonthlyHours;
+import it.univr.wbsmanagement.models.TaskRef;
+
+/**
+ * Monthly timesheet report of a user, rendered as a PDF while the hours are read.
+ *
+ * <p>The page is a grid with one row per task, grouped by project, and one column per day of the
+ * month, followed by the daily totals and the hours charged against the contract hours
+ * ({@code users.working_hours_weekly} over the working days of the month). The hours come from
+ * {@link DatabaseManager#forEachMonthlyHours} ordered by project, task and day, so only the row
+ * of the current task is kept: each page is written to the output as soon as it is full, and
+ * memory does not depend on the number of entries.</p>
+ */
+public final class MonthlyReport implements MonthlyHours.Handler {
+
+    private static final float MARGIN = 30;
+    private static final float ROW_HEIGHT = 11;
+    private static final float FONT_SIZE = 7;
+    private static final float TITLE_SIZE = 12;
+    private static final float LABEL_WIDTH = 170;
+    private static final float DAY_WIDTH = 18;
+    private static final String TIME_OFF_PROJECT = "TimeOffProj";
+
+    private final PdfWriter pdf;
+    private final YearMonth month;
+    private final String userEmail;
+    private final int days;
+    private final float totalX;
+
+    private float y;
+    private int pageNumber;
+
+    // the task being read and its hours by day (index 0 is the 1st of the month)
+    private TaskRef currentTask;
+    private final double[] taskHours;
+
+    private int currentProjectId = -1;
+    private double projectTotal;
+    private final double[] dayTotals;
+    private double monthTotal;
+    private double timeOffTotal;
+
+    private MonthlyReport(PdfWriter pdf, YearMonth month, String userEmail) {
+        this.pdf = pdf;
+        this.month = month;
+        this.userEmail = userEmail;
+        this.days = month.lengthOfMonth();
+        this.taskHours = new double[days];
+        this.dayTotals = new double[days];
+        this.totalX = MARGIN + LABEL_WIDTH + days * DAY_WIDTH + 6;
+    }
+
+    /**
+     * Writes the report of a user for a month to the given stream, which is not closed.
+     *
+     * @param userId    the id of the user.
+     * @param userEmail the email of the user, printed in the title.
+     * @param month     the month of the report.
+     * @param out       the stream the PDF is written to.
+     * @throws IOException if the hours cannot be read or the PDF cannot be written.
+     */
+    public static void write(int userId, String userEmail, YearMonth month, OutputStream out) throws IOException {
+        write(userId, userEmail, month, out, null);
+    }
+
+    /**
+     * Writes the report as {@link #write(int, String, YearMonth, OutputStream)}, handing every
+     * row it renders to a second handler as well, so both see the same read of the hours.
+     *
+     * @param rows receives the rows before they are rendered, or null.
+     * @return the weekly contract hours the report was rendered with.
+     * @throws IOException if the hours cannot be read or the PDF cannot be written.
+     */
+    static int write(int userId, String userEmail, YearMonth month, OutputStream out, MonthlyHours.Handler rows)
+            throws IOException {
+        try (PdfWriter pdf = new PdfWriter(out, PdfWriter.A4_LANDSCAPE_WIDTH, PdfWriter.A4_LANDSCAPE_HEIGHT)) {
+            MonthlyReport report = new MonthlyReport(pdf, month, userEmail);
+            report.startPage();
+
+            MonthlyHours.Handler handler = (rows == null) ? report : hours -> {
+                rows.accept(hours);
+                report.accept(hours);
+            };
+            int workingHoursWeekly = DatabaseManager.forEachMonthlyHours(userId, month.atDay(1), month.atEndOfMonth(), handler);
+            if (workingHoursWeekly < 0) {
+                throw new IOException("The hours of user " + userId + " for " + month + " cannot be read");
+            }
+            report.finish(workingHoursWeekly);
+            return workingHoursWeekly;
+        }
+    }
+
+    /**
+     * Receives the hours of a task in a day; rows arrive ordered by project, task and day.
+     */
+    @Override
+    public void accept(MonthlyHours hours) throws IOException {
+        TaskRef task = hours.task();
+        if (currentTask == null || currentTask.id() != task.id()) {
+            flushTask();
+            if (task.projectId() != currentProjectId) {
+                flushProject();
+                currentProjectId = task.projectId();
+                row();
+                pdf.text(MARGIN, y, FONT_SIZE, true, fit(task.projectTitle(), LABEL_WIDTH + days * DAY_WIDTH));
+            }
+            currentTask = task;
+        }
+
+        int index = hours.day().getDayOfMonth() - 1;
+        taskHours[index] += hours.hours();
+        dayTotals[index] += hours.hours();
+        projectTotal += hours.hours();
+        monthTotal += hours.hours();
+        if (TIME_OFF_PROJECT.equals(task.projectTitle())) {
+            timeOffTotal += hours.hours();
+        }
+    }
+
+    /**
+     * Writes the last task and project, the daily totals and the comparison with the contract.
+     */
+    private void finish(int workingHoursWeekly) throws IOException {
+        flushTask();
+        flushProject();
+        if (monthTotal == 0) {
+            row();
+            pdf.text(MARGIN, y, FONT_SIZE, false, "No hours charged in this month.");
+        }
+
+        row();
+        pdf.line(MARGIN, y + ROW_HEIGHT - 3, totalX + 40, y + ROW_HEIGHT - 3);
+        pdf.text(MARGIN, y, FONT_SIZE, true, "Total per day");
+        for (int d = 0; d < days; d++) {
+            cell(MARGIN + LABEL_WIDTH + d * DAY_WIDTH, dayTotals[d], true);
+        }
+        cell(totalX, monthTotal, true);
+
+        int workingDays = 0;
+        for (LocalDate day = month.atDay(1); !day.isAfter(month.atEndOfMonth()); day = day.plusDays(1)) {
+            if (day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                workingDays++;
+            }
+        }
+        double contractHours = workingHoursWeekly * workingDays / 5.0;
+
+        row();
+        row();
+        pdf.text(MARGIN, y, FONT_SIZE + 1, false, "Hours charged: " + hours(monthTotal)
+                + (timeOffTotal > 0 ? "  (time off: " + hours(timeOffTotal) + ")" : ""));
+        row();
+        pdf.text(MARGIN, y, FONT_SIZE + 1, false, "Contract hours: " + hours(contractHours) + "  ("
+                + workingHoursWeekly + " h/week over " + workingDays + " working days)");
+        row();
+        pdf.text(MARGIN, y, FONT_SIZE + 1, true, "Difference: " + (monthTotal >= contractHours ? "+" : "-")
+                + hours(Math.abs(monthTotal - contractHours)));
+    }
+
+    /**
+     * Writes the row of the current task, if any, and clears it.
+     */
+    private void flushTask() throws IOException {
+        if (currentTask == null) {
+            return;
+        }
+        row();
+        pdf.text(MARGIN + 8, y, FONT_SIZE, false, fit(currentTask.title(), LABEL_WIDTH - 10));
+        double total = 0;
+        for (int d = 0; d < days; d++) {
+            cell(MARGIN + LABEL_WIDTH + d * DAY_WIDTH, taskHours[d], false);
+            total += taskHours[d];
+            taskHours[d] = 0;
+        }
+        cell(totalX, total, false);
+        currentTask = null;
+    }
+
+    /**
+     * Writes the total of the current project, if any.
+     */
+    private void flushProject() throws IOException {
+        if (currentProjectId < 0) {
+            return;
+        }
+        row();
+        pdf.text(MARGIN + 8, y, FONT_SIZE, true, "Project total");
+        cell(totalX, projectTotal, true);
+        currentProjectId = -1;
+        projectTotal = 0;
+    }
+
+    /**
+     * Moves to the next row, starting a new page when the current one is full.
+     */
+    private void row() throws IOException {
+        y -= ROW_HEIGHT;
+        if (y < MARGIN) {
+            startPage();
+            y -= ROW_HEIGHT;
+        }
+    }
+
+    /**
+     * Starts a page with the title and the day headers.
+     */
+    private void startPage() throws IOException {
+        pdf.newPage();
+        pageNumber++;
+        y = pdf.getHeight() - MARGIN - TITLE_SIZE;
+
+        String monthName = month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + month.getYear();
+        pdf.text(MARGIN, y, TITLE_SIZE, true, "Monthly timesheet - " + monthName);
+        pdf.text(pdf.getWidth() - MARGIN - 60, y, FONT_SIZE, false, "Page " + pageNumber);
+        y -= ROW_HEIGHT + 2;
+        pdf.text(MARGIN, y, FONT_SIZE + 1, false, userEmail);
+
+        y -= ROW_HEIGHT * 1.5f;
+        pdf.text(MARGIN, y, FONT_SIZE, true, "Project / task");
+        for (int d = 0; d < days; d++) {
+            LocalDate day = month.atDay(d + 1);
+            boolean weekend = day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+            pdf.text(MARGIN + LABEL_WIDTH + d * DAY_WIDTH, y, FONT_SIZE, !weekend, Integer.toString(d + 1));
+        }
+        pdf.text(totalX, y, FONT_SIZE, true, "Total");
+        pdf.line(MARGIN, y - 3, totalX + 40, y - 3);
+    }
+
+    private void cell(float x, double value, boolean bold) {
+        if (value != 0) {
+            pdf.text(x, y, FONT_SIZE, bold, hours(value));
+        }
+    }
+
+    /**
+     * Formats hours with at most one decimal, as they are stored.
+     */
+    private static String hours(double value) {
+        long tenths = Math.round(value * 10);
+        return (tenths % 10 == 0) ? Long.toString(tenths / 10) : (tenths / 10) + "." + Math.abs(tenths % 10);
+    }
+
+    /**
+     * Shortens a text to the given width, with an ellipsis.
+     */
+    private static String fit(String text, float width) {
+        if (PdfWriter.textWidth(text, FONT_SIZE) <= width) {
+            return text;
+        }
+        float available = width - PdfWriter.textWidth("...", FONT_SIZE);
+        int end = 0;
+        float used = 0;
+        while (end < text.length()) {
+            float next = PdfWriter.textWidth(text.substring(end, end + 1), FONT_SIZE);
+            if (used + next > available) {
+                break;
+            }
+            used += next;
+            end++;
+        }
+        return text.substring(0, end) + "...";
+    }
+}
@@ -0,0 +1,257 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal PDF 1.4 writer for text reports, streaming the document page by page.
+ *
+ * <p>Only the content of the current page is kept in memory: when a page is finished its
+ * content stream and page object are written to the output right away, together with their
+ * byte offsets for the cross-reference table. The page tree, which lists every page, is written
+ * at the end. Text uses the standard Helvetica fonts with WinAnsi encoding, so no font is
+ * embedded; characters outside Latin-1 are replaced with '?'.</p>
+ */
+public final class PdfWriter implements AutoCloseable {
+
+    /**
+     * Width and height of an A4 page in landscape orientation, in points.
+     */
+    public static final float A4_LANDSCAPE_WIDTH = 842;
+    public static final float A4_LANDSCAPE_HEIGHT = 595;
+
+    // object numbers fixed in advance; pages get 2 objects each from FIRST_PAGE_OBJECT on
+    private static final int CATALOG_OBJECT = 1;
+    private static final int PAGES_OBJECT = 2;
+    private static final int FONT_OBJECT = 3;
+    private static final int BOLD_FONT_OBJECT = 4;
+    private static final int FIRST_PAGE_OBJECT = 5;
+
+    private final CountingOutputStream out;
+    private final float width;
+    private final float height;
+
+    // offsets[n] is the byte offset of object n
+    private long[] offsets = new long[64];
+    private int objectCount = FIRST_PAGE_OBJECT - 1;
+    private int[] pageObjects = new int[16];
+    private int pageCount;
+
+    private StringBuilder page;
+    private boolean closed;
+
+    /**
+     * Starts the document; nothing is closed on the given stream.
+     *
+     * @param output the stream the document is written to.
+     * @param width  the width of the pages, in points.
+     * @param height the height of the pages, in points.
+     * @throws IOException if the header cannot be written.
+     */
+    public PdfWriter(OutputStream output, float width, float height) throws IOException {
+        this.out = new CountingOutputStream(output);
+        this.width = width;
+        this.height = height;
+
+        // the second line marks the file as binary for transfer tools
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        writeObject(FONT_OBJECT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        writeObject(BOLD_FONT_OBJECT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>");
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    /**
+     * Finishes the current page, if any, and starts a new one.
+     *
+     * @throws IOException if the finished page cannot be written.
+     */
+    public void newPage() throws IOException {
+        finishPage();
+        page = new StringBuilder(4096);
+    }
+
+    /**
+     * Draws a line of text on the current page.
+     *
+     * @param x    the left of the text, in points from the left edge.
+     * @param y    the baseline of the text, in points from the bottom edge.
+     * @param size the font size.
+     * @param bold whether to use the bold font.
+     * @param text the text.
+     */
+    public void text(float x, float y, float size, boolean bold, String text) {
+        requirePage();
+        page.append("BT /").append(bold ? "F2 " : "F1 ").append(number(size)).append(" Tf ")
+                .append(number(x)).append(' ').append(number(y)).append(" Td (");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                page.append('\\').append(c);
+            } else if (c < ' ' || c > '\u00ff') {
+                page.append('?');
+            } else {
+                page.append(c);
+            }
+        }
+        page.append(") Tj ET\n");
+    }
+
+    /**
+     * Draws a thin line on the current page.
+     */
+    public void line(float x1, float y1, float x2, float y2) {
+        requirePage();
+        page.append("0.5 w ").append(number(x1)).append(' ').append(number(y1)).append(" m ")
+                .append(number(x2)).append(' ').append(number(y2)).append(" l S\n");
+    }
+
+    /**
+     * Approximate width of a text in Helvetica, used to align and truncate the columns.
+     *
+     * @return the width in points.
+     */
+    public static float textWidth(String text, float size) {
+        float units = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // average Helvetica widths per 1000 units: digits 556, narrow punctuation 278, other 560
+            units += (c >= '0' && c <= '9') ? 556 : (c == '.' || c == ',' || c == ' ' || c == 'i' || c == 'l') ? 278 : 560;
+        }
+        return units * size / 1000;
+    }
+
+    /**
+     * Finishes the last page and writes the page tree, the catalog, the cross-reference table
+     * and the trailer. The underlying stream is flushed but not closed.
+     *
+     * @throws IOException if the document cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (page == null) {
+            newPage(); // a PDF needs at least one page
+        }
+        finishPage();
+
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(pageObjects[i]).append(" 0 R ");
+        }
+        writeObject(PAGES_OBJECT, "<< /Type /Pages /Kids [ " + kids + "] /Count " + pageCount
+                + " /MediaBox [0 0 " + number(width) + " " + number(height) + "]"
+                + " /Resources << /Font << /F1 " + FONT_OBJECT + " 0 R /F2 " + BOLD_FONT_OBJECT + " 0 R >> >> >>");
+        writeObject(CATALOG_OBJECT, "<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>");
+
+        long xref = out.count;
+        StringBuilder table = new StringBuilder("xref\n0 ").append(objectCount + 1).append("\n0000000000 65535 f \n");
+        for (int n = 1; n <= objectCount; n++) {
+            table.append(String.format("%010d 00000 n \n", offsets[n]));
+        }
+        table.append("trailer\n<< /Size ").append(objectCount + 1).append(" /Root ").append(CATALOG_OBJECT)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        write(table.toString());
+        out.flush();
+    }
+
+    private void requirePage() {
+        if (page == null) {
+            throw new IllegalStateException("newPage() must be called before drawing");
+        }
+    }
+
+    /**
+     * Writes the content stream and the page object of the current page, then forgets it.
+     */
+    private void finishPage() throws IOException {
+        if (page == null) {
+            return;
+        }
+        byte[] content = page.toString().getBytes(StandardCharsets.ISO_8859_1);
+        page = null;
+
+        int contentObject = ++objectCount;
+        int pageObject = ++objectCount;
+        markObject(contentObject);
+        write(contentObject + " 0 obj\n<< /Length " + content.length + " >>\nstream\n");
+        out.write(content);
+        write("\nendstream\nendobj\n");
+        writeObject(pageObject, "<< /Type /Page /Parent " + PAGES_OBJECT + " 0 R /Contents " + contentObject + " 0 R >>");
+
+        if (pageCount == pageObjects.length) {
+            pageObjects = Arrays.copyOf(pageObjects, pageCount * 2);
+        }
+        pageObjects[pageCount++] = pageObject;
+        // hand the page to the client now instead of at the end of the document
+        out.flush();
+    }
+
+    private void writeObject(int number, String dictionary) throws IOException {
+        markObject(number);
+        write(number + " 0 obj\n" + dictionary + "\nendobj\n");
+    }
+
+    private void markObject(int number) {
+        if (number >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(number + 1, offsets.length * 2));
+        }
+        offsets[number] = out.count;
+    }
+
+    private void write(String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Formats a coordinate or size with at most two decimals.
+     */
+    private static String number(float value) {
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths % 100 == 0) {
+            return Long.toString(hundredths / 100);
+        }
+        String fraction = Long.toString(100 + Math.abs(hundredths % 100)).substring(1);
+        return (hundredths < 0 ? "-" : "") + Math.abs(hundredths / 100) + "." + fraction;
+    }
+
+    /**
+     * Counts the bytes written, for the object offsets.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush(); // the underlying stream belongs to the caller
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.YearMonth;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.MonthlyHours;
+
+/**
+ * SHA-256 digests that key the stored monthly reports.
+ *
+ * <p>The source digest covers everything a report shows: the email of the user, the contract
+ * hours and the hours of the month with their task and project titles, read with the same query
+ * as {@link MonthlyReport}. Any change to the hours of the month, or to a title they show, gives
+ * a different digest, so a stored report is never served for hours it does not show. A report
+ * is stored with the digest of the rows it was rendered from ({@link #forUser} fed by
+ * {@link MonthlyReport}), never with one from a separate read. The content digest identifies
+ * the rendered PDF, so identical reports are stored once.</p>
+ */
+final class ReportDigests implements MonthlyHours.Handler {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest = sha256();
+
+    private ReportDigests() {
+    }
+
+    /**
+     * Digests the hours a report of a user for a month would be rendered from.
+     *
+     * @return the hexadecimal digest.
+     * @throws IOException if the hours cannot be read.
+     */
+    static String source(int userId, String userEmail, YearMonth month) throws IOException {
+        ReportDigests source = forUser(userEmail);
+        int workingHoursWeekly = DatabaseManager.forEachMonthlyHours(userId, month.atDay(1), month.atEndOfMonth(), source);
+        if (workingHoursWeekly < 0) {
+            throw new IOException("The hours of user " + userId + " for " + month + " cannot be read");
+        }
+        return source.finish(workingHoursWeekly);
+    }
+
+    /**
+     * Starts a source digest to be fed with the rows of the month as they are read.
+     */
+    static ReportDigests forUser(String userEmail) {
+        ReportDigests source = new ReportDigests();
+        source.update(userEmail);
+        return source;
+    }
+
+    /**
+     * Ends a source digest started by {@link #forUser} once every row has been added.
+     *
+     * @return the hexadecimal digest.
+     */
+    String finish(int workingHoursWeekly) {
+        update(Integer.toString(workingHoursWeekly));
+        return hex(digest.digest());
+    }
+
+    /**
+     * Digests a rendered report.
+     *
+     * @return the hexadecimal digest.
+     */
+    static String content(byte[] report) {
+        return hex(sha256().digest(report));
+    }
+
+    /**
+     * Adds a row of hours; rows arrive ordered by project, task and day, so the digest is stable.
+     */
+    @Override
+    public void accept(MonthlyHours hours) {
+        update(hours.task().projectId() + "|" + hours.task().projectTitle() + "|" + hours.task().id() + "|"
+                + hours.task().title() + "|" + hours.day() + "|" + hours.hours());
+    }
+
+    private void update(String field) {
+        digest.update(field.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
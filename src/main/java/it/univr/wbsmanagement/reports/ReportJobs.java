@@ -0,0 +1,325 @@
+package it.univr.wbsmanagement.reports;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+
+/**
+ * Renders the monthly reports in the background, on a bounded pool of workers.
+ *
+ * <p>At month end every researcher asks for a report at the same time: rendering them on the
+ * request threads would hold Tomcat threads and database connections for the whole burst.
+ * {@link #submit} only queues a job and returns its id; a worker renders the report with
+ * {@link MonthlyReport}, stores it in the {@code reports} table and marks the job as done, so
+ * the client can poll its status and then download it. The stored reports are a cache keyed by
+ * user, month and a digest of the hours of the month ({@link ReportDigests}): while the hours
+ * do not change, the stored report is served again without being rendered. When the workers are busy and the queue
+ * is full, the job is refused or run by the caller, according to the {@link RejectionPolicy}.</p>
+ *
+ * <p>The jobs are kept in memory, since the reports themselves are stored: finished jobs are
+ * forgotten by {@link #evictFinished} after a while. The meters are:</p>
+ * <ul>
+ *     <li>{@code executor.*} tagged {@code name=wbs.reports}: pool size, active workers, queued
+ *         and completed jobs.</li>
+ *     <li>{@code wbs.reports.wait} (timer): time a job spent in the queue.</li>
+ *     <li>{@code wbs.reports.render} (timer): time spent serving a job, from the cache or by
+ *         rendering and storing the report.</li>
+ *     <li>{@code wbs.reports.cache} (counter): jobs by {@code result}, hit when a stored report
+ *         was served and miss when it was rendered.</li>
+ *     <li>{@code wbs.reports.jobs} (counter): jobs by {@code result}, one of done, failed,
+ *         rejected and caller-runs.</li>
+ * </ul>
+ */
+public final class ReportJobs implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobs.class);
+
+    /**
+     * What to do with a job when all the workers are busy and the queue is full.
+     */
+    public enum RejectionPolicy {
+        /** Refuse the job: {@link #submit} throws {@link RejectedExecutionException}. */
+        ABORT,
+        /** Render the report on the thread that submitted it. */
+        CALLER_RUNS
+    }
+
+    /**
+     * The state of a job.
+     */
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * A report requested by a user; its state is updated by the worker rendering it.
+     */
+    public static final class Job {
+        private final String id;
+        private final int userId;
+        private final YearMonth month;
+        private final Instant submittedAt;
+        private volatile Status status = Status.QUEUED;
+        private volatile int reportId = -1;
+        private volatile Instant finishedAt;
+
+        private Job(String id, int userId, YearMonth month) {
+            this.id = id;
+            this.userId = userId;
+            this.month = month;
+            this.submittedAt = Instant.now();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the id of the stored report, or -1 until the job is done.
+         */
+        public int getReportId() {
+            return reportId;
+        }
+
+        public Instant getSubmittedAt() {
+            return submittedAt;
+        }
+
+        /**
+         * @return when the job was done or failed, or null if it is still queued or running.
+         */
+        public Instant getFinishedAt() {
+            return finishedAt;
+        }
+
+        private void finish(Status result, int storedReportId) {
+            reportId = storedReportId;
+            status = result;
+            finishedAt = Instant.now();
+        }
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final RejectionPolicy rejectionPolicy;
+    private final Period retention;
+
+    private final Timer waitTimer;
+    private final Timer renderTimer;
+    private final Counter doneCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Counter callerRunsCounter;
+    private final Counter cacheHitCounter;
+    private final Counter cacheMissCounter;
+
+    /**
+     * Starts the workers.
+     *
+     * @param poolSize        the number of reports rendered at the same time.
+     * @param queueCapacity   the number of jobs that can wait for a worker.
+     * @param rejectionPolicy what to do with a job when the queue is full.
+     * @param retention       how long the stored reports must be kept.
+     * @param meterRegistry   the registry the meters are written to.
+     */
+    public ReportJobs(int poolSize, int queueCapacity, RejectionPolicy rejectionPolicy, Period retention,
+                      MeterRegistry meterRegistry) {
+        this.rejectionPolicy = rejectionPolicy;
+        this.retention = retention;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new WorkerFactory(), this::reject);
+
+        new ExecutorServiceMetrics(executor, "wbs.reports", Tags.empty()).bindTo(meterRegistry);
+        this.waitTimer = Timer.builder("wbs.reports.wait")
+                .description("Time a report job spent waiting for a worker")
+                .register(meterRegistry);
+        this.renderTimer = Timer.builder("wbs.reports.render")
+                .description("Time spent serving a report job, from the cache or by rendering it")
+                .register(meterRegistry);
+        this.doneCounter = jobCounter(meterRegistry, "done");
+        this.failedCounter = jobCounter(meterRegistry, "failed");
+        this.rejectedCounter = jobCounter(meterRegistry, "rejected");
+        this.callerRunsCounter = jobCounter(meterRegistry, "caller-runs");
+        this.cacheHitCounter = cacheCounter(meterRegistry, "hit");
+        this.cacheMissCounter = cacheCounter(meterRegistry, "miss");
+    }
+
+    /**
+     * Queues the report of a user for a month.
+     *
+     * @param userId    the id of the user.
+     * @param userEmail the email of the user, printed in the report.
+     * @param month     the month of the report.
+     * @return the job, queued or already running.
+     * @throws RejectedExecutionException if the queue is full and the policy is
+     *                                    {@link RejectionPolicy#ABORT}, or the workers are stopped.
+     */
+    public Job submit(int userId, String userEmail, YearMonth month) {
+        Job job = new Job(UUID.randomUUID().toString(), userId, month);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, userEmail));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Finds a job of a user.
+     *
+     * @param jobId  the id returned by {@link #submit}.
+     * @param userId the user asking for it.
+     * @return the job, or null if it does not exist, was evicted or belongs to another user.
+     */
+    public Job get(String jobId, int userId) {
+        Job job = jobs.get(jobId);
+        return (job != null && job.getUserId() == userId) ? job : null;
+    }
+
+    /**
+     * Forgets the jobs that finished before the given age; their reports stay stored.
+     *
+     * @param age how long a finished job can still be polled.
+     * @return the number of jobs removed.
+     */
+    public int evictFinished(Duration age) {
+        Instant limit = Instant.now().minus(age);
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(limit));
+        return before - jobs.size();
+    }
+
+    /**
+     * Stops taking jobs and waits a little for the running ones.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serves a job from the stored reports when the hours of the month have not changed since
+     * the last report; otherwise renders and stores a new one. The report is built in memory
+     * before the insert: a month of a single user is a few pages, and the connection is borrowed
+     * only for the insert.
+     */
+    private void run(Job job, String userEmail) {
+        waitTimer.record(Duration.between(job.getSubmittedAt(), Instant.now()));
+        job.status = Status.RUNNING;
+
+        long start = System.nanoTime();
+        int reportId = -1;
+        try {
+            LocalDate firstDay = job.getMonth().atDay(1);
+            String sourceHash = ReportDigests.source(job.getUserId(), userEmail, job.getMonth());
+            reportId = DatabaseManager.findUserReport(job.getUserId(), firstDay, sourceHash);
+            if (reportId >= 0) {
+                cacheHitCounter.increment();
+            } else {
+                cacheMissCounter.increment();
+                // the hours may change after the lookup: the report is keyed by the rows it shows
+                ReportDigests rendered = ReportDigests.forUser(userEmail);
+                ByteArrayOutputStream pdf = new ByteArrayOutputStream(64 * 1024);
+                int workingHoursWeekly = MonthlyReport.write(job.getUserId(), userEmail, job.getMonth(), pdf, rendered);
+                byte[] report = pdf.toByteArray();
+                reportId = DatabaseManager.storeUserReport(job.getUserId(), firstDay, rendered.finish(workingHoursWeekly),
+                        ReportDigests.content(report), report, LocalDate.now().plus(retention));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Report {} of user {} for {} failed", job.getId(), job.getUserId(), job.getMonth(), e);
+        } finally {
+            renderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (reportId < 0) {
+            failedCounter.increment();
+            job.finish(Status.FAILED, -1);
+        } else {
+            doneCounter.increment();
+            job.finish(Status.DONE, reportId);
+        }
+    }
+
+    private void reject(Runnable task, ThreadPoolExecutor pool) {
+        if (rejectionPolicy == RejectionPolicy.CALLER_RUNS && !pool.isShutdown()) {
+            callerRunsCounter.increment();
+            task.run();
+            return;
+        }
+        rejectedCounter.increment();
+        throw new RejectedExecutionException("The report queue is full");
+    }
+
+    private static Counter jobCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("wbs.reports.jobs")
+                .description("Report jobs by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("wbs.reports.cache")
+                .description("Report jobs served from a stored report (hit) or rendered (miss)")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Names the workers, so they can be told apart in thread dumps.
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "wbs-report-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
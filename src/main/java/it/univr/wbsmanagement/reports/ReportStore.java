@@ -0,0 +1,109 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Set;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.StoredReport;
+
+/**
+ * Files of the stored reports, served to the downloads without going through the heap.
+ *
+ * <p>The reports table stays the authoritative copy. The first download of a report copies its
+ * BLOB to a file named after its content hash ({@code <sha-256>.pdf}), so reports with the same
+ * content share one file; later downloads send the file directly, with ranges and conditional
+ * requests. Files are written to a temporary name and moved in place, so a file with the final
+ * name is always complete. {@link #sweep} removes the files of reports no longer stored.</p>
+ */
+public final class ReportStore {
+
+    private static final String EXTENSION = ".pdf";
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory of the files; it is created on first use.
+     */
+    public ReportStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The file of a stored report, with the content hash that names it.
+     *
+     * @param path        the file.
+     * @param contentHash the hexadecimal SHA-256 of the file.
+     */
+    public record Entry(Path path, String contentHash) {
+    }
+
+    /**
+     * Finds the file of a report, copying it from the database if it is not there yet.
+     *
+     * @param report the report.
+     * @return the file, or null if the report cannot be read from the database.
+     * @throws IOException if the file cannot be written.
+     */
+    public Entry file(StoredReport report) throws IOException {
+        if (report.contentHash() != null) {
+            Path file = directory.resolve(report.contentHash() + EXTENSION);
+            if (Files.isRegularFile(file)) {
+                return new Entry(file, report.contentHash());
+            }
+        }
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "report-" + report.id() + "-", ".tmp");
+        try {
+            MessageDigest digest = ReportDigests.sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                if (!DatabaseManager.writeUserReport(report.id(), report.userId(), out)) {
+                    return null;
+                }
+            }
+            String contentHash = ReportDigests.hex(digest.digest());
+            if (report.contentHash() == null) {
+                // stored before the hash was recorded at insert time
+                DatabaseManager.updateReportContentHash(report.id(), contentHash);
+            }
+
+            Path file = directory.resolve(contentHash + EXTENSION);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new Entry(file, contentHash);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes the files whose content hash is not among the given ones. A file deleted while a
+     * report that needs it is being stored is copied again at its next download.
+     *
+     * @param contentHashes the hashes of the stored reports.
+     * @return the number of deleted files.
+     * @throws IOException if the directory cannot be read.
+     */
+    public int sweep(Set<String> contentHashes) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!contentHashes.contains(name.substring(0, name.length() - EXTENSION.length()))
+                        && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+}
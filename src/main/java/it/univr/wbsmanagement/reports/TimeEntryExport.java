@@ -0,0 +1,195 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.TimeEntryRow;
+
+/**
+ * Export of the time entries as CSV or NDJSON, written while the rows are read.
+ *
+ * <p>The rows come from {@link DatabaseManager#forEachTimeEntry} a page at a time, without a
+ * database connection held while they are written, and each one goes to a small buffer in front
+ * of the output: memory does not depend on the number of entries. CSV has a header line and quotes the fields as in RFC 4180; NDJSON has one
+ * JSON object per line, with the same fields.</p>
+ */
+public final class TimeEntryExport implements TimeEntryRow.Handler {
+
+    /**
+     * The formats of the export.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String mediaType;
+        private final String extension;
+
+        Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String[] FIELDS = {
+            "user_id", "user_email", "entry_date", "hours", "project_id", "project_title",
+            "work_package_id", "work_package_title", "task_id", "task_title"
+    };
+
+    private final Format format;
+    private final Writer out;
+
+    private TimeEntryExport(Format format, Writer out) {
+        this.format = format;
+        this.out = out;
+    }
+
+    /**
+     * Writes the time entries matching the filters to the given stream, which is not closed.
+     * <p>
+     * Nothing reaches the stream before the first page of entries is read, so a database that
+     * cannot be queried fails the export before any byte is sent. A page that cannot be read
+     * later fails it after the earlier pages were written: the buffered rest is not flushed and
+     * the caller must abort the transfer instead of completing it (see ExportController).
+     *
+     * @param format    the format of the export.
+     * @param userId    the user whose entries are exported, or null for all the users.
+     * @param projectId the project whose entries are exported, or null for all the projects.
+     * @param firstDay  the first day of the period.
+     * @param lastDay   the last day of the period.
+     * @param output    the stream the export is written to, in UTF-8.
+     * @return the number of exported entries.
+     * @throws IOException if the entries cannot be read or the export cannot be written.
+     */
+    public static long write(Format format, Integer userId, Integer projectId, LocalDate firstDay, LocalDate lastDay,
+                             OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 16 * 1024);
+        TimeEntryExport export = new TimeEntryExport(format, writer);
+        if (format == Format.CSV) {
+            writer.write(String.join(",", FIELDS));
+            writer.write("\r\n");
+        }
+
+        long rows = DatabaseManager.forEachTimeEntry(userId, projectId, firstDay, lastDay, export);
+        if (rows < 0) {
+            throw new IOException("The time entries from " + firstDay + " to " + lastDay + " cannot be read");
+        }
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Writes one entry as a line.
+     */
+    @Override
+    public void accept(TimeEntryRow row) throws IOException {
+        if (format == Format.CSV) {
+            out.write(Integer.toString(row.userId()));
+            out.write(',');
+            csv(row.userEmail());
+            out.write(',');
+            out.write(row.day().toString());
+            out.write(',');
+            out.write(Double.toString(row.hours()));
+            out.write(',');
+            out.write(Integer.toString(row.projectId()));
+            out.write(',');
+            csv(row.projectTitle());
+            out.write(',');
+            out.write(Integer.toString(row.workPackageId()));
+            out.write(',');
+            csv(row.workPackageTitle());
+            out.write(',');
+            out.write(Integer.toString(row.taskId()));
+            out.write(',');
+            csv(row.taskTitle());
+            out.write("\r\n");
+        } else {
+            out.write("{\"user_id\":");
+            out.write(Integer.toString(row.userId()));
+            out.write(",\"user_email\":");
+            json(row.userEmail());
+            out.write(",\"entry_date\":\"");
+            out.write(row.day().toString());
+            out.write("\",\"hours\":");
+            out.write(Double.toString(row.hours()));
+            out.write(",\"project_id\":");
+            out.write(Integer.toString(row.projectId()));
+            out.write(",\"project_title\":");
+            json(row.projectTitle());
+            out.write(",\"work_package_id\":");
+            out.write(Integer.toString(row.workPackageId()));
+            out.write(",\"work_package_title\":");
+            json(row.workPackageTitle());
+            out.write(",\"task_id\":");
+            out.write(Integer.toString(row.taskId()));
+            out.write(",\"task_title\":");
+            json(row.taskTitle());
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * Writes a text field, quoted when it contains a separator, a quote or a line break.
+     */
+    private void csv(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Writes a JSON string, or null.
+     */
+    private void json(String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c == '\n') {
+                out.write("\\n");
+            } else if (c == '\r') {
+                out.write("\\r");
+            } else if (c == '\t') {
+                out.write("\\t");
+            } else if (c < ' ') {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,143 @@
+package it.univr.wbsmanagement.controllers;
+
+import it.univr.wbsmanagement.config.UserPrincipal;
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.TimeEntryRow;
+import it.univr.wbsmanagement.models.User;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks who can export which hours, with the database mocked. The rows and their escaping are
+ * covered by TimeEntryExportTest.
+ */
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(ExportController.class)
+public class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private MockedStatic<DatabaseManager> dbMock;
+
+    @BeforeEach
+    void setUp() {
+        dbMock = Mockito.mockStatic(DatabaseManager.class);
+        dbMock.when(() -> DatabaseManager.forEachTimeEntry(any(), any(), any(), any(), any())).thenReturn(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dbMock.close();
+    }
+
+    /**
+     * A researcher exports their own hours, but not the hours of another user.
+     */
+    @Test
+    void testResearcherExportsOwnHoursOnly() throws Exception {
+        UserPrincipal researcher = principal(5, "researcher", "Researcher");
+
+        mockMvc.perform(get("/export/time-entries").param("from", "2025-03-01").with(user(researcher)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"time_entries_user5_2025-03-01.csv\""))
+                .andExpect(content().string("user_id,user_email,entry_date,hours,project_id,project_title,"
+                        + "work_package_id,work_package_title,task_id,task_title\r\n"));
+        mockMvc.perform(get("/export/time-entries").param("userId", "5").param("format", "ndjson").with(user(researcher)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/export/time-entries").param("userId", "6").with(user(researcher)))
+                .andExpect(status().isForbidden());
+
+        dbMock.verify(() -> DatabaseManager.forEachTimeEntry(eq(5), isNull(), eq(LocalDate.of(2025, 3, 1)), any(), any()));
+        dbMock.verify(() -> DatabaseManager.forEachTimeEntry(eq(6), any(), any(), any(), any()), Mockito.never());
+    }
+
+    /**
+     * An Administrator exports the hours of every user.
+     */
+    @Test
+    void testAdministratorExportsAllHours() throws Exception {
+        mockMvc.perform(get("/export/time-entries").param("format", "ndjson").with(user(principal(1, "admin", "Administrator"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"time_entries.ndjson\""));
+
+        dbMock.verify(() -> DatabaseManager.forEachTimeEntry(isNull(), isNull(), any(), any(), any()));
+    }
+
+    /**
+     * Unknown formats and reversed periods are refused.
+     */
+    @Test
+    void testInvalidParameters() throws Exception {
+        UserPrincipal researcher = principal(5, "researcher", "Researcher");
+
+        mockMvc.perform(get("/export/time-entries").param("format", "xml").with(user(researcher)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/export/time-entries").param("from", "2025-03-31").param("to", "2025-03-01").with(user(researcher)))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * An export that cannot be read before anything is sent fails with a 500 status instead of
+     * an empty attachment.
+     */
+    @Test
+    void testFailureBeforeFirstPage() throws Exception {
+        dbMock.when(() -> DatabaseManager.forEachTimeEntry(any(), any(), any(), any(), any())).thenReturn(-1L);
+
+        mockMvc.perform(get("/export/time-entries").with(user(principal(5, "researcher", "Researcher"))))
+                .andExpect(status().isInternalServerError())
+                .andExpect(header().doesNotExist("Content-Disposition"));
+    }
+
+    /**
+     * An export that fails after part of it was sent is not completed: the error reaches the
+     * container, which closes the connection.
+     */
+    @Test
+    void testFailureAfterFirstPage() {
+        dbMock.when(() -> DatabaseManager.forEachTimeEntry(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            TimeEntryRow.Handler handler = invocation.getArgument(4);
+            String title = "x".repeat(200);
+            for (int i = 0; i < 500; i++) {
+                handler.accept(new TimeEntryRow(5, "researcher", LocalDate.of(2025, 3, 1), 8, 1, title, 1, title, i, title));
+            }
+            return -1L;
+        });
+
+        assertThrows(IOException.class, () -> mockMvc.perform(get("/export/time-entries")
+                .with(user(principal(5, "researcher", "Researcher")))));
+    }
+
+    /**
+     * Builds the principal created at login for the given user.
+     */
+    private static UserPrincipal principal(int userId, String email, String role) {
+        return new UserPrincipal(new User(userId, email, role, 1), "{noop}pwd",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
+}
@@ -0,0 +1,129 @@
+package it.univr.wbsmanagement.controllers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the byte ranges and conditional requests of the file downloads.
+ */
+public class FileDownloadsTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+    private static final String ETAG = "c0ffee";
+    private static final long MODIFIED_AT = 1_740_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.writeString(directory.resolve("report.pdf"), CONTENT, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Without headers the whole file is sent with its validators.
+     */
+    @Test
+    void testWholeFile() throws IOException {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/report"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertEquals("\"" + ETAG + "\"", response.getHeader("ETag"));
+        assertEquals(MODIFIED_AT, response.getDateHeader("Last-Modified"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+    }
+
+    /**
+     * A download resumed from byte 15 gets the last five bytes.
+     */
+    @Test
+    void testRangeResumesDownload() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/report");
+        request.addHeader("Range", "bytes=15-");
+        request.addHeader("If-Range", "\"" + ETAG + "\"");
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("fghij", response.getContentAsString());
+        assertEquals("bytes 15-19/20", response.getHeader("Content-Range"));
+        assertEquals(5, response.getContentLengthLong());
+    }
+
+    /**
+     * A Range for another version of the file is ignored, one past the end is refused.
+     */
+    @Test
+    void testRangeOfOtherVersionOrPastTheEnd() throws IOException {
+        MockHttpServletRequest otherVersion = new MockHttpServletRequest("GET", "/report");
+        otherVersion.addHeader("Range", "bytes=15-");
+        otherVersion.addHeader("If-Range", "\"stale\"");
+        assertEquals(200, send(otherVersion).getStatus());
+
+        MockHttpServletRequest pastTheEnd = new MockHttpServletRequest("GET", "/report");
+        pastTheEnd.addHeader("Range", "bytes=20-");
+        MockHttpServletResponse response = send(pastTheEnd);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader("Content-Range"));
+    }
+
+    /**
+     * A client holding the current version gets 304 without a body.
+     */
+    @Test
+    void testNotModified() throws IOException {
+        MockHttpServletRequest byEtag = new MockHttpServletRequest("GET", "/report");
+        byEtag.addHeader("If-None-Match", "\"old\", W/\"" + ETAG + "\"");
+        MockHttpServletResponse response = send(byEtag);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        MockHttpServletRequest byDate = new MockHttpServletRequest("GET", "/report");
+        byDate.addHeader("If-Modified-Since", MODIFIED_AT);
+        assertEquals(304, send(byDate).getStatus());
+
+        MockHttpServletRequest otherEtag = new MockHttpServletRequest("GET", "/report");
+        otherEtag.addHeader("If-None-Match", "\"old\"");
+        otherEtag.addHeader("If-Modified-Since", MODIFIED_AT);
+        assertEquals(200, send(otherEtag).getStatus(), "If-None-Match takes precedence over If-Modified-Since");
+    }
+
+    @Test
+    void testParseRange() {
+        assertArrayEquals(new long[]{0, 9}, FileDownloads.parseRange("bytes=0-9", 20));
+        assertArrayEquals(new long[]{10, 19}, FileDownloads.parseRange("bytes=10-100", 20));
+        assertArrayEquals(new long[]{15, 19}, FileDownloads.parseRange("bytes=-5", 20));
+        assertArrayEquals(new long[]{0, 19}, FileDownloads.parseRange("bytes=-50", 20));
+        assertNull(FileDownloads.parseRange("bytes=0-1,5-6", 20));
+        assertNull(FileDownloads.parseRange("bytes=9-3", 20));
+        assertNull(FileDownloads.parseRange("items=0-1", 20));
+        assertNull(FileDownloads.parseRange(null, 20));
+        assertArrayEquals(new long[]{5, 19}, FileDownloads.parseRange("bytes=5-", 20));
+        assertArrayEquals(new long[]{19, 19}, FileDownloads.parseRange("bytes=19-", 20));
+        assertEquals(0, FileDownloads.parseRange("bytes=20-30", 20).length);
+        assertEquals(0, FileDownloads.parseRange("bytes=20-", 20).length);
+        assertEquals(0, FileDownloads.parseRange("bytes=0-", 0).length);
+        assertEquals(0, FileDownloads.parseRange("bytes=-5", 0).length);
+        assertEquals(0, FileDownloads.parseRange("bytes=-0", 20).length);
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileDownloads.send(request, response, file, ETAG, MODIFIED_AT, "application/pdf", "report.pdf");
+        return response;
+    }
+}
@@ -0,0 +1,149 @@
+package it.univr.wbsmanagement.controllers;
+
+import it.univr.wbsmanagement.config.UserPrincipal;
+import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.TaskHours;
+import it.univr.wbsmanagement.models.TaskRef;
+import it.univr.wbsmanagement.models.User;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the validation of the single-entry add and edit forms of the home tracking page, with
+ * the database mocked.
+ */
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(HomeTrackingController.class)
+public class HomeTrackingControllerTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 3);
+    private static final String ADD_URL = "/home-tracking/2025-03-03/add-home-tracking";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private MockedStatic<DatabaseManager> dbMock;
+
+    /**
+     * User 5 has 6 hours on task 10 and 2 hours on task 11 on the day; tasks 10 and 11 are in
+     * the week grid and task 12 is available for a new entry.
+     */
+    @BeforeEach
+    void setUp() {
+        dbMock = Mockito.mockStatic(DatabaseManager.class);
+        dbMock.when(() -> DatabaseManager.getTimeEntriesWithTitlesByUserAndDay(5, DAY)).thenReturn(Arrays.asList(
+                new TaskHours(new TaskRef(10, "Design", 1, "Alpha"), 6.0),
+                new TaskHours(new TaskRef(11, "Review", 1, "Alpha"), 2.0)));
+        LinkedHashMap<Integer, String> gridTasks = new LinkedHashMap<>();
+        gridTasks.put(10, "Design");
+        gridTasks.put(11, "Review");
+        dbMock.when(() -> DatabaseManager.getWeekGridTasks(5, DAY, DAY)).thenReturn(gridTasks);
+        dbMock.when(() -> DatabaseManager.getTasksAvailableAndNonWorkingByUserAndDay(5, DAY))
+                .thenReturn(Collections.singletonList(new TaskRef(12, "Testing", 1, "Alpha")));
+        dbMock.when(() -> DatabaseManager.getTotalHoursForDate(5, DAY)).thenReturn(8.0);
+        dbMock.when(() -> DatabaseManager.updateTimeEntry(anyInt(), anyInt(), any(), anyDouble())).thenReturn(true);
+        dbMock.when(() -> DatabaseManager.addTimeEntry(anyInt(), anyInt(), any(), anyDouble())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dbMock.close();
+    }
+
+    /**
+     * A correction of an existing entry is stored, fractional hours included, as long as the day
+     * stays within 24 hours once the old hours of the entry are replaced.
+     */
+    @Test
+    void testEditEntry() throws Exception {
+        mockMvc.perform(edit(10, "0.5"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("removeTimeEntryMessage", "Entity updated successfully"));
+        mockMvc.perform(edit(10, "22"))
+                .andExpect(model().attribute("removeTimeEntryMessage", "Entity updated successfully"));
+
+        dbMock.verify(() -> DatabaseManager.updateTimeEntry(5, 10, DAY, 0.5));
+        dbMock.verify(() -> DatabaseManager.updateTimeEntry(5, 10, DAY, 22.0));
+    }
+
+    /**
+     * Corrections of a missing entry, of a task outside the grid, past 24 hours per day or with
+     * invalid hours are refused without writing.
+     */
+    @Test
+    void testEditEntryRefused() throws Exception {
+        for (String hours : new String[]{"0", "-1", "22.5", "NaN", "Infinity"}) {
+            mockMvc.perform(edit(10, hours))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("removeTimeEntryMessage", "Please enter a valid number of hours"));
+        }
+        mockMvc.perform(edit(12, "1"))
+                .andExpect(model().attribute("removeTimeEntryMessage", "Please enter a valid number of hours"));
+
+        dbMock.when(() -> DatabaseManager.getWeekGridTasks(5, DAY, DAY)).thenReturn(new LinkedHashMap<Integer, String>());
+        mockMvc.perform(edit(11, "1"))
+                .andExpect(model().attribute("removeTimeEntryMessage", "Please enter a valid number of hours"));
+
+        dbMock.verify(() -> DatabaseManager.updateTimeEntry(anyInt(), anyInt(), any(), anyDouble()), Mockito.never());
+    }
+
+    /**
+     * A new entry accepts fractional hours, but not an unavailable task or a day past 24 hours.
+     */
+    @Test
+    void testAddEntry() throws Exception {
+        mockMvc.perform(add(12, "0.5"))
+                .andExpect(model().attribute("addTimeEntryMessage", "Hours entry added successfully"));
+        mockMvc.perform(add(12, "16.5"))
+                .andExpect(model().attribute("addTimeEntryMessage", "Please enter a valid number of hours"));
+        mockMvc.perform(add(13, "1"))
+                .andExpect(model().attribute("addTimeEntryMessage", "Please enter a valid number of hours"));
+
+        dbMock.verify(() -> DatabaseManager.addTimeEntry(5, 12, DAY, 0.5));
+        dbMock.verify(() -> DatabaseManager.addTimeEntry(anyInt(), eq(13), any(), anyDouble()), Mockito.never());
+        dbMock.verify(() -> DatabaseManager.addTimeEntry(anyInt(), anyInt(), any(), eq(16.5)), Mockito.never());
+    }
+
+    private static RequestBuilder edit(int taskId, String hours) {
+        return post(ADD_URL + "/edit/" + taskId).param("hours", hours).with(csrf()).with(user(principal()));
+    }
+
+    private static RequestBuilder add(int taskId, String hours) {
+        return post(ADD_URL).param("taskId", String.valueOf(taskId)).param("hours", hours)
+                .with(csrf()).with(user(principal()));
+    }
+
+    /**
+     * Builds the principal created at login for user 5.
+     */
+    private static UserPrincipal principal() {
+        return new UserPrincipal(new User(5, "researcher", "Researcher", 1), "{noop}pwd",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_Researcher")));
+    }
+}
@@ -1,10 +1,14 @@
 package it.univr.wbsmanagement.controllers;
 
+import it.univr.wbsmanagement.config.UserPrincipal;
 import it.univr.wbsmanagement.database.DatabaseManager;
+import it.univr.wbsmanagement.models.ProjectTree;
+import it.univr.wbsmanagement.models.User;
+import it.univr.wbsmanagement.models.UserRef;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,9 +18,12 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -56,13 +63,13 @@ public class ProjectControllerTest {
      */
     @Test
     void testShowAddProjectForm() throws Exception {
-        String[] supervisors = {"1 - s@s.s", "2 - d@d.d"};
+        List<UserRef> supervisors = Arrays.asList(new UserRef(1, "s@s.s"), new UserRef(2, "d@d.d"));
         dbMock.when(DatabaseManager::getSupervisors).thenReturn(supervisors);
 
-        mockMvc.perform(get("/project/add"))
+        mockMvc.perform(get("/project/add").with(user(principal(1, "admin", "Administrator"))))
                 .andExpect(status().isOk())
                 .andExpect(view().name("layout"))
-                .andExpect(model().attribute("supervisors", Arrays.asList(supervisors)))
+                .andExpect(model().attribute("supervisors", supervisors))
                 .andExpect(model().attribute("content", "project-add"));
     }
 
@@ -77,23 +84,69 @@ public class ProjectControllerTest {
         int supId = 2;
         String email = "s@s.s";
 
-        // mock user role as Supervisor
-        Map<String, String> userRow = new HashMap<>();
-        userRow.put("role_name", "Supervisor");
-
-        dbMock.when(() -> DatabaseManager.getSupervisors()).thenReturn(new String[]{});
-        dbMock.when(() -> DatabaseManager.getUserRowByEmail(email)).thenReturn(userRow);
-        dbMock.when(() -> DatabaseManager.getRoleId("Supervisor")).thenReturn(10);
+        // the user (id 10) is carried by the principal: no user lookup is needed
+        dbMock.when(() -> DatabaseManager.getSupervisors()).thenReturn(Collections.emptyList());
         dbMock.when(() -> DatabaseManager.addProject(name, description, 10, supId)).thenReturn(true);
 
         mockMvc.perform(post("/project/add")
                         .param("name", name)
                         .param("description", description)
                         .param("supervisorId", String.valueOf(supId))
-                        .principal(() -> email)
+                        .with(user(principal(10, email, "Supervisor")))
+                        .with(csrf())
                 )
                 .andExpect(status().isOk())
                 .andExpect(model().attribute("message", "Task added successfully"))
                 .andExpect(view().name("layout"));
     }
+
+    /**
+     * Test GET /project/{id}.
+     * Verifies that role and supervisor flag come from the principal, without loading the user row.
+     */
+    @Test
+    void testShowProjectDetailsUsesPrincipal() throws Exception {
+        dbMock.when(() -> DatabaseManager.getProjectTree(5))
+                .thenReturn(new ProjectTree(5, "Apollo", 7, false, Collections.emptyList()));
+
+        mockMvc.perform(get("/project/5").with(user(principal(7, "s@s.s", "Supervisor"))))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("role", "Supervisor"))
+                .andExpect(model().attribute("isSupervisor", true))
+                .andExpect(model().attribute("content", "project-details"));
+
+        dbMock.verify(() -> DatabaseManager.getUserRowByEmail(Mockito.anyString()), Mockito.never());
+    }
+
+    /**
+     * Test GET /project/{id}.
+     * Verifies that the whole tree comes from one getProjectTree call, with no per-work-package query.
+     */
+    @Test
+    void testShowProjectDetailsLoadsTreeOnce() throws Exception {
+        ProjectTree tree = new ProjectTree(5, "Apollo", 7, true, Arrays.asList(
+                new ProjectTree.WorkPackageNode(1, "Design", Arrays.asList(
+                        new ProjectTree.TaskNode(10, "Mockups"),
+                        new ProjectTree.TaskNode(11, "Review"))),
+                new ProjectTree.WorkPackageNode(2, "Build", Collections.emptyList())));
+        dbMock.when(() -> DatabaseManager.getProjectTree(5)).thenReturn(tree);
+
+        mockMvc.perform(get("/project/5").with(user(principal(3, "r@r.r", "Researcher"))))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("projectTitle", "Apollo"))
+                .andExpect(model().attribute("workPackages", tree.workPackages()))
+                .andExpect(model().attribute("isSupervisor", false))
+                .andExpect(model().attribute("message", "Archived"));
+
+        dbMock.verify(() -> DatabaseManager.getProjectTree(5), Mockito.times(1));
+        dbMock.verify(() -> DatabaseManager.getTasksByWorkPackages(Mockito.anyInt()), Mockito.never());
+    }
+
+    /**
+     * Builds the principal created at login for the given user.
+     */
+    private static UserPrincipal principal(int userId, String email, String role) {
+        return new UserPrincipal(new User(userId, email, role, 1), "{noop}pwd",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
 }
@@ -0,0 +1,185 @@
+package it.univr.wbsmanagement.controllers;
+
+import it.univr.wbsmanagement.config.UserPrincipal;
+import it.univr.wbsmanagement.database.QueryCounter;
+import it.univr.wbsmanagement.models.User;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bounds the statements executed by the pages that used to loop over their results, on the real
+ * application with an in-memory database: the count must not grow with the work packages of a
+ * project, the entries of a day or the assignments of a task.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-count;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false"
+})
+@AutoConfigureMockMvc
+public class QueryCountTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 5);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private QueryCounter queries;
+
+    @BeforeEach
+    void setUp() {
+        queries = QueryCounter.install();
+    }
+
+    @AfterEach
+    void tearDown() {
+        queries.close();
+    }
+
+    /**
+     * GET /project/{id} loads the whole tree with one query, whatever the number of work packages.
+     */
+    @Test
+    void testProjectDetailsQueriesDoNotGrowWithWorkPackages() throws Exception {
+        int small = createProject("QC_Small", 1);
+        int large = createProject("QC_Large", 20);
+        UserPrincipal supervisor = principal("supervisor", "Supervisor");
+
+        long smallCount = queries.count(() -> mockMvc.perform(get("/project/" + small).with(user(supervisor)))
+                .andExpect(status().isOk())).assertAtMost(1, "GET /project/{id}, 1 work package").total();
+        long largeCount = queries.count(() -> mockMvc.perform(get("/project/" + large).with(user(supervisor)))
+                .andExpect(status().isOk())).assertAtMost(1, "GET /project/{id}, 20 work packages").total();
+
+        assertEquals(smallCount, largeCount);
+    }
+
+    /**
+     * GET /home-tracking/{day}/add-home-tracking reads the entries with their titles and the
+     * available tasks in two queries, whatever the number of entries of the day.
+     */
+    @Test
+    void testAddPageQueriesDoNotGrowWithEntries() throws Exception {
+        createProject("QC_Tracking", 10);
+        UserPrincipal researcher = principal("researcher", "Researcher");
+        LocalDate fewDay = DAY;
+        LocalDate manyDay = DAY.plusDays(1);
+        execute("""
+            INSERT INTO time_entries (user_id, task_id, entry_date, hours)
+            SELECT %1$d, MIN(t.id), DATE '%2$s', 1.0 FROM tasks t WHERE t.title LIKE 'QC_Tracking_%%'
+        """.formatted(researcher.getUser().getUserId(), fewDay));
+        execute("""
+            INSERT INTO time_entries (user_id, task_id, entry_date, hours)
+            SELECT %1$d, t.id, DATE '%2$s', 0.5 FROM tasks t WHERE t.title LIKE 'QC_Tracking_%%' ORDER BY t.id LIMIT 10
+        """.formatted(researcher.getUser().getUserId(), manyDay));
+
+        long fewCount = queries.count(() -> mockMvc.perform(get("/home-tracking/" + fewDay + "/add-home-tracking").with(user(researcher)))
+                .andExpect(status().isOk())).assertAtMost(2, "GET add-home-tracking, 1 entry").total();
+        long manyCount = queries.count(() -> mockMvc.perform(get("/home-tracking/" + manyDay + "/add-home-tracking").with(user(researcher)))
+                .andExpect(status().isOk())).assertAtMost(2, "GET add-home-tracking, 10 entries").total();
+
+        assertEquals(fewCount, manyCount);
+    }
+
+    /**
+     * A POST of the task page writes and then reloads the page: two updates, then the task,
+     * the researchers to assign and the assignments, one query each.
+     */
+    @Test
+    void testTaskPostQueriesAreBounded() throws Exception {
+        createProject("QC_Task", 1);
+        int taskId = queryInt("SELECT MIN(id) FROM tasks WHERE title LIKE 'QC_Task_%'");
+
+        queries.count(() -> mockMvc.perform(post("/task/" + taskId + "/assignments/updateStatusAndPriority")
+                        .param("priorityId", "1")
+                        .param("statusId", "1")
+                        .with(user(principal("supervisor", "Supervisor")))
+                        .with(csrf()))
+                .andExpect(status().isOk())).assertAtMost(5, "POST /task/{id}/assignments/updateStatusAndPriority");
+    }
+
+    /**
+     * Creates a project supervised by the seeded supervisor, with the given work packages of three
+     * tasks each, all visible to and assigned to the seeded researcher.
+     *
+     * @return the project id.
+     */
+    private int createProject(String title, int workPackages) throws SQLException {
+        execute("""
+            INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
+            VALUES ('%s', 'Query count project', (SELECT id FROM users WHERE email = 'admin'), (SELECT id FROM users WHERE email = 'supervisor'))
+        """.formatted(title));
+        int projectId = queryInt("SELECT id FROM projects WHERE title = '" + title + "'");
+        execute("""
+            INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+            SELECT %d, '%s_WP_' || X, 'Query count work package', DATE '2025-01-01', DATE '2025-12-31'
+            FROM SYSTEM_RANGE(1, %d)
+        """.formatted(projectId, title, workPackages));
+        execute("""
+            INSERT INTO tasks (work_package_id, title, description, effort_hours, duration_hours, deadline, priority_id, status_id)
+            SELECT wp.id, wp.title || '_T_' || r.X, 'Query count task', 10, 10, DATE '2025-12-31', 1, 1
+            FROM work_packages wp, SYSTEM_RANGE(1, 3) r
+            WHERE wp.project_id = %d
+        """.formatted(projectId));
+        execute("""
+            INSERT INTO project_visibility (project_id, user_id)
+            SELECT %d, id FROM users WHERE email = 'researcher'
+        """.formatted(projectId));
+        execute("""
+            INSERT INTO task_assignments (task_id, user_id, effort_hypothetic, effort_consumed)
+            SELECT t.id, u.id, 10, 0
+            FROM tasks t INNER JOIN work_packages wp ON wp.id = t.work_package_id, users u
+            WHERE wp.project_id = %d AND u.email = 'researcher'
+        """.formatted(projectId));
+        return projectId;
+    }
+
+    /**
+     * Builds the principal created at login for one of the seeded users.
+     */
+    private UserPrincipal principal(String email, String role) throws SQLException {
+        int userId = queryInt("SELECT id FROM users WHERE email = '" + email + "'");
+        return new UserPrincipal(new User(userId, email, role, 1), "{noop}" + email,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import it.univr.wbsmanagement.models.TaskRef;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the task-availability query on a synthetic dataset: a researcher who sees 10 projects
+ * of 20 work packages each, with one assigned task per work package, plus one assigned task in
+ * a project the researcher cannot see.
+ *
+ * <p>The previous query joined work packages and assignments to the visible projects without
+ * tying them to the task, so it returned projects x work packages x assignments rows.</p>
+ */
+public class AvailabilityQueryTest {
+
+    private static final int PROJECTS = 10;
+    private static final int WORK_PACKAGES_PER_PROJECT = 20;
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 6);
+
+    private static int researcherId;
+
+    /**
+     * Creates an in-memory database with the migrated schema and the synthetic dataset.
+     */
+    @BeforeAll
+    static void setUp() throws Exception {
+        DatabaseManager.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:availability-query;DB_CLOSE_DELAY=-1", "sa", ""));
+        DatabaseManager.setupDatabase();
+
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM users WHERE email = 'researcher'")) {
+                rs.next();
+                researcherId = rs.getInt(1);
+            }
+
+            stmt.execute("""
+                INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
+                SELECT 'Bench_' || X, 'Synthetic project', 1, 1 FROM SYSTEM_RANGE(0, %d)
+            """.formatted(PROJECTS));
+            stmt.execute("""
+                INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+                SELECT p.id, p.title || '_WP_' || r.X, 'Synthetic work package', DATE '2025-01-01', DATE '2025-12-31'
+                FROM projects p, SYSTEM_RANGE(1, %d) r
+                WHERE p.title LIKE 'Bench_%%'
+                  AND (p.title <> 'Bench_0' OR r.X = 1)
+            """.formatted(WORK_PACKAGES_PER_PROJECT));
+            stmt.execute("""
+                INSERT INTO tasks (work_package_id, title, description, effort_hours, duration_hours, deadline, priority_id, status_id)
+                SELECT wp.id, wp.title || '_T', 'Synthetic task', 10, 10, DATE '2025-12-31', 1, 1
+                FROM work_packages wp
+                WHERE wp.title LIKE 'Bench_%'
+            """);
+            stmt.execute("""
+                INSERT INTO task_assignments (task_id, user_id, effort_hypothetic, effort_consumed)
+                SELECT t.id, %d, 10, 0 FROM tasks t WHERE t.title LIKE 'Bench_%%'
+            """.formatted(researcherId));
+            // Bench_0 is not visible to the researcher
+            stmt.execute("""
+                INSERT INTO project_visibility (project_id, user_id)
+                SELECT p.id, %d FROM projects p WHERE p.title LIKE 'Bench_%%' AND p.title <> 'Bench_0'
+            """.formatted(researcherId));
+        }
+    }
+
+    /**
+     * One task per assigned task of the visible projects, not one per work package of every
+     * visible project, and none of the projects the user cannot see. The latency against the
+     * previous query is measured by AvailabilityQueryBenchmark (src/jmh).
+     */
+    @Test
+    void testAvailableTasksOfVisibleProjects() {
+        int assignedVisible = PROJECTS * WORK_PACKAGES_PER_PROJECT;
+
+        List<TaskRef> tasks = DatabaseManager.getRetrieveTimeEntriesAvaibilityByUserAndDay(researcherId, DAY);
+
+        assertEquals(assignedVisible, tasks.size());
+        assertEquals(assignedVisible, tasks.stream().map(TaskRef::id).distinct().count());
+        int hiddenTaskId = DatabaseManager.getTaskIdFromName("Bench_0_WP_1_T");
+        assertTrue(hiddenTaskId > 0);
+        assertFalse(tasks.stream().anyMatch(task -> task.id() == hiddenTaskId),
+                "tasks of projects not visible to the user must not be available");
+    }
+}
@@ -0,0 +1,617 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Fills a migrated database with a synthetic dataset of configurable size, for benchmarks and
+ * load tests.
+ *
+ * <p>The dataset has supervisors and researchers, projects (some archived) with a team of
+ * researchers who can see them, work packages and tasks with dependencies inside each work
+ * package, milestones, task assignments and a time entry history: every researcher charges
+ * hours on working days to the assigned tasks whose work package is open on that day, with a
+ * few days of time off. The effort consumed of every assignment is the sum of its entries, as
+ * if they had been inserted through {@link DatabaseManager#addTimeEntry}.</p>
+ *
+ * <p>Every row is derived from {@link Config#seed()}, so the same configuration always produces
+ * the same dataset. Rows are written parents before children, so all the foreign keys hold,
+ * with multi-row INSERT statements committed every {@link #ROWS_PER_COMMIT} rows: H2 spends far
+ * less per row than with single-row batches or one transaction holding the whole dataset. The
+ * generated users log in with their email as password, like the seeded test users.</p>
+ *
+ * <p>It can also be run on its own: {@code DatasetGenerator <jdbc-url> [small|large] [seed]},
+ * or {@code ./gradlew generateDataset -Pjdbc=<jdbc-url>}.</p>
+ */
+public final class DatasetGenerator {
+
+    /**
+     * Prefix of the generated user emails, also used to detect an already generated dataset.
+     */
+    public static final String EMAIL_PREFIX = "gen.";
+    public static final String EMAIL_DOMAIN = "@wbs.test";
+
+    private static final int ROWS_PER_STATEMENT = 100;
+    private static final int ROWS_PER_COMMIT = 5000;
+
+    private static final String queryRoleIdByName = "SELECT id FROM roles WHERE role_name = ?";
+    private static final String queryAdminId = "SELECT id FROM users WHERE email = 'admin'";
+    private static final String queryTimeOffTaskId = "SELECT id FROM tasks WHERE title = 'Generic_not_work'";
+    private static final String queryPriorityIds = "SELECT id FROM priority ORDER BY id";
+    private static final String queryStatusIds = "SELECT id FROM status ORDER BY id";
+    private static final String countGeneratedUsers = "SELECT COUNT(*) FROM users WHERE email LIKE '" + EMAIL_PREFIX + "%'";
+
+    // multi-row inserts: the "(?, ...)" row placeholders are appended by Batch
+    private static final String insertUsers = "INSERT INTO users (email, password, role_id, privacy_accepted, working_hours_weekly) VALUES ";
+    private static final String insertProjects = "INSERT INTO projects (title, description, created_by_admin_id, supervisor_id, created_at, archived) VALUES ";
+    private static final String insertProjectVisibility = "INSERT INTO project_visibility (project_id, user_id) VALUES ";
+    private static final String insertWorkPackages = "INSERT INTO work_packages (project_id, title, description, start_date, end_date) VALUES ";
+    private static final String insertTasks = "INSERT INTO tasks (work_package_id, title, description, effort_hours, duration_hours, deadline, priority_id, status_id) VALUES ";
+    private static final String insertDependencies = "INSERT INTO dependencies (task_id_blocked, task_id_required) VALUES ";
+    private static final String insertMilestones = "INSERT INTO milestones (project_id, title, description) VALUES ";
+    private static final String insertMilestoneAssignments = "INSERT INTO milestone_assignments (milestone_id, task_id) VALUES ";
+    private static final String insertTimeEntries = "INSERT INTO time_entries (user_id, task_id, entry_date, hours) VALUES ";
+    private static final String insertTaskAssignments = "INSERT INTO task_assignments (task_id, user_id, effort_hypothetic, effort_consumed) VALUES ";
+
+    /**
+     * Size and shape of the dataset.
+     *
+     * @param seed                   the seed every row is derived from.
+     * @param supervisors            number of supervisors.
+     * @param researchers            number of researchers.
+     * @param projects               number of projects, one in ten archived.
+     * @param workPackagesPerProject work packages of each project.
+     * @param tasksPerWorkPackage    tasks of each work package.
+     * @param teamSize               researchers who can see each project.
+     * @param researchersPerTask     researchers assigned to each task, taken from the project team.
+     * @param milestonesPerProject   milestones of each project.
+     * @param firstDay               first day of the time entry history.
+     * @param days                   length in days of the time entry history.
+     */
+    public record Config(long seed, int supervisors, int researchers, int projects,
+                         int workPackagesPerProject, int tasksPerWorkPackage, int teamSize,
+                         int researchersPerTask, int milestonesPerProject, LocalDate firstDay, int days) {
+
+        public Config {
+            if (supervisors < 1 || researchers < 1 || projects < 1 || workPackagesPerProject < 1
+                    || tasksPerWorkPackage < 1 || milestonesPerProject < 1 || days < 1) {
+                throw new IllegalArgumentException("every count of the dataset must be positive");
+            }
+            if (teamSize < 1 || teamSize > researchers || researchersPerTask < 1 || researchersPerTask > teamSize) {
+                throw new IllegalArgumentException("expected 1 <= researchersPerTask <= teamSize <= researchers");
+            }
+        }
+
+        /**
+         * About 10 000 tasks and 100 000 time entries, for benchmarks and tests.
+         */
+        public static Config small(long seed) {
+            return new Config(seed, 10, 200, 50, 10, 20, 20, 2, 3, LocalDate.of(2024, 1, 1), 365);
+        }
+
+        /**
+         * Thousands of users, hundreds of projects and two years of time entries, for load tests.
+         */
+        public static Config large(long seed) {
+            return new Config(seed, 50, 2000, 300, 12, 25, 40, 2, 4, LocalDate.of(2023, 1, 1), 730);
+        }
+    }
+
+    /**
+     * Rows written to each table.
+     */
+    public record Summary(int users, int projects, int projectVisibility, int workPackages, int tasks,
+                          int dependencies, int milestones, int milestoneAssignments, int taskAssignments,
+                          int timeEntries, long elapsedMillis) {
+
+        @Override
+        public String toString() {
+            return String.format("%d users, %d projects (%d visibility rows), %d work packages, %d tasks, "
+                            + "%d dependencies, %d milestones (%d assignments), %d task assignments, "
+                            + "%d time entries in %d ms",
+                    users, projects, projectVisibility, workPackages, tasks, dependencies, milestones,
+                    milestoneAssignments, taskAssignments, timeEntries, elapsedMillis);
+        }
+    }
+
+    private final Config config;
+    private final SplittableRandom random;
+    private final Connection conn;
+
+    // generated ids, by position
+    private int[] supervisorIds;
+    private int[] researcherIds;
+    private int[] projectIds;
+    private int[] workPackageIds;
+    private int[] taskIds;
+
+    // researcher positions of the team of project p, from p * teamSize
+    private int[] teams;
+
+    // day offsets (from firstDay) of the work package of every task
+    private int[] taskStart;
+    private int[] taskEnd;
+
+    // assignments: task position and effort, grouped by researcher position
+    private int[] assignmentTask;
+    private int[] assignmentHypothetic;
+    private int[] assignmentConsumed;
+    private int[] researcherAssignmentStart;
+
+    private int projectVisibilityRows;
+    private int dependencyRows;
+    private int milestoneRows;
+    private int milestoneAssignmentRows;
+    private int timeEntryRows;
+    private int uncommittedRows;
+
+    private DatasetGenerator(Connection conn, Config config) {
+        this.conn = conn;
+        this.config = config;
+        this.random = new SplittableRandom(config.seed());
+    }
+
+    /**
+     * Generates the dataset on a database already migrated by {@link SchemaMigrator}.
+     * The rows are committed as they are written: if a statement fails, the rows written before
+     * it are kept, so the dataset should be generated again in a new database.
+     *
+     * @param conn   the connection to write through.
+     * @param config the size and seed of the dataset.
+     * @return the rows written.
+     * @throws SQLException if a statement fails.
+     * @throws IllegalStateException if the database already contains a generated dataset.
+     */
+    public static Summary generate(Connection conn, Config config) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try {
+            DatasetGenerator generator = new DatasetGenerator(conn, config);
+            generator.checkEmpty();
+            generator.insertUsers();
+            generator.insertProjects();
+            generator.insertWorkPackagesAndTasks();
+            generator.insertMilestones();
+            generator.chooseAssignments();
+            generator.insertTimeEntries();
+            generator.insertAssignments();
+            conn.commit();
+
+            return new Summary(config.supervisors() + config.researchers(), generator.projectIds.length,
+                    generator.projectVisibilityRows, generator.workPackageIds.length, generator.taskIds.length,
+                    generator.dependencyRows, generator.milestoneRows, generator.milestoneAssignmentRows,
+                    generator.assignmentTask.length, generator.timeEntryRows, System.currentTimeMillis() - start);
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Generates a dataset from the command line: {@code <jdbc-url> [small|large] [seed]}.
+     * The database is created and migrated if needed.
+     */
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 1) {
+            System.err.println("Usage: DatasetGenerator <jdbc-url> [small|large] [seed]");
+            System.exit(1);
+        }
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 42L;
+        Config config = (args.length > 1 && args[1].equals("large")) ? Config.large(seed) : Config.small(seed);
+
+        try (Connection conn = DriverManager.getConnection(args[0], "sa", "")) {
+            SchemaMigrator.migrate(conn, SchemaMigrations.ALL);
+            System.out.println("Generated " + generate(conn, config));
+        }
+    }
+
+    /**
+     * @param position the position of a generated researcher, from 0.
+     * @return the email (and password) of that researcher.
+     */
+    public static String researcherEmail(int position) {
+        return EMAIL_PREFIX + "researcher" + position + EMAIL_DOMAIN;
+    }
+
+    /**
+     * @param position the position of a generated supervisor, from 0.
+     * @return the email (and password) of that supervisor.
+     */
+    public static String supervisorEmail(int position) {
+        return EMAIL_PREFIX + "supervisor" + position + EMAIL_DOMAIN;
+    }
+
+    private void checkEmpty() throws SQLException {
+        if (queryInt(countGeneratedUsers) > 0) {
+            throw new IllegalStateException("The database already contains a generated dataset");
+        }
+    }
+
+    private void insertUsers() throws SQLException {
+        int supervisorRole = queryInt(queryRoleIdByName, ReferenceData.ROLE_SUPERVISOR);
+        int researcherRole = queryInt(queryRoleIdByName, ReferenceData.ROLE_RESEARCHER);
+
+        try (Batch batch = new Batch(insertUsers, 5, true)) {
+            for (int i = 0; i < config.supervisors(); i++) {
+                batch.row(supervisorEmail(i), supervisorEmail(i), supervisorRole, true, 0);
+            }
+            supervisorIds = batch.finish();
+        }
+
+        try (Batch batch = new Batch(insertUsers, 5, true)) {
+            for (int i = 0; i < config.researchers(); i++) {
+                batch.row(researcherEmail(i), researcherEmail(i), researcherRole, true, (random.nextInt(4) == 0) ? 20 : 40);
+            }
+            researcherIds = batch.finish();
+        }
+    }
+
+    /**
+     * Inserts the projects and makes each one visible to a random team of researchers.
+     */
+    private void insertProjects() throws SQLException {
+        int adminId = queryInt(queryAdminId);
+        int projects = config.projects();
+
+        try (Batch batch = new Batch(insertProjects, 6, true)) {
+            for (int p = 0; p < projects; p++) {
+                batch.row("Gen_Project_" + p, "Generated project " + p, adminId,
+                        supervisorIds[random.nextInt(supervisorIds.length)], config.firstDay(), p % 10 == 9);
+            }
+            projectIds = batch.finish();
+        }
+
+        int teamSize = config.teamSize();
+        teams = new int[projects * teamSize];
+        int[] shuffled = new int[config.researchers()];
+        for (int r = 0; r < shuffled.length; r++) {
+            shuffled[r] = r;
+        }
+
+        try (Batch batch = new Batch(insertProjectVisibility, 2, false)) {
+            for (int p = 0; p < projects; p++) {
+                // partial Fisher-Yates: the first teamSize positions become a random team
+                for (int i = 0; i < teamSize; i++) {
+                    int j = i + random.nextInt(shuffled.length - i);
+                    int swap = shuffled[i];
+                    shuffled[i] = shuffled[j];
+                    shuffled[j] = swap;
+
+                    teams[p * teamSize + i] = shuffled[i];
+                    batch.row(projectIds[p], researcherIds[shuffled[i]]);
+                    projectVisibilityRows++;
+                }
+            }
+            batch.finish();
+        }
+    }
+
+    /**
+     * Inserts the work packages, their tasks and a chain of dependencies inside each work package.
+     */
+    private void insertWorkPackagesAndTasks() throws SQLException {
+        int workPackages = config.projects() * config.workPackagesPerProject();
+        int tasks = workPackages * config.tasksPerWorkPackage();
+        int[] wpStart = new int[workPackages];
+        int[] wpEnd = new int[workPackages];
+
+        try (Batch batch = new Batch(insertWorkPackages, 5, true)) {
+            for (int w = 0; w < workPackages; w++) {
+                int project = w / config.workPackagesPerProject();
+                int days = config.days();
+                wpStart[w] = random.nextInt(Math.max(1, days / 2));
+                wpEnd[w] = Math.min(days - 1, wpStart[w] + 30 + random.nextInt(Math.max(1, days / 2)));
+
+                batch.row(projectIds[project], "Gen_WP_" + project + "_" + (w % config.workPackagesPerProject()),
+                        "Generated work package", config.firstDay().plusDays(wpStart[w]), config.firstDay().plusDays(wpEnd[w]));
+            }
+            workPackageIds = batch.finish();
+        }
+
+        int[] priorities = queryIds(queryPriorityIds);
+        int[] statuses = queryIds(queryStatusIds);
+        taskStart = new int[tasks];
+        taskEnd = new int[tasks];
+
+        try (Batch batch = new Batch(insertTasks, 8, true)) {
+            for (int t = 0; t < tasks; t++) {
+                int w = t / config.tasksPerWorkPackage();
+                taskStart[t] = wpStart[w];
+                taskEnd[t] = wpEnd[w];
+                int effort = 8 * (1 + random.nextInt(25));
+
+                batch.row(workPackageIds[w], "Gen_Task_" + w + "_" + (t % config.tasksPerWorkPackage()), "Generated task",
+                        effort, effort, config.firstDay().plusDays(wpEnd[w]),
+                        priorities[random.nextInt(priorities.length)], statuses[random.nextInt(statuses.length)]);
+            }
+            taskIds = batch.finish();
+        }
+
+        try (Batch batch = new Batch(insertDependencies, 2, false)) {
+            for (int t = 0; t < tasks; t++) {
+                int index = t % config.tasksPerWorkPackage();
+                // each task may wait for one of the (up to) three tasks before it: the graph stays acyclic
+                if (index > 0 && random.nextInt(3) == 0) {
+                    batch.row(taskIds[t], taskIds[t - 1 - random.nextInt(Math.min(index, 3))]);
+                    dependencyRows++;
+                }
+            }
+            batch.finish();
+        }
+    }
+
+    /**
+     * Inserts the milestones of every project; each one is reached by the last task of some of
+     * its work packages.
+     */
+    private void insertMilestones() throws SQLException {
+        int perProject = config.milestonesPerProject();
+        int[] milestoneIds;
+
+        try (Batch batch = new Batch(insertMilestones, 3, true)) {
+            for (int p = 0; p < config.projects(); p++) {
+                for (int m = 0; m < perProject; m++) {
+                    batch.row(projectIds[p], "Gen_Milestone_" + p + "_" + m, "Generated milestone");
+                }
+            }
+            milestoneIds = batch.finish();
+            milestoneRows = milestoneIds.length;
+        }
+
+        try (Batch batch = new Batch(insertMilestoneAssignments, 2, false)) {
+            for (int w = 0; w < workPackageIds.length; w++) {
+                int project = w / config.workPackagesPerProject();
+                int milestone = project * perProject + (w % config.workPackagesPerProject()) % perProject;
+                batch.row(milestoneIds[milestone], taskIds[(w + 1) * config.tasksPerWorkPackage() - 1]);
+                milestoneAssignmentRows++;
+            }
+            batch.finish();
+        }
+    }
+
+    /**
+     * Assigns every task to researchersPerTask members of the project team. The assignments are
+     * only kept in memory here: they are inserted after the time entries, with their effort consumed.
+     */
+    private void chooseAssignments() {
+        int tasksPerProject = config.workPackagesPerProject() * config.tasksPerWorkPackage();
+        int teamSize = config.teamSize();
+        int perTask = config.researchersPerTask();
+        int count = taskIds.length * perTask;
+
+        int[] taskOf = new int[count];
+        int[] researcherOf = new int[count];
+        int[] team = new int[teamSize];
+        for (int t = 0, a = 0; t < taskIds.length; t++) {
+            int project = t / tasksPerProject;
+            System.arraycopy(teams, project * teamSize, team, 0, teamSize);
+            for (int i = 0; i < perTask; i++, a++) {
+                int j = i + random.nextInt(teamSize - i);
+                int swap = team[i];
+                team[i] = team[j];
+                team[j] = swap;
+                taskOf[a] = t;
+                researcherOf[a] = team[i];
+            }
+        }
+
+        // counting sort by researcher, so the time entries can walk the assignments of each researcher
+        researcherAssignmentStart = new int[researcherIds.length + 1];
+        for (int a = 0; a < count; a++) {
+            researcherAssignmentStart[researcherOf[a] + 1]++;
+        }
+        for (int r = 0; r < researcherIds.length; r++) {
+            researcherAssignmentStart[r + 1] += researcherAssignmentStart[r];
+        }
+        int[] next = researcherAssignmentStart.clone();
+        assignmentTask = new int[count];
+        assignmentHypothetic = new int[count];
+        assignmentConsumed = new int[count];
+        for (int a = 0; a < count; a++) {
+            int position = next[researcherOf[a]]++;
+            assignmentTask[position] = taskOf[a];
+            assignmentHypothetic[position] = 4 * (1 + random.nextInt(50));
+        }
+    }
+
+    /**
+     * Inserts the time entries of every researcher: on working days one to three of the assigned
+     * tasks open on that day, with a day of time off now and then.
+     */
+    private void insertTimeEntries() throws SQLException {
+        int timeOffTaskId = queryInt(queryTimeOffTaskId);
+        int[] open = new int[64];
+
+        try (Batch batch = new Batch(insertTimeEntries, 4, false)) {
+            for (int r = 0; r < researcherIds.length; r++) {
+                int from = researcherAssignmentStart[r];
+                int to = researcherAssignmentStart[r + 1];
+                if (to - from > open.length) {
+                    open = new int[to - from];
+                }
+
+                for (int d = 0; d < config.days(); d++) {
+                    LocalDate day = config.firstDay().plusDays(d);
+                    if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                        continue;
+                    }
+                    if (random.nextInt(40) == 0) {
+                        batch.row(researcherIds[r], timeOffTaskId, day, 8.0);
+                        timeEntryRows++;
+                        continue;
+                    }
+
+                    int openCount = 0;
+                    for (int a = from; a < to; a++) {
+                        int task = assignmentTask[a];
+                        if (taskStart[task] <= d && d <= taskEnd[task]) {
+                            open[openCount++] = a;
+                        }
+                    }
+                    if (openCount == 0) {
+                        continue;
+                    }
+
+                    // consecutive open assignments from a random one: distinct tasks, as the primary key requires
+                    int entries = Math.min(openCount, 1 + random.nextInt(3));
+                    int first = random.nextInt(openCount);
+                    for (int e = 0; e < entries; e++) {
+                        int a = open[(first + e) % openCount];
+                        int tenths = 5 * (1 + random.nextInt(16 / entries));
+                        batch.row(researcherIds[r], taskIds[assignmentTask[a]], day, tenths / 10.0);
+                        timeEntryRows++;
+                        assignmentConsumed[a] += tenths / 10;
+                    }
+                }
+            }
+            batch.finish();
+        }
+    }
+
+    private void insertAssignments() throws SQLException {
+        try (Batch batch = new Batch(insertTaskAssignments, 4, false)) {
+            for (int r = 0; r < researcherIds.length; r++) {
+                for (int a = researcherAssignmentStart[r]; a < researcherAssignmentStart[r + 1]; a++) {
+                    batch.row(taskIds[assignmentTask[a]], researcherIds[r], assignmentHypothetic[a], assignmentConsumed[a]);
+                }
+            }
+            batch.finish();
+        }
+    }
+
+    private int queryInt(String sql, String... parameters) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setString(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("Seed data missing, is the database migrated? " + sql);
+                }
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private int[] queryIds(String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            List<Integer> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Buffers rows for one table and writes them {@link #ROWS_PER_STATEMENT} at a time with a
+     * multi-row INSERT, committing every {@link #ROWS_PER_COMMIT} rows. For tables with an
+     * AUTO_INCREMENT id the generated keys are collected in insertion order.
+     */
+    private final class Batch implements AutoCloseable {
+
+        private final String insertPrefix;
+        private final int columns;
+        private final boolean returnKeys;
+        private final Object[] values;
+        private int rows;
+
+        private PreparedStatement fullStatement;
+        private int[] keys = new int[0];
+        private int keyCount;
+
+        Batch(String insertPrefix, int columns, boolean returnKeys) {
+            this.insertPrefix = insertPrefix;
+            this.columns = columns;
+            this.returnKeys = returnKeys;
+            this.values = new Object[ROWS_PER_STATEMENT * columns];
+        }
+
+        void row(Object... row) throws SQLException {
+            System.arraycopy(row, 0, values, rows * columns, columns);
+            if (++rows == ROWS_PER_STATEMENT) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes the buffered rows.
+         *
+         * @return the generated keys of all the rows, for tables with an AUTO_INCREMENT id.
+         */
+        int[] finish() throws SQLException {
+            flush();
+            return Arrays.copyOf(keys, keyCount);
+        }
+
+        private void flush() throws SQLException {
+            if (rows == 0) {
+                return;
+            }
+            if (rows == ROWS_PER_STATEMENT) {
+                if (fullStatement == null) {
+                    fullStatement = prepare(rows);
+                }
+                execute(fullStatement);
+            } else {
+                try (PreparedStatement tailStatement = prepare(rows)) {
+                    execute(tailStatement);
+                }
+            }
+
+            uncommittedRows += rows;
+            rows = 0;
+            if (uncommittedRows >= ROWS_PER_COMMIT) {
+                conn.commit();
+                uncommittedRows = 0;
+            }
+        }
+
+        private PreparedStatement prepare(int rowCount) throws SQLException {
+            String placeholders = "(" + "?, ".repeat(columns - 1) + "?)";
+            String sql = insertPrefix + String.join(", ", Collections.nCopies(rowCount, placeholders));
+            return returnKeys ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(sql);
+        }
+
+        private void execute(PreparedStatement ps) throws SQLException {
+            for (int i = 0; i < rows * columns; i++) {
+                ps.setObject(i + 1, values[i]);
+            }
+            ps.executeUpdate();
+
+            if (returnKeys) {
+                if (keys.length < keyCount + rows) {
+                    keys = Arrays.copyOf(keys, Math.max(keyCount + rows, keys.length * 2));
+                }
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys[keyCount++] = rs.getInt(1);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (fullStatement != null) {
+                fullStatement.close();
+            }
+        }
+    }
+}
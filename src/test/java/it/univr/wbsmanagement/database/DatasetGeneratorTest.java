@@ -0,0 +1,144 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Generates small datasets in in-memory databases and checks that they are reproducible and
+ * consistent with the rules the application enforces when hours are entered.
+ */
+public class DatasetGeneratorTest {
+
+    private static final DatasetGenerator.Config CONFIG =
+            new DatasetGenerator.Config(7L, 2, 30, 6, 3, 4, 8, 2, 2, LocalDate.of(2024, 1, 1), 120);
+
+    /**
+     * The same seed gives the same rows, another seed gives different ones.
+     */
+    @Test
+    void testSameSeedSameDataset() throws Exception {
+        String first;
+        String second;
+        String otherSeed;
+        try (Connection conn = newDatabase("generator-a")) {
+            DatasetGenerator.Summary summary = DatasetGenerator.generate(conn, CONFIG);
+            System.out.println("Generated " + summary);
+            assertEquals(32, summary.users());
+            assertEquals(6 * 3 * 4, summary.tasks());
+            assertEquals(6 * 3 * 4 * 2, summary.taskAssignments());
+            assertTrue(summary.timeEntries() > 0);
+            first = fingerprint(conn);
+        }
+        try (Connection conn = newDatabase("generator-b")) {
+            DatasetGenerator.generate(conn, CONFIG);
+            second = fingerprint(conn);
+        }
+        try (Connection conn = newDatabase("generator-c")) {
+            DatasetGenerator.generate(conn, new DatasetGenerator.Config(8L, 2, 30, 6, 3, 4, 8, 2, 2, LocalDate.of(2024, 1, 1), 120));
+            otherSeed = fingerprint(conn);
+        }
+
+        assertEquals(first, second);
+        assertNotEquals(first, otherSeed);
+    }
+
+    /**
+     * Entries fall on working days inside the work package of an assigned (or time-off) task,
+     * the projects are visible to the assignees, and the effort consumed of every assignment
+     * matches its entries.
+     */
+    @Test
+    void testDatasetIsConsistent() throws Exception {
+        try (Connection conn = newDatabase("generator-consistency")) {
+            DatasetGenerator.generate(conn, CONFIG);
+
+            assertEquals(0, count(conn, """
+                SELECT COUNT(*) FROM time_entries te
+                WHERE ISO_DAY_OF_WEEK(te.entry_date) > 5
+            """));
+            assertEquals(0, count(conn, """
+                SELECT COUNT(*) FROM time_entries te
+                INNER JOIN tasks t ON t.id = te.task_id
+                INNER JOIN work_packages wp ON wp.id = t.work_package_id
+                WHERE te.entry_date NOT BETWEEN wp.start_date AND wp.end_date
+            """));
+            assertEquals(0, count(conn, """
+                SELECT COUNT(*) FROM time_entries te
+                INNER JOIN tasks t ON t.id = te.task_id
+                WHERE t.title <> 'Generic_not_work'
+                  AND NOT EXISTS (SELECT 1 FROM task_assignments ta WHERE ta.task_id = te.task_id AND ta.user_id = te.user_id)
+            """));
+            assertEquals(0, count(conn, """
+                SELECT COUNT(*) FROM task_assignments ta
+                INNER JOIN tasks t ON t.id = ta.task_id
+                INNER JOIN work_packages wp ON wp.id = t.work_package_id
+                WHERE NOT EXISTS (SELECT 1 FROM project_visibility pv WHERE pv.project_id = wp.project_id AND pv.user_id = ta.user_id)
+            """));
+            assertEquals(0, count(conn, """
+                SELECT COUNT(*) FROM task_assignments ta
+                WHERE ta.effort_consumed <> COALESCE((SELECT SUM(CAST(FLOOR(te.hours) AS INT)) FROM time_entries te
+                                                      WHERE te.task_id = ta.task_id AND te.user_id = ta.user_id), 0)
+            """));
+            assertEquals(0, count(conn, """
+                SELECT COUNT(*) FROM (SELECT user_id, entry_date FROM time_entries GROUP BY user_id, entry_date HAVING SUM(hours) > 8)
+            """));
+        }
+    }
+
+    /**
+     * A second run on the same database is refused instead of failing on the unique emails.
+     */
+    @Test
+    void testGenerateTwiceIsRefused() throws Exception {
+        try (Connection conn = newDatabase("generator-twice")) {
+            DatasetGenerator.generate(conn, CONFIG);
+            assertThrows(IllegalStateException.class, () -> DatasetGenerator.generate(conn, CONFIG));
+        }
+    }
+
+    private static Connection newDatabase(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + name, "sa", "");
+        SchemaMigrator.migrate(conn, SchemaMigrations.ALL);
+        return conn;
+    }
+
+    private static int count(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Aggregates of the generated tables; the ids match across fresh databases.
+     */
+    private static String fingerprint(Connection conn) throws SQLException {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String sql : new String[] {
+                "SELECT COUNT(*), SUM(user_id * 31 + task_id), SUM(hours), SUM(DATEDIFF(DAY, DATE '2000-01-01', entry_date)) FROM time_entries",
+                "SELECT COUNT(*), SUM(task_id * 31 + user_id), SUM(effort_hypothetic), SUM(effort_consumed) FROM task_assignments",
+                "SELECT COUNT(*), SUM(task_id_blocked * 31 + task_id_required), 0, 0 FROM dependencies",
+                "SELECT COUNT(*), SUM(project_id * 31 + user_id), 0, 0 FROM project_visibility",
+                "SELECT COUNT(*), SUM(priority_id * 31 + status_id), SUM(effort_hours), 0 FROM tasks"}) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                rs.next();
+                fingerprint.append(rs.getString(1)).append('/').append(rs.getString(2)).append('/')
+                        .append(rs.getString(3)).append('/').append(rs.getString(4)).append(';');
+            }
+        }
+        return fingerprint.toString();
+    }
+}
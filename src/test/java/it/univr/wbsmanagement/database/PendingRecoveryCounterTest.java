@@ -0,0 +1,110 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link PendingRecoveryCounter} follows the requests opened and closed by
+ * DatabaseManager, and falls back to the table when the count is not loaded, on an in-memory
+ * database with the migrated schema.
+ */
+public class PendingRecoveryCounterTest {
+
+    private static final DataSource database =
+            new DriverManagerDataSource("jdbc:h2:mem:pending-recovery;DB_CLOSE_DELAY=-1", "sa", "");
+
+    /**
+     * A data source without a driver: every query on it fails.
+     */
+    private static final DataSource unavailable = new DriverManagerDataSource("jdbc:unavailable:pending-recovery");
+
+    @BeforeEach
+    void setUp() {
+        DatabaseManager.setDataSource(database);
+        DatabaseManager.setupDatabase();
+        for (String[] request : DatabaseManager.getRecoveryCredentialsRequestsActive()) {
+            DatabaseManager.updateRecoverCredentialsRequests(request[0]);
+        }
+        PendingRecoveryCounter.resync();
+    }
+
+    /**
+     * Opened and closed requests are counted in memory, and the count never goes below 0.
+     */
+    @Test
+    void testIncrementAndDecrement() {
+        assertEquals(0, PendingRecoveryCounter.get());
+
+        DatabaseManager.addRecoverCredentialsRequests("first@test.it");
+        DatabaseManager.addRecoverCredentialsRequests("second@test.it");
+        DatabaseManager.addRecoverCredentialsRequests("second@test.it"); // already active: not counted
+        assertEquals(2, PendingRecoveryCounter.get());
+
+        DatabaseManager.updateRecoverCredentialsRequests("first@test.it");
+        assertEquals(1, PendingRecoveryCounter.get());
+
+        PendingRecoveryCounter.decrement(5);
+        assertEquals(0, PendingRecoveryCounter.get());
+    }
+
+    /**
+     * While the count is not loaded, changes are not applied to it and the next read loads it
+     * from the table.
+     */
+    @Test
+    void testNotLoadedFallsBackToTable() {
+        DatabaseManager.addRecoverCredentialsRequests("first@test.it");
+
+        DatabaseManager.setDataSource(unavailable);
+        assertEquals(-1, PendingRecoveryCounter.resync());
+        PendingRecoveryCounter.increment();
+        PendingRecoveryCounter.decrement(1);
+        assertEquals(-1, PendingRecoveryCounter.get());
+
+        DatabaseManager.setDataSource(database);
+        long misses = PendingRecoveryCounter.getMisses();
+        assertEquals(1, PendingRecoveryCounter.get());
+        assertEquals(misses + 1, PendingRecoveryCounter.getMisses());
+    }
+
+    /**
+     * A resync picks up the requests changed outside the application.
+     */
+    @Test
+    void testResync() throws Exception {
+        DatabaseManager.addRecoverCredentialsRequests("first@test.it");
+        try (Connection conn = database.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO recover_credentials_requests (email) VALUES ('outside@test.it')");
+        }
+        assertEquals(1, PendingRecoveryCounter.get());
+
+        assertEquals(2, PendingRecoveryCounter.resync());
+        assertEquals(2, PendingRecoveryCounter.get());
+    }
+
+    /**
+     * The reads are exposed as hit and miss counters, with the hit rate.
+     */
+    @Test
+    void testMetersBound() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PendingRecoveryCounter.bindTo(registry);
+
+        PendingRecoveryCounter.get();
+
+        assertEquals(PendingRecoveryCounter.getHits(),
+                registry.get("wbs.recovery-counter.reads").tag("result", "hit").functionCounter().count());
+        assertEquals(PendingRecoveryCounter.getMisses(),
+                registry.get("wbs.recovery-counter.reads").tag("result", "miss").functionCounter().count());
+        assertEquals(PendingRecoveryCounter.getHitRate(), registry.get("wbs.recovery-counter.hit-rate").gauge().value());
+    }
+}
@@ -0,0 +1,111 @@
+package it.univr.wbsmanagement.database;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Counts the statements DatabaseManager executes while a request is served, so tests can bound
+ * the queries of a page and catch N+1 regressions.
+ *
+ * <p>The statements are counted from the {@code wbs.db.query} timers of {@link QueryMetrics},
+ * which a counter redirects to its own registry until it is closed. Counts are global, so the
+ * requests must be issued one at a time: it works the same with MockMvc and with the embedded
+ * server.</p>
+ *
+ * <pre>{@code
+ * try (QueryCounter queries = QueryCounter.install()) {
+ *     queries.count(() -> mockMvc.perform(get("/project/5"))).assertAtMost(1, "GET /project/{id}");
+ * }
+ * }</pre>
+ */
+public final class QueryCounter implements AutoCloseable {
+
+    private final MeterRegistry previous;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private QueryCounter() {
+        previous = QueryMetrics.getRegistry();
+        QueryMetrics.bindTo(registry);
+    }
+
+    /**
+     * Starts counting the DatabaseManager statements.
+     *
+     * @return the counter; close it to give the meters back to the previous registry.
+     */
+    public static QueryCounter install() {
+        return new QueryCounter();
+    }
+
+    /**
+     * Runs the request and counts the statements executed meanwhile.
+     *
+     * @param request the request, for example a MockMvc perform.
+     * @return the statements executed, by method and query constant.
+     * @throws Exception if the request throws.
+     */
+    public Count count(Request request) throws Exception {
+        Map<String, Long> before = snapshot();
+        request.run();
+        Map<String, Long> executed = snapshot();
+        before.forEach((key, count) -> executed.computeIfPresent(key, (k, after) -> after - count));
+        executed.values().removeIf(count -> count == 0);
+        return new Count(executed);
+    }
+
+    @Override
+    public void close() {
+        QueryMetrics.bindTo(previous);
+    }
+
+    private Map<String, Long> snapshot() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Timer timer : registry.find("wbs.db.query").timers()) {
+            counts.merge(timer.getId().getTag("method") + " / " + timer.getId().getTag("query"), timer.count(), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * A request that may throw, like {@code MockMvc.perform}.
+     */
+    @FunctionalInterface
+    public interface Request {
+        void run() throws Exception;
+    }
+
+    /**
+     * Statements executed by one request.
+     *
+     * @param byQuery executions by "method / query constant".
+     */
+    public record Count(Map<String, Long> byQuery) {
+
+        /**
+         * @return the statements executed.
+         */
+        public long total() {
+            return byQuery.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        /**
+         * Fails the test, listing the statements, if more than {@code max} were executed.
+         *
+         * @param max         the most statements allowed.
+         * @param description the request, for the failure message.
+         * @return this count.
+         */
+        public Count assertAtMost(long max, String description) {
+            if (total() > max) {
+                fail(description + " executed " + total() + " statements, at most " + max + " expected: " + byQuery);
+            }
+            return this;
+        }
+    }
+}
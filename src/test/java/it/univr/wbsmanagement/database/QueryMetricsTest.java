@@ -0,0 +1,95 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the meters recorded by {@link QueryMetrics} for the DatabaseManager methods, on an
+ * in-memory database with the migrated schema.
+ */
+public class QueryMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeAll
+    static void setUpDatabase() {
+        DatabaseManager.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:query-metrics;DB_CLOSE_DELAY=-1", "sa", ""));
+        DatabaseManager.setupDatabase();
+    }
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        QueryMetrics.bindTo(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryMetrics.bindTo(Metrics.globalRegistry);
+    }
+
+    /**
+     * A query is timed under its method and query constant, with the rows read, even when the
+     * method does not close the result set itself.
+     */
+    @Test
+    void testQueryTaggedByMethodAndConstant() {
+        int taskId = DatabaseManager.getTaskIdFromName("Generic_not_work");
+
+        assertTrue(taskId > 0);
+        assertEquals(1, registry.get("wbs.db.connection.acquire").tag("method", "getTaskIdFromName").timer().count());
+        assertEquals(1, registry.get("wbs.db.query").tag("method", "getTaskIdFromName").tag("query", "queryTaskIdFromName").timer().count());
+        assertEquals(1.0, registry.get("wbs.db.rows").tag("method", "getTaskIdFromName").summary().totalAmount());
+    }
+
+    /**
+     * An update records the rows it wrote.
+     */
+    @Test
+    void testUpdateRowsRecorded() {
+        DatabaseManager.updateUserPassword("researcher", "researcher");
+
+        assertEquals(1.0, registry.get("wbs.db.rows").tag("method", "updateUserPassword")
+                .tag("query", "queryUsersUpdatePassword").summary().totalAmount());
+    }
+
+    /**
+     * An insert that reads back its generated key is measured like the cached statements.
+     */
+    @Test
+    void testGeneratedKeysInsertRecorded() {
+        assertTrue(DatabaseManager.addProject("Metrics project", "Generated key", 1, 1));
+
+        assertEquals(1, registry.get("wbs.db.query").tag("method", "addProject").tag("query", "insertProject").timer().count());
+        assertEquals(1.0, registry.get("wbs.db.rows").tag("method", "addProject").tag("query", "insertProject").summary().totalAmount());
+    }
+
+    /**
+     * A failing statement is counted as an error and still timed.
+     */
+    @Test
+    void testFailedQueryIsCounted() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = QueryMetrics.instrument(conn.prepareStatement("SELECT CAST(? AS INT)"), "SELECT CAST(? AS INT)")) {
+            ps.setString(1, "not a number");
+            assertThrows(SQLException.class, ps::executeQuery);
+        }
+
+        String method = "QueryMetricsTest.testFailedQueryIsCounted";
+        assertEquals(1.0, registry.get("wbs.db.errors").tag("method", method).tag("query", "other").counter().count());
+        assertEquals(1, registry.get("wbs.db.query").tag("method", method).timer().count());
+    }
+}
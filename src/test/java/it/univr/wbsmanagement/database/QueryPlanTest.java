@@ -0,0 +1,128 @@
+package it.univr.wbsmanagement.database;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks with EXPLAIN that the hot queries of DatabaseManager are served by an index.
+ * A query whose plan falls back to a table scan on a filtered table fails the build.
+ */
+public class QueryPlanTest {
+
+    /**
+     * Creates an in-memory database with the full migrated schema.
+     */
+    @BeforeAll
+    static void setUp() {
+        DatabaseManager.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:query-plan;DB_CLOSE_DELAY=-1", "sa", ""));
+        DatabaseManager.setupDatabase();
+    }
+
+    /**
+     * The user row is loaded on login and on most pages.
+     */
+    @Test
+    void testUserRowByEmailUsesIndex() throws Exception {
+        assertIndexed("queryUserRowByUserEmail");
+    }
+
+    /**
+     * Task lookup by title uses idx_tasks_title.
+     */
+    @Test
+    void testTaskIdFromNameUsesTitleIndex() throws Exception {
+        assertUsesIndex("queryTaskIdFromName", "IDX_TASKS_TITLE");
+    }
+
+    /**
+     * Project tree queries use the implicit foreign-key indexes.
+     */
+    @Test
+    void testProjectTreeQueriesUseIndexes() throws Exception {
+        assertIndexed("queryWorkPackagesByProject");
+        assertIndexed("queryTasksByWorkPackage");
+        assertIndexed("queryTasksByProjectId");
+        assertUsesIndex("queryMilestonesByProject", "IDX_MILESTONES_PROJECT");
+        assertIndexed("queryProjectTree");
+    }
+
+    /**
+     * Visibility and assignment queries, used by the project list and the tracking pages.
+     */
+    @Test
+    void testVisibilityAndAssignmentQueriesUseIndexes() throws Exception {
+        assertIndexed("queryProjectsVisibilityByUserId");
+        assertIndexed("queryTasksByUser");
+        assertIndexed("queryUsersAndAssignmentsHoursByTasks");
+        assertIndexed("queryRetrieveTimeEntriesAvaibilityByUserAndDay");
+        assertIndexed("queryTasksAvailableAndNonWorkingByUserAndDay");
+    }
+
+    /**
+     * Time entries of a user are range-scanned by (user_id, entry_date).
+     */
+    @Test
+    void testTimeEntriesRangeUsesUserDateIndex() throws Exception {
+        assertUsesIndex("queryRetrieveTimeEntriesByUserAndWeek", "IDX_TIME_ENTRIES_USER_DATE");
+        assertUsesIndex("queryTimeEntryWeeklyByUserId", "IDX_TIME_ENTRIES_USER_DATE");
+        assertUsesIndex("countTimeEntryHoursByDay", "IDX_TIME_ENTRIES_USER_DATE");
+        assertUsesIndex("queryTimeEntriesWithTitlesByUserAndDay", "IDX_TIME_ENTRIES_USER_DATE");
+        assertUsesIndex("queryTimeEntriesByUserAndRangeForUpdate", "IDX_TIME_ENTRIES_USER_DATE");
+    }
+
+    /**
+     * Recover-credentials requests are looked up by email and counted by state.
+     */
+    @Test
+    void testRecoverCredentialsQueriesUseIndexes() throws Exception {
+        assertUsesIndex("queryRecoverCredentialsRequestsActiveFromEmail", "IDX_RECOVER_REQUESTS_EMAIL");
+        assertUsesIndex("countRecoverCredentialsRequestsActive", "IDX_RECOVER_REQUESTS_EVADED");
+    }
+
+    /**
+     * Asserts that the plan of the given DatabaseManager query constant contains no table scan.
+     */
+    private static String assertIndexed(String queryConstant) throws Exception {
+        String plan = explain(queryConstant);
+        assertFalse(plan.contains(".tableScan"), queryConstant + " falls back to a table scan:\n" + plan);
+        return plan;
+    }
+
+    /**
+     * Asserts that the plan of the given DatabaseManager query constant uses the given index.
+     */
+    private static void assertUsesIndex(String queryConstant, String indexName) throws Exception {
+        String plan = assertIndexed(queryConstant);
+        assertTrue(plan.contains("PUBLIC." + indexName), queryConstant + " does not use " + indexName + ":\n" + plan);
+    }
+
+    /**
+     * Runs EXPLAIN on a private SQL constant of DatabaseManager, binding dummy parameters.
+     */
+    private static String explain(String queryConstant) throws Exception {
+        Field field = DatabaseManager.class.getDeclaredField(queryConstant);
+        field.setAccessible(true);
+        String sql = (String) field.get(null);
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+            int parameters = ps.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                ps.setObject(i, 1);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import it.univr.wbsmanagement.database.SchemaMigrator.Migration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which migrations {@link SchemaMigrator} applies and which catalogues it refuses, on a
+ * new in-memory database for every test.
+ */
+public class SchemaMigratorTest {
+
+    private static final Migration NOTES = new Migration(1, "notes", "CREATE TABLE notes (id INT PRIMARY KEY)");
+    private static final Migration NOTE_BODY = new Migration(2, "note body", "ALTER TABLE notes ADD COLUMN body VARCHAR(100)");
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp(TestInfo test) throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:migrator-" + test.getTestMethod().orElseThrow().getName() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    /**
+     * A new database gets every migration of the application, each one recorded with its checksum.
+     */
+    @Test
+    void testFreshDatabase() throws SQLException {
+        assertEquals(SchemaMigrations.ALL.size(), SchemaMigrator.migrate(conn, SchemaMigrations.ALL));
+
+        List<Long> checksums = new ArrayList<>();
+        for (Migration migration : SchemaMigrations.ALL) {
+            checksums.add(migration.checksum());
+        }
+        assertEquals(checksums, recordedChecksums());
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE email = 'researcher'"));
+    }
+
+    /**
+     * An up-to-date database is left as it is, and a newer catalogue only applies what is missing.
+     */
+    @Test
+    void testUpToDateAndPendingMigrations() throws SQLException {
+        assertEquals(1, SchemaMigrator.migrate(conn, List.of(NOTES)));
+        long installed = count("SELECT COUNT(*) FROM schema_version");
+
+        assertEquals(0, SchemaMigrator.migrate(conn, List.of(NOTES)));
+        assertEquals(installed, count("SELECT COUNT(*) FROM schema_version"));
+
+        assertEquals(1, SchemaMigrator.migrate(conn, List.of(NOTES, NOTE_BODY)));
+        assertEquals(List.of(NOTES.checksum(), NOTE_BODY.checksum()), recordedChecksums());
+        assertEquals(0, count("SELECT COUNT(body) FROM notes"));
+    }
+
+    /**
+     * A migration edited after it was applied stops the migration before anything is executed.
+     */
+    @Test
+    void testChecksumMismatch() throws SQLException {
+        SchemaMigrator.migrate(conn, List.of(NOTES));
+
+        Migration edited = new Migration(1, "notes", "CREATE TABLE notes (id BIGINT PRIMARY KEY)");
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> SchemaMigrator.migrate(conn, List.of(edited, NOTE_BODY)));
+        assertTrue(e.getMessage().contains("Checksum mismatch for schema migration 1"));
+        assertEquals(List.of(NOTES.checksum()), recordedChecksums());
+    }
+
+    /**
+     * A database migrated by a newer version of the application is refused.
+     */
+    @Test
+    void testUnknownVersion() throws SQLException {
+        SchemaMigrator.migrate(conn, List.of(NOTES, NOTE_BODY));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> SchemaMigrator.migrate(conn, List.of(NOTES)));
+        assertTrue(e.getMessage().contains("schema version 2 is unknown"));
+    }
+
+    /**
+     * A failing migration is not recorded, so it runs again on the next start.
+     */
+    @Test
+    void testFailedMigrationNotRecorded() throws SQLException {
+        Migration broken = new Migration(2, "broken", "ALTER TABLE missing ADD COLUMN body VARCHAR(100)");
+
+        assertThrows(SQLException.class, () -> SchemaMigrator.migrate(conn, List.of(NOTES, broken)));
+        assertEquals(List.of(NOTES.checksum()), recordedChecksums());
+    }
+
+    private List<Long> recordedChecksums() throws SQLException {
+        List<Long> checksums = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT checksum FROM schema_version ORDER BY version")) {
+            while (rs.next()) {
+                checksums.add(rs.getLong(1));
+            }
+        }
+        return checksums;
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
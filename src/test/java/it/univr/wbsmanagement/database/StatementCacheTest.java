@@ -0,0 +1,123 @@
+package it.univr.wbsmanagement.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the reuse, the bound and the cleanup of {@link StatementCache}, on plain connections to
+ * an in-memory database.
+ */
+public class StatementCacheTest {
+
+    private static final String URL = "jdbc:h2:mem:statement-cache;DB_CLOSE_DELAY=-1";
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = DriverManager.getConnection(URL, "sa", "");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    /**
+     * A closed statement is handed out again to the next caller, with its parameters cleared.
+     */
+    @Test
+    void testStatementReused() throws SQLException {
+        long hits = StatementCache.getHits();
+        PreparedStatement first = StatementCache.prepare(conn, "SELECT CAST(? AS INT)");
+        first.setInt(1, 7);
+        assertEquals(7, single(first));
+        first.close();
+
+        PreparedStatement second = StatementCache.prepare(conn, "SELECT CAST(? AS INT)");
+        assertSame(first, second);
+        assertEquals(hits + 1, StatementCache.getHits());
+        second.setInt(1, 8);
+        assertEquals(8, single(second));
+        second.close();
+    }
+
+    /**
+     * Beyond the bound the least recently used statement is closed and prepared again on its
+     * next use, while the recently used ones are still served from the cache.
+     */
+    @Test
+    void testLeastRecentlyUsedEvicted() throws SQLException {
+        for (int i = 0; i <= StatementCache.MAX_STATEMENTS_PER_CONNECTION; i++) {
+            StatementCache.prepare(conn, "SELECT " + i).close();
+        }
+
+        long hits = StatementCache.getHits();
+        long misses = StatementCache.getMisses();
+        StatementCache.prepare(conn, "SELECT " + StatementCache.MAX_STATEMENTS_PER_CONNECTION).close();
+        assertEquals(hits + 1, StatementCache.getHits());
+        StatementCache.prepare(conn, "SELECT 0").close();
+        assertEquals(misses + 1, StatementCache.getMisses());
+    }
+
+    /**
+     * The same query prepared again while its cached statement is in use gets a statement of
+     * its own, which does not disturb the outer one.
+     */
+    @Test
+    void testNestedUse() throws SQLException {
+        PreparedStatement outer = StatementCache.prepare(conn, "SELECT CAST(? AS INT)");
+        outer.setInt(1, 1);
+        try (ResultSet rs = outer.executeQuery()) {
+            assertTrue(rs.next());
+
+            PreparedStatement nested = StatementCache.prepare(conn, "SELECT CAST(? AS INT)");
+            assertNotSame(outer, nested);
+            nested.setInt(1, 2);
+            assertEquals(2, single(nested));
+            nested.close();
+            assertTrue(nested.isClosed());
+
+            assertEquals(1, rs.getInt(1));
+        }
+        outer.close();
+
+        assertSame(outer, StatementCache.prepare(conn, "SELECT CAST(? AS INT)"));
+    }
+
+    /**
+     * The statements of a closed connection are dropped when a new connection is cached.
+     */
+    @Test
+    void testClosedConnectionPurged() throws SQLException {
+        StatementCache.prepare(conn, "SELECT 1").close();
+        assertTrue(StatementCache.isCached(conn));
+        conn.close();
+
+        try (Connection other = DriverManager.getConnection(URL, "sa", "")) {
+            StatementCache.prepare(other, "SELECT 1").close();
+            assertTrue(StatementCache.isCached(other));
+            assertFalse(StatementCache.isCached(conn));
+        }
+    }
+
+    private static int single(PreparedStatement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
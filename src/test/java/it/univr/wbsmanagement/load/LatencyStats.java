@@ -0,0 +1,82 @@
+package it.univr.wbsmanagement.load;
+
+import java.util.Arrays;
+
+/**
+ * Latencies and errors of one endpoint, recorded by all the load test clients.
+ * Percentiles use the nearest-rank method on all the recorded samples.
+ */
+public final class LatencyStats {
+
+    private final String endpoint;
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+
+    public LatencyStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Records one request.
+     *
+     * @param nanos the latency of the request.
+     * @param ok    false if the request failed or returned an unexpected status.
+     */
+    public synchronized void record(long nanos, boolean ok) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        if (!ok) {
+            errors++;
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 (excluded) and 100.
+     * @return the latency in milliseconds below which that percentage of the requests completed,
+     *         or 0 if nothing was recorded.
+     */
+    public synchronized double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(rank, 1) - 1] / 1_000_000.0;
+    }
+
+    /**
+     * @param elapsedMillis the length of the measured window.
+     * @return the requests per second served in that window.
+     */
+    public synchronized double throughput(long elapsedMillis) {
+        return (elapsedMillis == 0) ? 0 : count * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return one line of the report, aligned with {@link #HEADER}.
+     */
+    public String format(long elapsedMillis) {
+        return String.format("%-48s %8d %7d %9.1f %9.1f %9.1f %9.1f",
+                endpoint, getCount(), getErrors(), throughput(elapsedMillis),
+                percentileMillis(50), percentileMillis(95), percentileMillis(99));
+    }
+
+    public static final String HEADER = String.format("%-48s %8s %7s %9s %9s %9s %9s",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms");
+}
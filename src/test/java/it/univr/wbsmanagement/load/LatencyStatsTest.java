@@ -0,0 +1,41 @@
+package it.univr.wbsmanagement.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the percentiles and throughput reported by the load test.
+ */
+public class LatencyStatsTest {
+
+    /**
+     * With the latencies 1..100 ms, the nearest-rank percentile p is p ms.
+     */
+    @Test
+    void testPercentilesNearestRank() {
+        LatencyStats stats = new LatencyStats("GET /homepage");
+        for (int ms = 100; ms >= 1; ms--) {
+            stats.record(ms * 1_000_000L, ms != 42);
+        }
+
+        assertEquals(50.0, stats.percentileMillis(50));
+        assertEquals(95.0, stats.percentileMillis(95));
+        assertEquals(99.0, stats.percentileMillis(99));
+        assertEquals(100.0, stats.percentileMillis(100));
+        assertEquals(100, stats.getCount());
+        assertEquals(1, stats.getErrors());
+        assertEquals(10.0, stats.throughput(10_000));
+    }
+
+    /**
+     * Nothing recorded gives zero instead of failing.
+     */
+    @Test
+    void testEmpty() {
+        LatencyStats stats = new LatencyStats("GET /task/{id}");
+
+        assertEquals(0.0, stats.percentileMillis(99));
+        assertEquals(0.0, stats.throughput(1000));
+    }
+}
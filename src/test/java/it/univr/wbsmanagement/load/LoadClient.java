@@ -0,0 +1,160 @@
+package it.univr.wbsmanagement.load;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * One simulated user of the load test: it logs in with its own session and then repeats the
+ * flow of a researcher filling in the timesheet, timing every request.
+ *
+ * <p>The flow is: homepage, week tracking, daily add page, add hours, project details and task
+ * details. The hours are added on a new day at every iteration, after the generated history, so
+ * every POST really writes a time entry; the add page is re-rendered with a 200 either way, so
+ * the POST counts as a success only when the page confirms the entry.</p>
+ */
+final class LoadClient {
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String ENTRY_ADDED = "Hours entry added successfully";
+
+    private final String baseUrl;
+    private final String email;
+    private final int taskId;
+    private final int projectId;
+    private final LocalDate readDay;
+    private final LocalDate firstWriteDay;
+    private final ConcurrentMap<String, LatencyStats> stats;
+    private final HttpClient http;
+
+    private String csrfToken;
+    private int iterations;
+
+    /**
+     * @param baseUrl       the root URL of the application.
+     * @param email         email and password of the user.
+     * @param taskId        a task assigned to the user.
+     * @param projectId     the project of that task.
+     * @param readDay       the day of the week tracking and daily add pages.
+     * @param firstWriteDay the day of the first hours added; one day later at every iteration.
+     * @param stats         the latencies by endpoint, shared by all the clients.
+     */
+    LoadClient(String baseUrl, String email, int taskId, int projectId, LocalDate readDay,
+               LocalDate firstWriteDay, ConcurrentMap<String, LatencyStats> stats) {
+        this.baseUrl = baseUrl;
+        this.email = email;
+        this.taskId = taskId;
+        this.projectId = projectId;
+        this.readDay = readDay;
+        this.firstWriteDay = firstWriteDay;
+        this.stats = stats;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Opens the login page and submits the credentials, following the redirect to the homepage.
+     *
+     * @return true if the user is logged in.
+     */
+    boolean login() throws InterruptedException {
+        String loginPage = get("GET /login", "/login");
+        if (loginPage == null || !readCsrfToken(loginPage)) {
+            return false;
+        }
+        String homepage = post("POST /login", "/login", Map.of("username", email, "password", email), null);
+
+        // the session (and its CSRF token) is replaced at login: the next form page provides the new token
+        csrfToken = null;
+        return homepage != null;
+    }
+
+    /**
+     * Runs the flow once.
+     */
+    void runIteration() throws InterruptedException {
+        get("GET /homepage", "/homepage");
+        get("GET /home-tracking/{date}", "/home-tracking/" + readDay);
+
+        String addPage = get("GET /home-tracking/{date}/add-home-tracking", "/home-tracking/" + readDay + "/add-home-tracking");
+        if (addPage != null) {
+            readCsrfToken(addPage);
+        }
+        if (csrfToken != null) {
+            LocalDate writeDay = firstWriteDay.plusDays(iterations);
+            post("POST /home-tracking/{date}/add-home-tracking", "/home-tracking/" + writeDay + "/add-home-tracking",
+                    Map.of("taskId", String.valueOf(taskId), "hours", "1"), ENTRY_ADDED);
+        }
+
+        get("GET /project/{id}", "/project/" + projectId);
+        get("GET /task/{id}", "/task/" + taskId);
+        iterations++;
+    }
+
+    private boolean readCsrfToken(String page) {
+        Matcher matcher = CSRF_INPUT.matcher(page);
+        if (matcher.find()) {
+            csrfToken = matcher.group(1);
+            return true;
+        }
+        return false;
+    }
+
+    private String get(String endpoint, String path) throws InterruptedException {
+        return send(endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET(), null);
+    }
+
+    private String post(String endpoint, String path, Map<String, String> form, String expectedText) throws InterruptedException {
+        String body = form.entrySet().stream()
+                .map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+                .collect(Collectors.joining("&", "_csrf=" + encode(csrfToken) + "&", ""));
+        return send(endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body)), expectedText);
+    }
+
+    /**
+     * Sends the request and records its latency, redirects included.
+     *
+     * @param expectedText text the page must contain to be a success, or null for any page.
+     * @return the body of the final response, or null if it is not a 200 page with the expected text.
+     */
+    private String send(String endpoint, HttpRequest.Builder request, String expectedText) throws InterruptedException {
+        long start = System.nanoTime();
+        String body = null;
+        try {
+            HttpResponse<String> response = http.send(request.timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+            // an expired session or a rejected form ends on the login page, which is a 200 as well
+            boolean onLoginPage = response.uri().getPath().equals("/login");
+            if (response.statusCode() == 200 && (!onLoginPage || endpoint.equals("GET /login"))
+                    && (expectedText == null || response.body().contains(expectedText))) {
+                body = response.body();
+            }
+        } catch (IOException e) {
+            body = null;
+        }
+        stats.computeIfAbsent(endpoint, LatencyStats::new).record(System.nanoTime() - start, body != null);
+        return body;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
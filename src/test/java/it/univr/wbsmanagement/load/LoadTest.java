@@ -0,0 +1,205 @@
+package it.univr.wbsmanagement.load;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import it.univr.wbsmanagement.database.DatasetGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Multi-user load test of the whole application, started on a random port on an in-memory
+ * database filled by {@link DatasetGenerator}.
+ *
+ * <p>Every client logs in as a different generated researcher and repeats the flow of
+ * {@link LoadClient} until the test duration ends. The report printed at the end gives, for every
+ * endpoint, the requests, errors, throughput and p50/p95/p99 latency; the test fails if a request
+ * failed or if the p95 or p99 latency of an endpoint is over its budget.</p>
+ *
+ * <p>It is excluded from {@code ./gradlew test}; run it with {@code ./gradlew loadTest}, optionally
+ * with {@code -Pload.users=50 -Pload.duration-seconds=60 -Pload.p95-budget-ms=500
+ * -Pload.p99-budget-ms=1000 -Pload.dataset=large}.</p>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false"
+})
+public class LoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 50);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 30);
+    private static final int P95_BUDGET_MS = Integer.getInteger("load.p95-budget-ms", 500);
+    private static final int P99_BUDGET_MS = Integer.getInteger("load.p99-budget-ms", 1000);
+    private static final String DATASET = System.getProperty("load.dataset", "small");
+
+    /**
+     * The generated researchers with their first assigned task and the project of that task.
+     */
+    private static final String queryResearchersWithTask = """
+        SELECT u.email, t.id AS task_id, wp.project_id
+        FROM users u
+        INNER JOIN tasks t ON t.id = (SELECT MIN(ta.task_id) FROM task_assignments ta WHERE ta.user_id = u.id)
+        INNER JOIN work_packages wp ON wp.id = t.work_package_id
+        WHERE u.email LIKE '%s%%'
+        ORDER BY u.id
+        LIMIT %d
+    """;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * Logs in USERS clients, runs them together for DURATION_SECONDS and checks the budgets.
+     */
+    @Test
+    void testConcurrentUsersWithinBudget() throws Exception {
+        DatasetGenerator.Config config = DATASET.equals("large") ? DatasetGenerator.Config.large(42L) : DatasetGenerator.Config.small(42L);
+        LocalDate readDay = config.firstDay().plusDays(config.days() / 2).with(DayOfWeek.WEDNESDAY);
+        LocalDate firstWriteDay = config.firstDay().plusDays(config.days());
+        ConcurrentMap<String, LatencyStats> stats = new ConcurrentHashMap<>();
+        List<LoadClient> clients = new ArrayList<>();
+
+        try (Connection conn = dataSource.getConnection()) {
+            System.out.println("Generated " + DatasetGenerator.generate(conn, config));
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(queryResearchersWithTask.formatted(DatasetGenerator.EMAIL_PREFIX, USERS))) {
+                while (rs.next()) {
+                    clients.add(new LoadClient("http://localhost:" + port, rs.getString("email"), rs.getInt("task_id"),
+                            rs.getInt("project_id"), readDay, firstWriteDay, stats));
+                }
+            }
+        }
+        assertEquals(USERS, clients.size(), "the dataset has fewer researchers with a task than the load test users");
+
+        AtomicInteger loggedIn = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(clients.size());
+        CountDownLatch start = new CountDownLatch(1);
+        long[] window = new long[2];
+        List<Future<?>> results = new ArrayList<>();
+
+        try (ClientExecutor executor = new ClientExecutor()) {
+            for (LoadClient client : clients) {
+                results.add(executor.submit(() -> {
+                    boolean ok = false;
+                    try {
+                        ok = client.login();
+                        if (ok) {
+                            loggedIn.incrementAndGet();
+                        }
+                    } finally {
+                        // a failed login must not leave the main thread waiting for this client
+                        ready.countDown();
+                    }
+                    start.await();
+
+                    long deadline = window[1];
+                    while (ok && System.currentTimeMillis() < deadline) {
+                        client.runIteration();
+                    }
+                    return null;
+                }));
+            }
+
+            ready.await();
+            window[0] = System.currentTimeMillis();
+            window[1] = window[0] + TimeUnit.SECONDS.toMillis(DURATION_SECONDS);
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        long elapsedMillis = System.currentTimeMillis() - window[0];
+
+        Map<String, LatencyStats> byEndpoint = new TreeMap<>(stats);
+        System.out.printf("Load test: %d users, %d s, %s dataset, budget p95 %d ms / p99 %d ms%n",
+                USERS, DURATION_SECONDS, DATASET, P95_BUDGET_MS, P99_BUDGET_MS);
+        System.out.println(LatencyStats.HEADER);
+        byEndpoint.values().forEach(s -> System.out.println(s.format(elapsedMillis)));
+
+        assertEquals(USERS, loggedIn.get(), "some users could not log in");
+        List<String> violations = new ArrayList<>();
+        for (LatencyStats s : byEndpoint.values()) {
+            if (s.getErrors() > 0) {
+                violations.add(s.getEndpoint() + ": " + s.getErrors() + " failed requests");
+            }
+            if (s.percentileMillis(95) > P95_BUDGET_MS) {
+                violations.add(s.getEndpoint() + ": p95 " + s.percentileMillis(95) + " ms > " + P95_BUDGET_MS + " ms");
+            }
+            if (s.percentileMillis(99) > P99_BUDGET_MS) {
+                violations.add(s.getEndpoint() + ": p99 " + s.percentileMillis(99) + " ms > " + P99_BUDGET_MS + " ms");
+            }
+        }
+        assertTrue(violations.isEmpty(), "Load test budget exceeded: " + violations);
+    }
+
+    /**
+     * Runs every client on its own thread: a virtual thread when the JVM provides them
+     * (Java 21 and later), a platform thread otherwise, so the test also runs on Java 17.
+     */
+    private static final class ClientExecutor implements AutoCloseable {
+
+        private final ExecutorService executor;
+
+        ClientExecutor() {
+            ExecutorService virtualThreads;
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                virtualThreads = (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                virtualThreads = Executors.newCachedThreadPool();
+            }
+            this.executor = virtualThreads;
+        }
+
+        Future<?> submit(Callable<?> client) {
+            return executor.submit(client);
+        }
+
+        /**
+         * Waits for the clients still running, then interrupts them if they do not finish.
+         */
+        @Override
+        public void close() {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
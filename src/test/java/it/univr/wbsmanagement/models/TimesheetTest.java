@@ -0,0 +1,61 @@
+package it.univr.wbsmanagement.models;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the day totals and lookups of {@link Timesheet}. Its allocation against the nested
+ * day -> project -> task maps it replaces is measured by TimesheetBenchmark (src/jmh).
+ */
+public class TimesheetTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 3, 3);
+    private static final LocalDate SUNDAY = MONDAY.plusDays(6);
+
+    /**
+     * Entries added in any order are grouped by day, with exact totals in tenths of hour.
+     */
+    @Test
+    void testDayTotalsAndLookups() {
+        Timesheet timesheet = Timesheet.builder(MONDAY, SUNDAY)
+                .add(MONDAY.plusDays(2), 1, 10, 2.5)
+                .add(MONDAY, 1, 10, 0.1)
+                .add(MONDAY.plusDays(2), 2, 20, 4.0)
+                .add(MONDAY, 2, 20, 0.2)
+                .build();
+
+        assertEquals(4, timesheet.size());
+        assertEquals(7, timesheet.getDays());
+        assertEquals(SUNDAY, timesheet.getEndDay());
+
+        assertEquals(0.3, timesheet.getDayTotal(MONDAY));
+        assertEquals(6.5, timesheet.getDayTotal(MONDAY.plusDays(2)));
+        assertEquals(0.0, timesheet.getDayTotal(MONDAY.plusDays(1)));
+        assertEquals(0.0, timesheet.getDayTotal(SUNDAY.plusDays(1)));
+        assertEquals(6.8, timesheet.getTotal());
+
+        assertTrue(timesheet.hasHours(MONDAY.plusDays(2), 20));
+        assertEquals(4.0, timesheet.getHours(MONDAY.plusDays(2), 20));
+        assertFalse(timesheet.hasHours(MONDAY.plusDays(1), 20));
+        assertEquals(0.0, timesheet.getHours(MONDAY.plusDays(1), 20));
+
+        assertEquals(MONDAY, timesheet.getDay(0));
+        assertEquals(MONDAY.plusDays(2), timesheet.getDay(3));
+    }
+
+    /**
+     * Days outside the range are rejected when building.
+     */
+    @Test
+    void testDayOutsideRangeIsRejected() {
+        Timesheet.Builder builder = Timesheet.builder(MONDAY, SUNDAY);
+        assertThrows(IllegalArgumentException.class, () -> builder.add(SUNDAY.plusDays(1), 1, 1, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> Timesheet.builder(SUNDAY, MONDAY));
+    }
+}
@@ -0,0 +1,127 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders monthly reports from an in-memory database: a researcher with 200 assigned tasks and
+ * half an hour on each of them on every working day of March 2025 (4 200 entries).
+ *
+ * <p>The report must be a well-formed PDF (every cross-reference offset points to its object).
+ * The rendering time is measured by MonthlyReportBenchmark (src/jmh).</p>
+ */
+public class MonthlyReportTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 3);
+    private static final int TASKS = 200;
+
+    private static int researcherId;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        DatabaseManager.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:monthly-report;DB_CLOSE_DELAY=-1", "sa", ""));
+        DatabaseManager.setupDatabase();
+
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM users WHERE email = 'researcher'")) {
+                rs.next();
+                researcherId = rs.getInt(1);
+            }
+            stmt.execute("UPDATE users SET working_hours_weekly = 40 WHERE id = " + researcherId);
+            stmt.execute("""
+                INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
+                SELECT 'Report_' || X, 'Report project', 1, 1 FROM SYSTEM_RANGE(1, 10)
+            """);
+            stmt.execute("""
+                INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+                SELECT p.id, p.title || '_WP', 'Report work package', DATE '2025-01-01', DATE '2025-12-31'
+                FROM projects p WHERE p.title LIKE 'Report_%'
+            """);
+            stmt.execute("""
+                INSERT INTO tasks (work_package_id, title, description, effort_hours, duration_hours, deadline, priority_id, status_id)
+                SELECT wp.id, wp.title || '_Task_' || r.X, 'Report task', 100, 100, DATE '2025-12-31', 1, 1
+                FROM work_packages wp, SYSTEM_RANGE(1, %d) r
+                WHERE wp.title LIKE 'Report_%%'
+            """.formatted(TASKS / 10));
+            stmt.execute("""
+                INSERT INTO time_entries (user_id, task_id, entry_date, hours)
+                SELECT %d, t.id, DATEADD(DAY, r.X, DATE '2025-03-01'), 0.5
+                FROM tasks t, SYSTEM_RANGE(0, 30) r
+                WHERE t.title LIKE 'Report_%%'
+                  AND ISO_DAY_OF_WEEK(DATEADD(DAY, r.X, DATE '2025-03-01')) <= 5
+            """.formatted(researcherId));
+        }
+    }
+
+    /**
+     * Thousands of entries give a valid multi-page PDF.
+     */
+    @Test
+    void testLargeMonth() throws Exception {
+        String pdf = render(MONTH);
+
+        assertWellFormed(pdf);
+        assertTrue(pdf.contains("(Total per day)"));
+        // 21 working days x 0.5 hours on every task, 200 x 10.5 in the month
+        assertTrue(pdf.contains("(10.5)"));
+        assertTrue(pdf.contains("(Hours charged: 2100)"));
+        assertTrue(pdf.contains("(Contract hours: 168  \\(40 h/week over 21 working days\\))"));
+    }
+
+    /**
+     * A month without hours still gives a one-page report with the contract hours.
+     */
+    @Test
+    void testEmptyMonth() throws Exception {
+        String pdf = render(YearMonth.of(2024, 2));
+
+        assertWellFormed(pdf);
+        assertTrue(pdf.contains("(No hours charged in this month.)"));
+        assertTrue(pdf.contains("/Count 1 "));
+    }
+
+    private static String render(YearMonth month) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MonthlyReport.write(researcherId, "researcher", month, out);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Checks the header, the trailer and that every cross-reference entry points to its object.
+     */
+    private static void assertWellFormed(String pdf) {
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+
+        Matcher startxref = Pattern.compile("startxref\n(\\d+)\n%%EOF\n$").matcher(pdf);
+        assertTrue(startxref.find());
+        int xref = Integer.parseInt(startxref.group(1));
+        assertTrue(pdf.startsWith("xref\n0 ", xref));
+
+        String[] lines = pdf.substring(xref).split("\n");
+        int objects = Integer.parseInt(lines[1].split(" ")[1]);
+        for (int n = 1; n < objects; n++) {
+            int offset = Integer.parseInt(lines[2 + n].substring(0, 10));
+            assertTrue(pdf.startsWith(n + " 0 obj\n", offset), "object " + n + " not at offset " + offset);
+        }
+        Matcher count = Pattern.compile("/Count (\\d+) ").matcher(pdf);
+        assertTrue(count.find());
+        assertEquals((objects - 5) / 2, Integer.parseInt(count.group(1)));
+    }
+}
@@ -0,0 +1,207 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs report jobs against an in-memory database: a job is rendered in the background and
+ * stored in the reports table, an unchanged month is served from the stored report, stored
+ * reports are copied to the file store, and a full queue refuses new jobs.
+ */
+public class ReportJobsTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 3);
+
+    private final DriverManagerDataSource database =
+            new DriverManagerDataSource("jdbc:h2:mem:report-jobs;DB_CLOSE_DELAY=-1", "sa", "");
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private int researcherId;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DatabaseManager.setDataSource(database);
+        DatabaseManager.setupDatabase();
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM users WHERE email = 'researcher'")) {
+            rs.next();
+            researcherId = rs.getInt(1);
+        }
+    }
+
+    /**
+     * A submitted job is done in the background and its PDF can be read back by its owner only.
+     */
+    @Test
+    void testJobIsRenderedAndStored() throws Exception {
+        try (ReportJobs jobs = new ReportJobs(1, 10, ReportJobs.RejectionPolicy.ABORT, Period.ofYears(5), registry)) {
+            ReportJobs.Job job = jobs.submit(researcherId, "researcher", MONTH);
+            awaitFinished(job);
+
+            assertEquals(ReportJobs.Status.DONE, job.getStatus());
+            assertNull(jobs.get(job.getId(), researcherId + 1), "the job of another user");
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            assertTrue(DatabaseManager.writeUserReport(job.getReportId(), researcherId, pdf));
+            assertTrue(pdf.toString(StandardCharsets.ISO_8859_1).startsWith("%PDF-1.4"));
+            assertFalse(DatabaseManager.writeUserReport(job.getReportId(), researcherId + 1, new ByteArrayOutputStream()),
+                    "the report of another user");
+
+            assertEquals(1, registry.get("wbs.reports.jobs").tag("result", "done").counter().count());
+            assertEquals(1, jobs.evictFinished(Duration.ZERO));
+            assertNull(jobs.get(job.getId(), researcherId));
+        }
+    }
+
+    /**
+     * A month whose hours have not changed is served from the stored report; new hours in the
+     * month replace it, and expired reports are deleted.
+     */
+    @Test
+    void testUnchangedMonthIsServedFromStore() throws Exception {
+        YearMonth april = YearMonth.of(2025, 4);
+        try (ReportJobs jobs = new ReportJobs(1, 10, ReportJobs.RejectionPolicy.ABORT, Period.ofYears(5), registry)) {
+            ReportJobs.Job first = runJob(jobs, april);
+            ReportJobs.Job second = runJob(jobs, april);
+            assertEquals(first.getReportId(), second.getReportId());
+            assertEquals(1, registry.get("wbs.reports.cache").tag("result", "hit").counter().count());
+
+            try (Connection conn = DatabaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("""
+                    INSERT INTO time_entries (user_id, task_id, entry_date, hours)
+                    SELECT %d, MIN(id), DATE '2025-04-10', 2.0 FROM tasks
+                """.formatted(researcherId));
+            }
+            ReportJobs.Job changed = runJob(jobs, april);
+            assertNotEquals(first.getReportId(), changed.getReportId());
+            assertFalse(DatabaseManager.writeUserReport(first.getReportId(), researcherId, new ByteArrayOutputStream()),
+                    "the report of the previous hours");
+
+            assertTrue(DatabaseManager.deleteExpiredReports(LocalDate.now().plusYears(6)) >= 1);
+            assertFalse(DatabaseManager.writeUserReport(changed.getReportId(), researcherId, new ByteArrayOutputStream()),
+                    "the expired report");
+        }
+    }
+
+    /**
+     * The same PDF stored twice for a user and month is kept once.
+     */
+    @Test
+    void testIdenticalReportsAreStoredOnce() {
+        LocalDate may = LocalDate.of(2025, 5, 1);
+        byte[] report = "%PDF-1.4 identical".getBytes(StandardCharsets.ISO_8859_1);
+        String contentHash = ReportDigests.content(report);
+        LocalDate retention = LocalDate.now().plusYears(5);
+
+        int first = DatabaseManager.storeUserReport(researcherId, may, "source-a", contentHash, report, retention);
+        int second = DatabaseManager.storeUserReport(researcherId, may, "source-b", contentHash, report, retention);
+
+        assertEquals(first, second);
+        assertEquals(second, DatabaseManager.findUserReport(researcherId, may, "source-b"));
+        assertEquals(-1, DatabaseManager.findUserReport(researcherId, may, "source-a"));
+    }
+
+    /**
+     * A stored report is copied once to a file named after its content, which is deleted by the
+     * sweep when no stored report has that content any more.
+     */
+    @Test
+    void testStoreCopiesReportToFile(@TempDir Path directory) throws Exception {
+        LocalDate june = LocalDate.of(2025, 6, 1);
+        byte[] report = "%PDF-1.4 stored".getBytes(StandardCharsets.ISO_8859_1);
+        String contentHash = ReportDigests.content(report);
+        int reportId = DatabaseManager.storeUserReport(researcherId, june, "source-june", contentHash, report,
+                LocalDate.now().plusYears(5));
+        ReportStore store = new ReportStore(directory.resolve("reports"));
+
+        ReportStore.Entry file = store.file(DatabaseManager.getUserReport(reportId, researcherId));
+        assertEquals(contentHash, file.contentHash());
+        assertEquals(contentHash + ".pdf", file.path().getFileName().toString());
+        assertArrayEquals(report, Files.readAllBytes(file.path()));
+        assertNull(DatabaseManager.getUserReport(reportId, researcherId + 1), "the report of another user");
+
+        assertEquals(0, store.sweep(DatabaseManager.getReportContentHashes()));
+        assertEquals(1, store.sweep(Set.of()));
+        assertFalse(Files.exists(file.path()));
+    }
+
+    /**
+     * With one worker busy and the queue full, a further job is refused and counted.
+     */
+    @Test
+    void testFullQueueRejectsJobs() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // the worker waits for a connection until the test releases it
+        DatabaseManager.setDataSource(new DelegatingDataSource(database) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getConnection();
+            }
+        });
+
+        try (ReportJobs jobs = new ReportJobs(1, 1, ReportJobs.RejectionPolicy.ABORT, Period.ofYears(5), registry)) {
+            ReportJobs.Job running = jobs.submit(researcherId, "researcher", MONTH);
+            ReportJobs.Job queued = jobs.submit(researcherId, "researcher", MONTH);
+            assertThrows(RejectedExecutionException.class, () -> jobs.submit(researcherId, "researcher", MONTH));
+            assertEquals(1, registry.get("wbs.reports.jobs").tag("result", "rejected").counter().count());
+            assertEquals(ReportJobs.Status.QUEUED, queued.getStatus());
+
+            release.countDown();
+            awaitFinished(running);
+            awaitFinished(queued);
+            assertEquals(ReportJobs.Status.DONE, queued.getStatus());
+        }
+    }
+
+    private ReportJobs.Job runJob(ReportJobs jobs, YearMonth month) throws InterruptedException {
+        ReportJobs.Job job = jobs.submit(researcherId, "researcher", month);
+        awaitFinished(job);
+        assertEquals(ReportJobs.Status.DONE, job.getStatus());
+        return job;
+    }
+
+    private static void awaitFinished(ReportJobs.Job job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.getFinishedAt() != null, "job " + job.getId() + " did not finish");
+    }
+}
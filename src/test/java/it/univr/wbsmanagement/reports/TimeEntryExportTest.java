@@ -0,0 +1,141 @@
+package it.univr.wbsmanagement.reports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import it.univr.wbsmanagement.database.DatabaseManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Exports time entries from an in-memory database: a researcher with a day of hours on a task
+ * whose title needs escaping, and 3 000 days of hours on a second project.
+ */
+public class TimeEntryExportTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 5);
+    private static final int LARGE_DAYS = 3000;
+
+    private static int researcherId;
+    private static int escapedProjectId;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        DatabaseManager.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:time-entry-export;DB_CLOSE_DELAY=-1", "sa", ""));
+        DatabaseManager.setupDatabase();
+
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            researcherId = queryInt(stmt, "SELECT id FROM users WHERE email = 'researcher'");
+            stmt.execute("""
+                INSERT INTO projects (title, description, created_by_admin_id, supervisor_id)
+                VALUES ('Export, "quoted"', 'Export project', 1, 1), ('Export_Large', 'Export project', 1, 1)
+            """);
+            stmt.execute("""
+                INSERT INTO work_packages (project_id, title, description, start_date, end_date)
+                SELECT p.id, p.title || ' WP', 'Export work package', DATE '2000-01-01', DATE '2030-12-31'
+                FROM projects p WHERE p.title LIKE 'Export%'
+            """);
+            stmt.execute("""
+                INSERT INTO tasks (work_package_id, title, description, effort_hours, duration_hours, deadline, priority_id, status_id)
+                SELECT wp.id, 'Line' || CHAR(10) || 'break \\ task', 'Export task', 100, 100, DATE '2030-12-31', 1, 1
+                FROM work_packages wp WHERE wp.title LIKE 'Export%'
+            """);
+            escapedProjectId = queryInt(stmt, "SELECT id FROM projects WHERE title LIKE 'Export,%'");
+            stmt.execute("""
+                INSERT INTO time_entries (user_id, task_id, entry_date, hours)
+                SELECT %d, t.id, DATE '%s', 1.5
+                FROM tasks t INNER JOIN work_packages wp ON wp.id = t.work_package_id
+                WHERE wp.project_id = %d
+            """.formatted(researcherId, DAY, escapedProjectId));
+            stmt.execute("""
+                INSERT INTO time_entries (user_id, task_id, entry_date, hours)
+                SELECT %d, t.id, DATEADD(DAY, r.X, DATE '2010-01-01'), 2.0
+                FROM tasks t INNER JOIN work_packages wp ON wp.id = t.work_package_id
+                INNER JOIN projects p ON p.id = wp.project_id, SYSTEM_RANGE(0, %d) r
+                WHERE p.title = 'Export_Large'
+            """.formatted(researcherId, LARGE_DAYS - 1));
+        }
+    }
+
+    /**
+     * The CSV quotes the fields with separators, quotes and line breaks.
+     */
+    @Test
+    void testCsvEscaping() throws Exception {
+        String csv = export(TimeEntryExport.Format.CSV, escapedProjectId);
+
+        assertEquals("user_id,user_email,entry_date,hours,project_id,project_title,"
+                + "work_package_id,work_package_title,task_id,task_title\r\n"
+                + researcherId + ",researcher," + DAY + ",1.5," + escapedProjectId + ",\"Export, \"\"quoted\"\"\","
+                + wpId() + ",\"Export, \"\"quoted\"\" WP\"," + taskId() + ",\"Line\nbreak \\ task\"\r\n", csv);
+    }
+
+    /**
+     * NDJSON has one object per entry, with escaped strings.
+     */
+    @Test
+    void testNdjsonEscaping() throws Exception {
+        String ndjson = export(TimeEntryExport.Format.NDJSON, escapedProjectId);
+
+        assertEquals("{\"user_id\":" + researcherId + ",\"user_email\":\"researcher\",\"entry_date\":\"" + DAY
+                + "\",\"hours\":1.5,\"project_id\":" + escapedProjectId + ",\"project_title\":\"Export, \\\"quoted\\\"\""
+                + ",\"work_package_id\":" + wpId() + ",\"work_package_title\":\"Export, \\\"quoted\\\" WP\""
+                + ",\"task_id\":" + taskId() + ",\"task_title\":\"Line\\nbreak \\\\ task\"}\n", ndjson);
+    }
+
+    /**
+     * The filters by user, project and period select the matching entries only.
+     */
+    @Test
+    void testFilters() throws IOException {
+        OutputStream discard = OutputStream.nullOutputStream();
+        LocalDate from = LocalDate.of(2010, 1, 1);
+        LocalDate to = LocalDate.of(2010, 1, 31);
+
+        assertEquals(LARGE_DAYS + 1, TimeEntryExport.write(TimeEntryExport.Format.CSV, researcherId, null,
+                LocalDate.of(1900, 1, 1), LocalDate.of(9999, 12, 31), discard));
+        assertEquals(31, TimeEntryExport.write(TimeEntryExport.Format.NDJSON, researcherId, null, from, to, discard));
+        assertEquals(31, TimeEntryExport.write(TimeEntryExport.Format.NDJSON, null, null, from, to, discard));
+        assertEquals(0, TimeEntryExport.write(TimeEntryExport.Format.CSV, researcherId, escapedProjectId, from, to, discard));
+        assertEquals(0, TimeEntryExport.write(TimeEntryExport.Format.CSV, researcherId + 1000, null, from, to, discard));
+    }
+
+    private static String export(TimeEntryExport.Format format, int projectId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TimeEntryExport.write(format, researcherId, projectId, DAY, DAY, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static int wpId() throws Exception {
+        return queryInt("SELECT id FROM work_packages WHERE project_id = " + escapedProjectId);
+    }
+
+    private static int taskId() throws Exception {
+        return queryInt("SELECT t.id FROM tasks t INNER JOIN work_packages wp ON wp.id = t.work_package_id WHERE wp.project_id = " + escapedProjectId);
+    }
+
+    private static int queryInt(String sql) throws Exception {
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            return queryInt(stmt, sql);
+        }
+    }
+
+    private static int queryInt(Statement stmt, String sql) throws Exception {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}